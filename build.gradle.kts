@@ -15,6 +15,8 @@ plugins {
     id("org.jetbrains.changelog") version "1.3.1"
     // Gradle Qodana Plugin
     id("org.jetbrains.qodana") version "0.1.13"
+    // JMH Gradle Plugin
+    id("me.champeau.jmh") version "0.6.6"
 }
 
 group = properties("pluginGroup")
@@ -49,7 +51,66 @@ qodana {
     showReport.set(System.getenv("QODANA_SHOW_REPORT")?.toBoolean() ?: false)
 }
 
+// Configure JMH Gradle Plugin - read more: https://github.com/melix/jmh-gradle-plugin
+jmh {
+    jmhVersion.set("1.35")
+    // Report allocations next to the throughput
+    profilers.set(listOf("gc"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
+
+configurations {
+    // The benchmarks run plugin code which needs the IDE classes it is compiled against
+    named("jmhImplementation") {
+        extendsFrom(compileOnly.get())
+    }
+}
+
+// The reporter and daemon the plugin runs Vitest with are bundled from their TypeScript sources
+val pluginScriptsDir = projectDir.resolve("src/main/resources/vitest-intellij-plugin")
+val npm = if (System.getProperty("os.name").startsWith("Windows")) "npm.cmd" else "npm"
+// -PskipPluginScriptsBuild packages the bundles already in dist, e.g. for offline runIde and test runs
+val skipPluginScriptsBuild = project.hasProperty("skipPluginScriptsBuild")
+
 tasks {
+    val installPluginScriptsDependencies by registering(Exec::class) {
+        workingDir(pluginScriptsDir)
+        // Not npm ci until the lockfile is regenerated for vitest ^0.23.4, npm install brings it in line
+        commandLine(npm, "install")
+        onlyIf { !skipPluginScriptsBuild }
+        inputs.files(pluginScriptsDir.resolve("package.json"), pluginScriptsDir.resolve("package-lock.json"))
+        outputs.dir(pluginScriptsDir.resolve("node_modules"))
+    }
+
+    // The plugin picks the bundles of the IDE's platform, see VitestBundledScripts
+    val buildPluginScripts = listOf("nix", "windows").map { mode ->
+        register<Exec>("buildPluginScripts${mode.capitalize()}") {
+            dependsOn(installPluginScriptsDependencies)
+            workingDir(pluginScriptsDir)
+            commandLine(npm, "run", "build-$mode")
+            onlyIf { !skipPluginScriptsBuild }
+            inputs.dir(pluginScriptsDir.resolve("src"))
+            inputs.files(
+                pluginScriptsDir.resolve("vite.config.js"),
+                pluginScriptsDir.resolve("vite.daemon.config.js"),
+                pluginScriptsDir.resolve("tsconfig.json"),
+            )
+            outputs.files(pluginScriptsDir.resolve("dist/reporter.$mode.js"), pluginScriptsDir.resolve("dist/daemon.$mode.js"))
+        }
+    }
+
+    processResources {
+        dependsOn(buildPluginScripts)
+        doFirst {
+            if (skipPluginScriptsBuild && !pluginScriptsDir.resolve("dist").isDirectory) {
+                throw GradleException("skipPluginScriptsBuild needs the bundles in ${pluginScriptsDir.resolve("dist")}, build them once with npm run build-nix and build-windows")
+            }
+        }
+        exclude("vitest-intellij-plugin/node_modules/**")
+    }
+
     // Set the JVM compatibility versions
     properties("javaVersion").let {
         withType<JavaCompile> {
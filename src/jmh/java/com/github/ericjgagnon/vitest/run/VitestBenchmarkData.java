@@ -0,0 +1,47 @@
+package com.github.ericjgagnon.vitest.run;
+
+import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef;
+import com.intellij.javascript.nodejs.util.NodePackage;
+import org.jdom.Element;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic settings shaped like the ones of a large workspace: a test scope with a long path,
+ * nested suite names and as many test names as asked for.
+ */
+final class VitestBenchmarkData {
+
+    private VitestBenchmarkData() {
+    }
+
+    static VitestSettings settings(int testNameCount, String suiteName) {
+        return settings(testNameCount, suiteName, "/workspace/packages/app/src/components/form/__test__/form-field.test.ts");
+    }
+
+    static VitestSettings settings(int testNameCount, String suiteName, String testFilePath) {
+        // A new list every time, so equal settings never share their test names
+        List<String> testNames = new ArrayList<>(testNameCount);
+        for (int i = 0; i < testNameCount; i++) {
+            testNames.add(suiteName + " > renders the field in state " + i);
+        }
+        return new VitestSettings.Builder()
+                .interpreter(NodeJsInterpreterRef.create("/usr/local/bin/node"))
+                .nodeOptions("--max-old-space-size=4096")
+                .vitestPackage(new NodePackage("/workspace/node_modules/vitest"))
+                .vitestConfigFilePath("/workspace/packages/app/vitest.config.ts")
+                .workingDirectory("/workspace/packages/app")
+                .testFilePath(testFilePath)
+                .suiteName(suiteName)
+                .testNames(testNames)
+                .scope(testNameCount > 0 ? VitestScopeKind.TEST : VitestScopeKind.SUITE)
+                .build();
+    }
+
+    static Element element(VitestSettings settings) {
+        Element element = new Element("configuration");
+        VitestSettingsExternalizer.write(settings, element);
+        return element;
+    }
+}
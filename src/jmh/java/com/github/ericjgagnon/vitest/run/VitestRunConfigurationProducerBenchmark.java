@@ -0,0 +1,54 @@
+package com.github.ericjgagnon.vitest.run;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking for an existing configuration of the element at the caret, which compares its target with
+ * the settings of every Vitest configuration of the project each time a run context is evaluated.
+ * Resolving the target itself needs PSI and is left to the IDE's own tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VitestRunConfigurationProducerBenchmark {
+
+    @Param({"100", "5000"})
+    public int configurationCount;
+
+    private VitestSettings[] configurations;
+    private VitestRunConfigurationProducer.TestElementTarget target;
+
+    @Setup
+    public void setUp() {
+        configurations = new VitestSettings[configurationCount];
+        for (int i = 0; i < configurationCount; i++) {
+            configurations[i] = VitestBenchmarkData.settings(3, "Form field", "/workspace/packages/app/src/feature" + i + ".test.ts");
+        }
+        VitestSettings last = configurations[configurationCount - 1];
+        List<String> testNames = List.copyOf(last.testNames());
+        target = new VitestRunConfigurationProducer.TestElementTarget(
+                last.scope(), last.testFilePath(), last.suiteName(), testNames, null);
+    }
+
+    @Benchmark
+    public int findMatchingConfiguration() {
+        // A plain loop, so the allocations reported are the ones of the comparisons
+        int matches = 0;
+        for (VitestSettings settings : configurations) {
+            if (VitestRunConfigurationProducer.matches(target, settings)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.ericjgagnon.vitest.run;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Equality checks of settings, done whenever the IDE compares a configuration with its edited copy
+ * or looks one up in a hash based collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VitestSettingsBenchmark {
+
+    @Param({"0", "10", "1000"})
+    public int testNameCount;
+
+    private VitestSettings settings;
+    private VitestSettings equalSettings;
+    private VitestSettings otherSettings;
+
+    @Setup
+    public void setUp() {
+        settings = VitestBenchmarkData.settings(testNameCount, "Form field");
+        equalSettings = VitestBenchmarkData.settings(testNameCount, "Form field");
+        otherSettings = VitestBenchmarkData.settings(testNameCount, "Form label");
+    }
+
+    @Benchmark
+    public boolean equalsEqualSettings() {
+        return settings.equals(equalSettings);
+    }
+
+    @Benchmark
+    public boolean equalsOtherSettings() {
+        return settings.equals(otherSettings);
+    }
+
+    @Benchmark
+    public int hashCodeOfSettings() {
+        return settings.hashCode();
+    }
+}
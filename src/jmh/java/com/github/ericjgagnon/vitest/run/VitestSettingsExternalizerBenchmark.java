@@ -0,0 +1,47 @@
+package com.github.ericjgagnon.vitest.run;
+
+import org.jdom.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing the XML of one configuration, done for every saved configuration when a
+ * workspace is loaded or saved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VitestSettingsExternalizerBenchmark {
+
+    @Param({"0", "10", "1000"})
+    public int testNameCount;
+
+    private VitestSettings settings;
+    private Element element;
+
+    @Setup
+    public void setUp() {
+        settings = VitestBenchmarkData.settings(testNameCount, "Form field");
+        element = VitestBenchmarkData.element(settings);
+    }
+
+    @Benchmark
+    public VitestSettings read() {
+        return VitestSettingsExternalizer.read(element);
+    }
+
+    @Benchmark
+    public Element write() {
+        Element configuration = new Element("configuration");
+        VitestSettingsExternalizer.write(settings, configuration);
+        return configuration;
+    }
+}
@@ -12,23 +12,16 @@ import com.intellij.javascript.nodejs.debug.NodeDebugRunConfiguration;
 import com.intellij.javascript.nodejs.execution.AbstractNodeTargetRunProfile;
 import com.intellij.javascript.nodejs.execution.NodeTargetRun;
 import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreter;
-import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef;
-import com.intellij.javascript.nodejs.util.NodePackage;
 import com.intellij.javascript.testFramework.navigation.JSTestLocationProvider;
 import com.intellij.openapi.options.SettingsEditor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.InvalidDataException;
-import com.intellij.openapi.util.JDOMExternalizerUtil;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.PathUtil;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 
 public final class VitestRunConfiguration extends AbstractNodeTargetRunProfile implements NodeDebugRunConfiguration, JSRunProfileWithCompileBeforeLaunchOption, SMRunnerConsolePropertiesProvider {
@@ -63,6 +56,17 @@ public final class VitestRunConfiguration extends AbstractNodeTargetRunProfile i
             return PathUtil.getFileName(settings.testFilePath());
         } else if (scopeKind == VitestScopeKind.TEST) {
             return settings.testNames().stream().findFirst().orElse(null);
+        } else if (scopeKind == VitestScopeKind.DEPENDENTS) {
+            return "Tests of " + PathUtil.getFileName(settings.testFilePath());
+        } else if (scopeKind == VitestScopeKind.CHANGED) {
+            return settings.changedSince() == null ? "Tests of Changes" : "Tests of Changes Since " + settings.changedSince();
+        } else if (scopeKind == VitestScopeKind.BENCH) {
+            if (!settings.testNames().isEmpty()) {
+                return settings.testNames().get(0);
+            }
+            return StringUtils.isEmpty(settings.testFilePath()) ? "All Benchmarks" : "Benchmarks of " + PathUtil.getFileName(settings.testFilePath());
+        } else if (scopeKind == VitestScopeKind.PACKAGES) {
+            return StringUtils.isEmpty(settings.workingDirectory()) ? "Workspace Packages" : "Packages of " + PathUtil.getFileName(settings.workingDirectory());
         }
         return null;
     }
@@ -75,6 +79,11 @@ public final class VitestRunConfiguration extends AbstractNodeTargetRunProfile i
                 return settings.testNames().stream().findFirst().orElse(null);
             case SUITE:
                 return settings.suiteName();
+            case DEPENDENTS:
+            case CHANGED:
+            case BENCH:
+            case PACKAGES:
+                return suggestedName();
             default:
                 return super.getActionName();
         }
@@ -101,130 +110,12 @@ public final class VitestRunConfiguration extends AbstractNodeTargetRunProfile i
     @Override
     public void readExternal(@NotNull Element element) throws InvalidDataException {
         super.readExternal(element);
-        String interpreterRef = JDOMExternalizerUtil.readCustomField(element, "node-interpreter");
-        String nodeOptions = JDOMExternalizerUtil.readCustomField(element, "node-options");
-        String vitestPackage = JDOMExternalizerUtil.readCustomField(element, "vitest-package");
-        String vitestConfig = JDOMExternalizerUtil.readCustomField(element, "vitest-config");
-        String workingDir = JDOMExternalizerUtil.readCustomField(element, "working-dir");
-        String vitestScope = JDOMExternalizerUtil.readCustomField(element, "test-scope");
-        String suiteName = JDOMExternalizerUtil.readCustomField(element, "suite-name");
-        String testFilePath = JDOMExternalizerUtil.readCustomField(element, "test-file-path");
-        List<String> testNames = Optional.ofNullable(element.getChild("test-names"))
-                .map(testNamesElement -> {
-                    return JDOMExternalizerUtil.getChildrenValueAttributes(testNamesElement, "test-name");
-                }).orElseGet(ArrayList::new);
-
-        VitestSettings.Builder settingsBuilder = new VitestSettings.Builder();
-
-        Optional.ofNullable(interpreterRef)
-                .filter(StringUtils::isNotEmpty)
-                .map(NodeJsInterpreterRef::create)
-                .ifPresentOrElse(settingsBuilder::interpreter, () -> {
-                    settingsBuilder.interpreter(NodeJsInterpreterRef.createProjectRef());
-                });
-
-        Optional.ofNullable(nodeOptions)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(settingsBuilder::setNodeOptions);
-
-        Optional.ofNullable(vitestPackage)
-                .filter(StringUtils::isNotEmpty)
-                .map(NodePackage::new)
-                .ifPresent(settingsBuilder::vitestPackage);
-
-        Optional.ofNullable(vitestConfig)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(settingsBuilder::vitestConfigFilePath);
-
-        Optional.ofNullable(workingDir)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(settingsBuilder::workingDirectory);
-
-        Optional.ofNullable(suiteName)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(settingsBuilder::suiteName);
-
-        Optional.ofNullable(testFilePath)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(settingsBuilder::testFilePath);
-
-        settingsBuilder.testNames(testNames);
-
-        Optional.ofNullable(vitestScope)
-                .filter(StringUtils::isNotEmpty)
-                .map(VitestScopeKind::valueOf)
-                .ifPresent(settingsBuilder::scope);
-
-        settings = settingsBuilder.build();
+        settings = VitestSettingsExternalizer.read(element);
     }
 
     @Override
     public void writeExternal(@NotNull Element element) {
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::interpreter)
-                .map(NodeJsInterpreterRef::getReferenceName)
-                .ifPresent(ref -> {
-                    JDOMExternalizerUtil.writeCustomField(element, "node-interpreter", ref);
-                });
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::nodeOptions)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(options -> {
-                    JDOMExternalizerUtil.writeCustomField(element, "node-options", options);
-                });
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::vittestPackage)
-                .ifPresent(testPackage -> {
-                    JDOMExternalizerUtil.writeCustomField(element, "vitest-package", testPackage.getSystemIndependentPath());
-                });
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::vitestConfigFilePath)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(configPath -> {
-                    JDOMExternalizerUtil.writeCustomField(element, "vitest-config", FileUtil.toSystemIndependentName(configPath));
-                });
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::workingDirectory)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(workingDir -> {
-                    JDOMExternalizerUtil.writeCustomField(element, "working-dir", FileUtil.toSystemIndependentName(workingDir));
-                });
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::suiteName)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(suiteName -> {
-                    JDOMExternalizerUtil.writeCustomField(element, "suite-name", suiteName);
-                });
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::testFilePath)
-                .filter(StringUtils::isNotEmpty)
-                .ifPresent(testFilePath -> {
-                    JDOMExternalizerUtil.writeCustomField(element, "test-file-path", FileUtil.toSystemIndependentName(testFilePath));
-                });
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::testNames)
-                .filter(CollectionUtils::isNotEmpty)
-                .ifPresent(testNames -> {
-                    Element testNamesElement = new Element("test-names");
-                    JDOMExternalizerUtil.addChildrenWithValueAttribute(testNamesElement, "test-name", testNames);
-                    element.addContent(testNamesElement);
-                });
-
-
-        Optional.ofNullable(settings)
-                .map(VitestSettings::scope)
-                .ifPresentOrElse(scope -> {
-                    JDOMExternalizerUtil.writeCustomField(element, "test-scope", scope.name());
-                }, () -> JDOMExternalizerUtil.writeCustomField(element, "test-scope", VitestScopeKind.ALL.name()));
-
+        VitestSettingsExternalizer.write(settings, element);
         super.writeExternal(element);
     }
 
@@ -1,5 +1,11 @@
 package com.github.ericjgagnon.vitest.run;
 
+import com.github.ericjgagnon.vitest.run.resolution.VitestConfigFiles;
+import com.github.ericjgagnon.vitest.run.resolution.VitestDirectoryResolution;
+import com.github.ericjgagnon.vitest.run.resolution.VitestResolutionCache;
+import com.github.ericjgagnon.vitest.run.structure.VitestTestDeclaration;
+import com.github.ericjgagnon.vitest.run.structure.VitestTestFileStructure;
+import com.github.ericjgagnon.vitest.run.structure.VitestTestStructureIndex;
 import com.google.common.collect.Lists;
 import com.intellij.execution.actions.ConfigurationContext;
 import com.intellij.execution.configurations.ConfigurationFactory;
@@ -20,6 +26,7 @@ import com.intellij.lang.javascript.buildTools.base.JsbtTaskFetchException;
 import com.intellij.lang.javascript.buildTools.npm.NpmScriptsService;
 import com.intellij.lang.javascript.buildTools.npm.NpmScriptsStructure;
 import com.intellij.lang.javascript.buildTools.npm.PackageJsonUtil;
+import com.intellij.lang.javascript.psi.JSCallExpression;
 import com.intellij.lang.javascript.psi.JSFile;
 import com.intellij.lang.javascript.psi.JSTestFileType;
 import com.intellij.lang.javascript.psi.util.JSProjectUtil;
@@ -29,7 +36,9 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiFileSystemItem;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -37,8 +46,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.WeakHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.github.ericjgagnon.vitest.run.VitestConstants.NODE_PACKAGE_NAME;
@@ -47,6 +59,12 @@ public class VitestRunConfigurationProducer extends JsTestRunConfigurationProduc
 
     private static final NodePackageDescriptor testRunnerPackageDescriptor = new NodePackageDescriptor(NODE_PACKAGE_NAME);
 
+    /**
+     * The platform asks every existing configuration whether it matches the same context, so the
+     * context's target is computed once and kept for as long as the context is alive
+     */
+    private final Map<ConfigurationContext, Optional<TestElementTarget>> testElementTargets = Collections.synchronizedMap(new WeakHashMap<>());
+
     protected VitestRunConfigurationProducer() {
         super(testRunnerPackageDescriptor, Collections.emptyList());
     }
@@ -77,79 +95,172 @@ public class VitestRunConfigurationProducer extends JsTestRunConfigurationProduc
 
     @Override
     protected boolean isConfigurationFromCompatibleContext(@NotNull VitestRunConfiguration configuration, @NotNull ConfigurationContext context) {
+        // Not computeIfAbsent, creating the target reads PSI and indexes and must not run under the map's lock
+        Optional<TestElementTarget> cached = testElementTargets.get(context);
+        if (cached == null) {
+            Optional<TestElementTarget> computed = Optional.ofNullable(createResolvedTarget(context));
+            cached = ObjectUtils.chooseNotNull(testElementTargets.putIfAbsent(context, computed), computed);
+        }
+        TestElementTarget target = cached.orElse(null);
+        return target != null && matches(target, configuration.getSettings());
+    }
+
+    @Nullable
+    private TestElementTarget createResolvedTarget(@NotNull ConfigurationContext context) {
         PsiElement element = context.getPsiLocation();
-        if (element == null) {
+        TestElementTarget elementTarget = element == null ? null : createTestElementTarget(element);
+        VirtualFile contextFile = element == null ? null : PsiUtilCore.getVirtualFile(element);
+        if (elementTarget == null || contextFile == null) {
+            return elementTarget;
+        }
+        return elementTarget.withResolution(resolve(element.getProject(), contextFile, NodeJsInterpreterRef.createProjectRef()));
+    }
+
+    /**
+     * Whether the settings of an existing configuration run exactly what the target would run. Only
+     * compares the scope, the directory and config file it runs with and what identifies the selection
+     * in it, so it is cheap to call for every configuration of the project.
+     */
+    static boolean matches(@NotNull TestElementTarget target, @NotNull VitestSettings settings) {
+        VitestScopeKind scopeKind = target.getScope();
+        if (scopeKind != settings.scope()) {
+            return false;
+        } else if (!samePath(target.getWorkingDirectory(), settings.workingDirectory())
+                || !samePath(target.getConfigFilePath(), settings.vitestConfigFilePath())) {
+            return false;
+        } else if (scopeKind == VitestScopeKind.ALL || scopeKind == VitestScopeKind.CHANGED) {
+            return true;
+        } else if (!Objects.equals(target.getTestFilePath(), settings.testFilePath())) {
+            return false;
+        } else if (scopeKind == VitestScopeKind.TEST_FILE || scopeKind == VitestScopeKind.DEPENDENTS) {
+            return true;
+        } else if (scopeKind == VitestScopeKind.BENCH && target.getTestNames() == null) {
+            return settings.testNames().isEmpty();
+        } else if (!Objects.equals(target.getSuiteName(), StringUtils.defaultIfEmpty(settings.suiteName(), null))
+                || target.isTemplateNames() != settings.templateNames()) {
             return false;
         } else {
-            VitestRunConfigurationProducer.TestElementInfo elementRunInfo = this.createTestElementRunInfo(element, configuration.getSettings());
-            if (elementRunInfo == null) {
-                return false;
-            } else {
-                VitestSettings thisRunSettings = elementRunInfo.getSettings();
-                VitestSettings thatRunSettings = configuration.getSettings();
-                if (!Objects.equals(thisRunSettings.vitestConfigFilePath(), thatRunSettings.vitestConfigFilePath())) {
-                    return false;
-                } else if (thisRunSettings.scope() != thatRunSettings.scope()) {
-                    return false;
-                } else {
-                    VitestScopeKind scopeKind = thisRunSettings.scope();
-                    if (scopeKind == VitestScopeKind.ALL) {
-                        return true;
-                    } else if (scopeKind == VitestScopeKind.TEST_FILE) {
-                        return Objects.equals(thisRunSettings.testFilePath(), thatRunSettings.testFilePath());
-                    } else if (scopeKind != VitestScopeKind.SUITE && scopeKind != VitestScopeKind.TEST) {
-                        return false;
-                    } else {
-                        return Objects.equals(thisRunSettings.testFilePath(), thatRunSettings.testFilePath()) && Objects.equals(thisRunSettings.testNames(), thatRunSettings.testNames());
-                    }
-                }
-            }
+            return scopeKind == VitestScopeKind.SUITE || settings.hasTestNames(target.getTestNames());
         }
     }
 
+    /**
+     * Paths are only compared when both are known, a configuration without one runs with the default
+     */
+    private static boolean samePath(@Nullable String resolvedPath, @Nullable String configuredPath) {
+        return resolvedPath == null || StringUtils.isEmpty(configuredPath) || FileUtil.pathsEqual(resolvedPath, configuredPath);
+    }
+
     private TestElementInfo createTestElementRunInfo(PsiElement element, VitestSettings settings) {
+        TestElementTarget target = createTestElementTarget(element);
+        if (target == null) {
+            return null;
+        } else {
+            VitestSettings.Builder builder = settings.toBuilder();
+            builder.scope(target.getScope());
+            if (target.getTestFilePath() != null) {
+                builder.setTestFilePath(target.getTestFilePath());
+            }
+            if (target.getSuiteName() != null) {
+                builder.setSuiteName(target.getSuiteName());
+            }
+            if (target.getTestNames() != null) {
+                builder.setTestNames(target.getTestNames());
+            }
+            builder.templateNames(target.isTemplateNames());
+            return new VitestRunConfigurationProducer.TestElementInfo(this, builder.build(), target.getElement());
+        }
+    }
+
+    @Nullable
+    TestElementTarget createTestElementTarget(@NotNull PsiElement element) {
         VirtualFile virtualFile = PsiUtilCore.getVirtualFile(element);
         if (virtualFile == null) {
             return null;
         } else {
+            Ref<TestElementTarget> indexedTarget = createIndexedTarget(element, virtualFile);
+            if (indexedTarget != null) {
+                return indexedTarget.get() != null ? indexedTarget.get() : createFileTarget(element, virtualFile);
+            }
+
             JsTestElementPath testElementPath = createSuiteOrTestData(element);
             if (testElementPath == null) {
-                return this.createFileInfo(element, virtualFile, settings);
+                return createFileTarget(element, virtualFile);
             } else {
-                VitestSettings.Builder builder = settings.toBuilder();
-                builder.setTestFilePath(virtualFile.getPath());
                 String testName = testElementPath.getTestName();
-                String suiteName = testElementPath.getSuiteNames().stream().findFirst().orElse(null);
-                if (suiteName != null) {
-                    builder.scope(VitestScopeKind.SUITE);
-                    builder.setSuiteName(suiteName);
+                String suiteName = testElementPath.getSuiteNames().isEmpty() ? null : String.join(" ", testElementPath.getSuiteNames());
+                if (testName != null) {
+                    return new TestElementTarget(VitestScopeKind.TEST, virtualFile.getPath(), suiteName, Lists.newArrayList(testName), testElementPath.getTestElement());
+                } else if (suiteName != null) {
+                    return new TestElementTarget(VitestScopeKind.SUITE, virtualFile.getPath(), suiteName, null, testElementPath.getTestElement());
+                } else {
+                    return null;
                 }
+            }
+        }
+    }
 
-                if (testName != null){
-                    builder.scope(VitestScopeKind.TEST);
-                    builder.setTestNames(Lists.newArrayList(testName));
-                }
+    /**
+     * Looks the element up in the Vitest structure index. Returns null when the index has nothing for
+     * the file, otherwise the target of the innermost declaration around the element, which is empty
+     * when the element is outside of all declarations.
+     */
+    @Nullable
+    private static Ref<TestElementTarget> createIndexedTarget(@NotNull PsiElement element, @NotNull VirtualFile virtualFile) {
+        PsiFile psiFile = element.getContainingFile();
+        TextRange textRange = element.getTextRange();
+        if (element instanceof PsiFileSystemItem || psiFile == null || textRange == null) {
+            return null;
+        }
 
-                return new VitestRunConfigurationProducer.TestElementInfo(this, builder.build(), testElementPath.getTestElement());
-            }
+        VitestTestFileStructure structure = VitestTestStructureIndex.getStructure(element.getProject(), virtualFile);
+        if (structure == null) {
+            return null;
+        }
+
+        VitestTestDeclaration declaration = structure.findDeclaration(textRange.getStartOffset(), textRange.getEndOffset());
+        if (declaration == null) {
+            return Ref.create();
+        }
+
+        PsiElement declarationElement = PsiTreeUtil.findElementOfClassAtRange(psiFile, declaration.getStartOffset(), declaration.getEndOffset(), JSCallExpression.class);
+        if (declarationElement == null) {
+            // The index is behind the document, let the PSI based lookup handle it
+            return null;
+        }
+
+        List<String> suiteNames = structure.suiteNames(declaration);
+        boolean templateNames = structure.isTemplate(declaration);
+        if (declaration.getKind() == VitestTestDeclaration.Kind.SUITE) {
+            String suiteName = suiteNames.isEmpty() ? declaration.getName() : String.join(" ", suiteNames) + " " + declaration.getName();
+            return Ref.create(new TestElementTarget(VitestScopeKind.SUITE, virtualFile.getPath(), suiteName, null, declarationElement, templateNames));
+        } else {
+            String suiteName = suiteNames.isEmpty() ? null : String.join(" ", suiteNames);
+            VitestScopeKind scopeKind = declaration.getKind() == VitestTestDeclaration.Kind.BENCH ? VitestScopeKind.BENCH : VitestScopeKind.TEST;
+            return Ref.create(new TestElementTarget(scopeKind, virtualFile.getPath(), suiteName, Lists.newArrayList(declaration.getName()), declarationElement, templateNames));
         }
     }
 
-    private TestElementInfo createFileInfo(PsiElement element, VirtualFile virtualFile, VitestSettings settings) {
+    @Nullable
+    private TestElementTarget createFileTarget(PsiElement element, VirtualFile virtualFile) {
         JSFile psiFile = ObjectUtils.tryCast(element.getContainingFile(), JSFile.class);
         JSTestFileType testFileType = psiFile == null ? null : psiFile.getTestFileType();
         if (psiFile != null && testFileType == JSTestFileType.JASMINE) {
-            VitestSettings.Builder builder = settings.toBuilder();
-            builder.scope(VitestScopeKind.TEST_FILE);
-            builder.setTestFilePath(virtualFile.getPath());
-            return new VitestRunConfigurationProducer.TestElementInfo(this, builder.build(), psiFile);
+            return new TestElementTarget(VitestScopeKind.TEST_FILE, virtualFile.getPath(), null, null, psiFile);
+        } else if (psiFile != null && testFileType == null) {
+            // Any other source file of a Vitest project runs the tests which depend on it. Finding them
+            // walks references, which is left to the launch rather than every context menu.
+            if (isInVitestProject(psiFile.getProject(), virtualFile)) {
+                return new TestElementTarget(VitestScopeKind.DEPENDENTS, virtualFile.getPath(), null, null, psiFile);
+            }
+            return null;
         } else {
             JsonFile jsonFile = ObjectUtils.tryCast(element.getContainingFile(), JsonFile.class);
             if (jsonFile != null) {
                 if (PackageJsonUtil.isPackageJsonFile(jsonFile)) {
                     JsonProperty testProp = PackageJsonUtil.findContainingTopLevelProperty(element);
                     if (testProp != null && NODE_PACKAGE_NAME.equals(testProp.getName())) {
-                        return new VitestRunConfigurationProducer.TestElementInfo(this, settings.toBuilder().scope(VitestScopeKind.ALL).build(), testProp);
+                        return new TestElementTarget(VitestScopeKind.ALL, null, null, null, testProp);
                     }
                 }
             }
@@ -158,6 +269,15 @@ public class VitestRunConfigurationProducer extends JsTestRunConfigurationProduc
         }
     }
 
+    /**
+     * Whether the file's directory resolves to a Vitest config file or an installed Vitest, answered
+     * from the resolution cache
+     */
+    private boolean isInVitestProject(@NotNull Project project, @NotNull VirtualFile file) {
+        VitestDirectoryResolution resolution = resolve(project, file, NodeJsInterpreterRef.createProjectRef());
+        return resolution.getConfigFile() != null || resolution.getVitestPackage() != null;
+    }
+
     @Nullable
     private static JsTestElementPath createSuiteOrTestData(@NotNull PsiElement element) {
 
@@ -181,13 +301,33 @@ public class VitestRunConfigurationProducer extends JsTestRunConfigurationProduc
         }
     }
 
+    /**
+     * Resolves the working directory, config file and Vitest package for the context file, cached per
+     * directory since the same answer is needed on every context menu and gutter render.
+     */
+    @NotNull
+    private VitestDirectoryResolution resolve(@NotNull Project project, @NotNull VirtualFile contextFile, @NotNull NodeJsInterpreterRef interpreter) {
+        VirtualFile directory = contextFile.isDirectory() ? contextFile : contextFile.getParent();
+        if (directory == null) {
+            return computeResolution(project, contextFile, interpreter);
+        }
+        return VitestResolutionCache.getInstance(project).resolve(directory, interpreter, () -> computeResolution(project, contextFile, interpreter));
+    }
+
+    @NotNull
+    private VitestDirectoryResolution computeResolution(@NotNull Project project, @NotNull VirtualFile contextFile, @NotNull NodeJsInterpreterRef interpreter) {
+        VirtualFile workingDirectory = guessWorkingDir(project, contextFile);
+        VirtualFile configFile = workingDirectory == null ? null : VitestConfigFiles.find(workingDirectory);
+        NodePackage vitestPackage = testRunnerPackageDescriptor.findFirstDirectDependencyPackage(project, interpreter.resolve(project), contextFile);
+        return new VitestDirectoryResolution(workingDirectory, configFile, vitestPackage);
+    }
+
     @Nullable
     private VirtualFile guessWorkingDir(@NotNull Project project, @NotNull VirtualFile contextFile) {
         Ref<VirtualFile> firstPackageJsonDir = Ref.create();
         AtomicBoolean basedOnJestDependencyDeclared = new AtomicBoolean(false);
         VirtualFile workingDir = JSProjectUtil.processDirectoriesUpToContentRootAndFindFirst(project, contextFile, (dir) -> {
-            VirtualFile config = dir.findChild("jest.config.js");
-            if (config != null && !config.isDirectory()) {
+            if (VitestConfigFiles.find(dir) != null) {
                 return dir;
             } else {
                 VirtualFile packageJson = PackageJsonUtil.findChildPackageJsonFile(dir);
@@ -223,6 +363,83 @@ public class VitestRunConfigurationProducer extends JsTestRunConfigurationProduc
         return false;
     }
 
+    /**
+     * What a context element selects to run, independent of any configuration, and the working
+     * directory and config file resolved for it when known. The names are templates when the
+     * structure index found them declared with `.each`.
+     */
+    public static final class TestElementTarget {
+        private final VitestScopeKind scope;
+        private final String testFilePath;
+        private final String suiteName;
+        private final List<String> testNames;
+        private final PsiElement element;
+        private final boolean templateNames;
+        private final String workingDirectory;
+        private final String configFilePath;
+
+        public TestElementTarget(@NotNull VitestScopeKind scope, @Nullable String testFilePath, @Nullable String suiteName, @Nullable List<String> testNames, @Nullable PsiElement element) {
+            this(scope, testFilePath, suiteName, testNames, element, false);
+        }
+
+        public TestElementTarget(@NotNull VitestScopeKind scope, @Nullable String testFilePath, @Nullable String suiteName, @Nullable List<String> testNames, @Nullable PsiElement element,
+                                 boolean templateNames) {
+            this(scope, testFilePath, suiteName, testNames, element, templateNames, null, null);
+        }
+
+        public TestElementTarget(@NotNull VitestScopeKind scope, @Nullable String testFilePath, @Nullable String suiteName, @Nullable List<String> testNames, @Nullable PsiElement element,
+                                 boolean templateNames, @Nullable String workingDirectory, @Nullable String configFilePath) {
+            this.scope = scope;
+            this.testFilePath = testFilePath;
+            this.suiteName = suiteName;
+            this.testNames = testNames;
+            this.element = element;
+            this.templateNames = templateNames;
+            this.workingDirectory = workingDirectory;
+            this.configFilePath = configFilePath;
+        }
+
+        public @NotNull TestElementTarget withResolution(@NotNull VitestDirectoryResolution resolution) {
+            VirtualFile resolvedDirectory = resolution.getWorkingDirectory();
+            VirtualFile resolvedConfigFile = resolution.getConfigFile();
+            return new TestElementTarget(scope, testFilePath, suiteName, testNames, element, templateNames,
+                    resolvedDirectory == null ? null : FileUtil.toSystemDependentName(resolvedDirectory.getPath()),
+                    resolvedConfigFile == null ? null : FileUtil.toSystemDependentName(resolvedConfigFile.getPath()));
+        }
+
+        public @NotNull VitestScopeKind getScope() {
+            return scope;
+        }
+
+        public @Nullable String getTestFilePath() {
+            return testFilePath;
+        }
+
+        public @Nullable String getSuiteName() {
+            return suiteName;
+        }
+
+        public @Nullable List<String> getTestNames() {
+            return testNames;
+        }
+
+        public @Nullable PsiElement getElement() {
+            return element;
+        }
+
+        public boolean isTemplateNames() {
+            return templateNames;
+        }
+
+        public @Nullable String getWorkingDirectory() {
+            return workingDirectory;
+        }
+
+        public @Nullable String getConfigFilePath() {
+            return configFilePath;
+        }
+    }
+
     public static class TestElementInfo {
         private final VitestSettings settings;
         private final PsiElement element;
@@ -232,26 +449,27 @@ public class VitestRunConfigurationProducer extends JsTestRunConfigurationProduc
 
             VitestSettings.Builder settingsBuilder = settings.toBuilder();
             NodePackage vitestPackage = settings.vittestPackage();
-            if (settings.vittestPackage() == null) {
-                Project project = element.getProject();
+            String workingDirectoryPath = settings.workingDirectory();
+            if (vitestPackage == null || StringUtils.isEmpty(workingDirectoryPath)) {
                 VirtualFile contextFile = Objects.requireNonNull(PsiUtilCore.getVirtualFile(element));
                 NodeJsInterpreterRef interpreter = Optional.ofNullable(settings.interpreter()).orElseGet(NodeJsInterpreterRef::createProjectRef);
-                vitestPackage = VitestRunConfigurationProducer.testRunnerPackageDescriptor.findFirstDirectDependencyPackage(project, interpreter.resolve(project), contextFile);
+                VitestDirectoryResolution resolution = configurationProducer.resolve(element.getProject(), contextFile, interpreter);
+                if (vitestPackage == null) {
+                    vitestPackage = resolution.getVitestPackage();
+                }
+
+                if (StringUtils.isEmpty(workingDirectoryPath) && resolution.getWorkingDirectory() != null) {
+                    workingDirectoryPath = FileUtil.toSystemDependentName(resolution.getWorkingDirectory().getPath());
+                    if (StringUtils.isEmpty(settings.vitestConfigFilePath()) && resolution.getConfigFile() != null) {
+                        settingsBuilder.vitestConfigFilePath(FileUtil.toSystemDependentName(resolution.getConfigFile().getPath()));
+                    }
+                }
             }
 
             if (vitestPackage != null) {
                 settingsBuilder.vitestPackage(vitestPackage);
             }
 
-            String workingDirectoryPath = settings.workingDirectory();
-            if (StringUtils.isEmpty(settings.workingDirectory())) {
-                VirtualFile contextFile = Objects.requireNonNull(PsiUtilCore.getVirtualFile(element));
-                VirtualFile workingDirectory = configurationProducer.guessWorkingDir(element.getProject(), contextFile);
-                if (workingDirectory != null) {
-                    workingDirectoryPath = FileUtil.toSystemDependentName(workingDirectory.getPath());
-                }
-            }
-
             if (workingDirectoryPath != null) {
                 settingsBuilder.workingDirectory(workingDirectoryPath);
             }
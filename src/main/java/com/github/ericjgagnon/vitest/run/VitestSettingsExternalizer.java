@@ -0,0 +1,258 @@
+package com.github.ericjgagnon.vitest.run;
+
+import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef;
+import com.intellij.javascript.nodejs.util.NodePackage;
+import com.intellij.openapi.util.JDOMExternalizerUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads and writes the {@link VitestSettings} of a run configuration as the custom fields of its
+ * XML element. Kept apart from {@link VitestRunConfiguration} so it can be used without a project.
+ */
+public final class VitestSettingsExternalizer {
+
+    /**
+     * Marks test names saved with the whole path of suites they are nested in as the suite name.
+     * Older configurations of a test saved only the outermost suite, which is dropped on read so their
+     * names select the tests in any suite, as they used to.
+     */
+    private static final String SUITE_PATH_FIELD = "suite-path";
+
+    private VitestSettingsExternalizer() {
+    }
+
+    @NotNull
+    public static VitestSettings read(@NotNull Element element) {
+        String interpreterRef = JDOMExternalizerUtil.readCustomField(element, "node-interpreter");
+        String nodeOptions = JDOMExternalizerUtil.readCustomField(element, "node-options");
+        String vitestPackage = JDOMExternalizerUtil.readCustomField(element, "vitest-package");
+        String vitestConfig = JDOMExternalizerUtil.readCustomField(element, "vitest-config");
+        String workingDir = JDOMExternalizerUtil.readCustomField(element, "working-dir");
+        String vitestScope = JDOMExternalizerUtil.readCustomField(element, "test-scope");
+        String suiteName = JDOMExternalizerUtil.readCustomField(element, "suite-name");
+        boolean suitePath = Boolean.parseBoolean(JDOMExternalizerUtil.readCustomField(element, SUITE_PATH_FIELD));
+        String testFilePath = JDOMExternalizerUtil.readCustomField(element, "test-file-path");
+        String keepWarm = JDOMExternalizerUtil.readCustomField(element, "keep-warm");
+        String shards = JDOMExternalizerUtil.readCustomField(element, "shards");
+        String testOrder = JDOMExternalizerUtil.readCustomField(element, "test-order");
+        String bail = JDOMExternalizerUtil.readCustomField(element, "bail");
+        String changedSince = JDOMExternalizerUtil.readCustomField(element, "changed-since");
+        String benchmarkThreshold = JDOMExternalizerUtil.readCustomField(element, "benchmark-threshold");
+        String watch = JDOMExternalizerUtil.readCustomField(element, "watch");
+        String packageConcurrency = JDOMExternalizerUtil.readCustomField(element, "package-concurrency");
+        String templateNames = JDOMExternalizerUtil.readCustomField(element, "template-names");
+        List<String> testNames = Optional.ofNullable(element.getChild("test-names"))
+                .map(testNamesElement -> {
+                    return JDOMExternalizerUtil.getChildrenValueAttributes(testNamesElement, "test-name");
+                }).orElseGet(ArrayList::new);
+
+        VitestSettings.Builder settingsBuilder = new VitestSettings.Builder();
+
+        Optional.ofNullable(interpreterRef)
+                .filter(StringUtils::isNotEmpty)
+                .map(NodeJsInterpreterRef::create)
+                .ifPresentOrElse(settingsBuilder::interpreter, () -> {
+                    settingsBuilder.interpreter(NodeJsInterpreterRef.createProjectRef());
+                });
+
+        Optional.ofNullable(nodeOptions)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(settingsBuilder::setNodeOptions);
+
+        Optional.ofNullable(vitestPackage)
+                .filter(StringUtils::isNotEmpty)
+                .map(NodePackage::new)
+                .ifPresent(settingsBuilder::vitestPackage);
+
+        Optional.ofNullable(vitestConfig)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(settingsBuilder::vitestConfigFilePath);
+
+        Optional.ofNullable(workingDir)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(settingsBuilder::workingDirectory);
+
+        Optional.ofNullable(suiteName)
+                .filter(StringUtils::isNotEmpty)
+                .filter(name -> suitePath || testNames.isEmpty() || !VitestScopeKind.TEST.name().equals(vitestScope))
+                .ifPresent(settingsBuilder::suiteName);
+
+        Optional.ofNullable(testFilePath)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(settingsBuilder::testFilePath);
+
+        settingsBuilder.testNames(testNames);
+
+        settingsBuilder.templateNames(Boolean.parseBoolean(templateNames));
+
+        settingsBuilder.keepWarm(Boolean.parseBoolean(keepWarm));
+
+        Optional.ofNullable(shards)
+                .filter(StringUtils::isNumeric)
+                .map(Integer::parseInt)
+                .ifPresent(settingsBuilder::shards);
+
+        Optional.ofNullable(testOrder)
+                .filter(StringUtils::isNotEmpty)
+                .map(VitestTestOrder::valueOf)
+                .ifPresent(settingsBuilder::testOrder);
+
+        settingsBuilder.bail(Boolean.parseBoolean(bail));
+
+        Optional.ofNullable(changedSince)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(settingsBuilder::changedSince);
+
+        Optional.ofNullable(benchmarkThreshold)
+                .filter(StringUtils::isNumeric)
+                .map(Integer::parseInt)
+                .ifPresent(settingsBuilder::benchmarkThreshold);
+
+        settingsBuilder.watch(Boolean.parseBoolean(watch));
+
+        Optional.ofNullable(packageConcurrency)
+                .filter(StringUtils::isNumeric)
+                .map(Integer::parseInt)
+                .ifPresent(settingsBuilder::packageConcurrency);
+
+        Optional.ofNullable(vitestScope)
+                .filter(StringUtils::isNotEmpty)
+                .map(VitestScopeKind::valueOf)
+                .ifPresent(settingsBuilder::scope);
+
+        return settingsBuilder.build();
+    }
+
+    public static void write(@NotNull VitestSettings settings, @NotNull Element element) {
+        Optional.ofNullable(settings)
+                .map(VitestSettings::interpreter)
+                .map(NodeJsInterpreterRef::getReferenceName)
+                .ifPresent(ref -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "node-interpreter", ref);
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::nodeOptions)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(options -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "node-options", options);
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::vittestPackage)
+                .ifPresent(testPackage -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "vitest-package", testPackage.getSystemIndependentPath());
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::vitestConfigFilePath)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(configPath -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "vitest-config", FileUtil.toSystemIndependentName(configPath));
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::workingDirectory)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(workingDir -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "working-dir", FileUtil.toSystemIndependentName(workingDir));
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::suiteName)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(suiteName -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "suite-name", suiteName);
+                    JDOMExternalizerUtil.writeCustomField(element, SUITE_PATH_FIELD, Boolean.TRUE.toString());
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::testFilePath)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(testFilePath -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "test-file-path", FileUtil.toSystemIndependentName(testFilePath));
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::testNames)
+                .filter(CollectionUtils::isNotEmpty)
+                .ifPresent(testNames -> {
+                    Element testNamesElement = new Element("test-names");
+                    JDOMExternalizerUtil.addChildrenWithValueAttribute(testNamesElement, "test-name", testNames);
+                    element.addContent(testNamesElement);
+                });
+
+        Optional.ofNullable(settings)
+                .filter(VitestSettings::templateNames)
+                .ifPresent(templateNames -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "template-names", Boolean.TRUE.toString());
+                });
+
+        Optional.ofNullable(settings)
+                .filter(VitestSettings::keepWarm)
+                .ifPresent(keepWarm -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "keep-warm", Boolean.TRUE.toString());
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::shards)
+                .filter(shards -> shards > 1)
+                .ifPresent(shards -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "shards", shards.toString());
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::testOrder)
+                .filter(testOrder -> testOrder != VitestTestOrder.DEFAULT)
+                .ifPresent(testOrder -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "test-order", testOrder.name());
+                });
+
+        Optional.ofNullable(settings)
+                .filter(VitestSettings::bail)
+                .ifPresent(bail -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "bail", Boolean.TRUE.toString());
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::changedSince)
+                .filter(StringUtils::isNotEmpty)
+                .ifPresent(changedSince -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "changed-since", changedSince);
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::benchmarkThreshold)
+                .filter(threshold -> threshold != VitestSettings.DEFAULT_BENCHMARK_THRESHOLD)
+                .ifPresent(threshold -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "benchmark-threshold", threshold.toString());
+                });
+
+        Optional.ofNullable(settings)
+                .filter(VitestSettings::watch)
+                .ifPresent(watch -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "watch", Boolean.TRUE.toString());
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::packageConcurrency)
+                .filter(concurrency -> concurrency != VitestSettings.DEFAULT_PACKAGE_CONCURRENCY)
+                .ifPresent(concurrency -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "package-concurrency", concurrency.toString());
+                });
+
+        Optional.ofNullable(settings)
+                .map(VitestSettings::scope)
+                .ifPresentOrElse(scope -> {
+                    JDOMExternalizerUtil.writeCustomField(element, "test-scope", scope.name());
+                }, () -> JDOMExternalizerUtil.writeCustomField(element, "test-scope", VitestScopeKind.ALL.name()));
+    }
+}
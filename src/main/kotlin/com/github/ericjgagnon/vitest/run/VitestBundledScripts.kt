@@ -0,0 +1,56 @@
+package com.github.ericjgagnon.vitest.run
+
+import com.github.ericjgagnon.vitest.run.VitestConstants.DAEMON_JS_FILE_NAME
+import com.github.ericjgagnon.vitest.run.VitestConstants.REPORTER_JS_FILE_NAME
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.util.SystemInfo
+import com.intellij.openapi.util.io.FileUtil
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Scripts bundled in the plugin jar which are handed to Node. Each one is extracted once into the
+ * IDE system directory under a name derived from its content hash, so every run of every project
+ * shares the same file and a new plugin version never picks up a stale copy.
+ */
+object VitestBundledScripts {
+
+    private val extracted = ConcurrentHashMap<String, Path>()
+
+    @JvmStatic
+    fun reporter(): Path = extract("reporter", REPORTER_JS_FILE_NAME, ".js")
+
+    @JvmStatic
+    fun daemon(): Path = extract("daemon", DAEMON_JS_FILE_NAME, ".mjs")
+
+    private fun extract(entry: String, fileName: String, extension: String): Path {
+        return extracted.computeIfAbsent(entry) {
+            val os = if (SystemInfo.isWindows) "windows" else "nix"
+            val resource = "/vitest-intellij-plugin/dist/$entry.$os.js"
+            val bytes = VitestBundledScripts::class.java.getResourceAsStream(resource)
+                ?.use { it.readBytes() }
+                ?: throw IllegalStateException("Missing bundled script $resource")
+
+            val directory = Path.of(PathManager.getSystemPath(), "vitest")
+            val target = directory.resolve("$fileName-${sha256(bytes).take(16)}$extension")
+            if (!Files.isRegularFile(target) || Files.size(target) != bytes.size.toLong()) {
+                Files.createDirectories(directory)
+                val temp = Files.createTempFile(directory, fileName, ".tmp")
+                try {
+                    Files.write(temp, bytes)
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+                } finally {
+                    FileUtil.delete(temp)
+                }
+            }
+            target
+        }
+    }
+
+    private fun sha256(bytes: ByteArray): String {
+        return MessageDigest.getInstance("SHA-256").digest(bytes).joinToString("") { "%02x".format(it) }
+    }
+}
@@ -1,15 +1,28 @@
 package com.github.ericjgagnon.vitest.run
 
 import com.github.ericjgagnon.vitest.run.VitestConstants.TEST_FRAMEWORK_NAME
+import com.github.ericjgagnon.vitest.run.bench.VitestBenchmarkBaselines
+import com.github.ericjgagnon.vitest.run.channel.VitestEventChannel
+import com.github.ericjgagnon.vitest.run.channel.VitestTestEventsConverter
+import com.github.ericjgagnon.vitest.run.history.VitestSlowerThanUsualFilterAction
+import com.github.ericjgagnon.vitest.run.timing.VitestPhaseTimings
 import com.intellij.execution.Executor
 import com.intellij.execution.process.ProcessHandler
+import com.intellij.execution.testframework.TestConsoleProperties
 import com.intellij.execution.testframework.actions.AbstractRerunFailedTestsAction
+import com.intellij.execution.testframework.sm.SMCustomMessagesParsing
+import com.intellij.execution.testframework.sm.runner.OutputToGeneralTestEventsConverter
 import com.intellij.execution.testframework.sm.runner.SMTestLocator
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
 import com.intellij.execution.testframework.sm.runner.ui.SMTRunnerConsoleView
+import com.intellij.execution.testframework.sm.runner.ui.SMTestRunnerResultsForm
 import com.intellij.execution.ui.ConsoleView
 import com.intellij.javascript.nodejs.execution.NodeTargetRun
 import com.intellij.javascript.testing.JsTestConsoleProperties
+import com.intellij.openapi.actionSystem.DefaultActionGroup
 import com.intellij.terminal.TerminalExecutionConsole
+import com.intellij.util.containers.ContainerUtil
+import javax.swing.JComponent
 
 class VitestConsoleProperties(
     configuration: VitestRunConfiguration,
@@ -17,17 +30,83 @@ class VitestConsoleProperties(
     private val locator: SMTestLocator,
     private val withTerminalConsole: Boolean,
     targetRun: NodeTargetRun?
-) : JsTestConsoleProperties(configuration, TEST_FRAMEWORK_NAME, executor, targetRun) {
+) : JsTestConsoleProperties(configuration, TEST_FRAMEWORK_NAME, executor, targetRun), SMCustomMessagesParsing {
     init {
         this.isUsePredefinedMessageFilter = false
         setIfUndefined(HIDE_PASSED_TESTS, false)
         setIfUndefined(HIDE_IGNORED_TEST, true)
         setIfUndefined(SCROLL_TO_SOURCE, true)
         setIfUndefined(SELECT_FIRST_DEFECT, true)
-        this.isIdBasedTestTree = false
+        this.isIdBasedTestTree = true
         this.isPrintTestingStartedTime = false
     }
 
+    /**
+     * The results form of the console created for these properties, set once the console exists
+     */
+    var resultsForm: SMTestRunnerResultsForm? = null
+
+    /**
+     * The channel the reporter sends its messages over when the run has one, must be set before the
+     * console is attached to the process
+     */
+    var eventChannel: VitestEventChannel? = null
+
+    /**
+     * The test files the run was started with, for the dependents and changed scopes the ones found to be affected
+     */
+    var testFilePaths: List<String> = emptyList()
+
+    /**
+     * Phase timings of the current run, reported by the reporter before the run finishes
+     */
+    val phaseTimings = VitestPhaseTimings()
+
+    private val benchmarkThreshold = configuration.settings.benchmarkThreshold()
+
+    private val slowerThanUsual: MutableSet<SMTestProxy> = ContainerUtil.newConcurrentSet()
+    private var slowerThanUsualFilterAction: VitestSlowerThanUsualFilterAction? = null
+
+    /**
+     * Marks the test and the suites containing it for the slower than usual filter
+     */
+    fun markSlowerThanUsual(test: SMTestProxy) {
+        var proxy: SMTestProxy? = test
+        while (proxy != null && slowerThanUsual.add(proxy)) {
+            proxy = proxy.parent
+        }
+    }
+
+    fun isSlowerThanUsual(test: SMTestProxy): Boolean = slowerThanUsual.contains(test)
+
+    /**
+     * Forgets the tests of the last run when the console runs again and turns the filter off, which
+     * would otherwise hide the new run until it finished
+     */
+    fun resetSlowerThanUsual() {
+        slowerThanUsual.clear()
+        slowerThanUsualFilterAction?.reset()
+    }
+
+    override fun appendAdditionalActions(actionGroup: DefaultActionGroup, parent: JComponent, target: TestConsoleProperties) {
+        super.appendAdditionalActions(actionGroup, parent, target)
+        actionGroup.add(VitestSlowerThanUsualFilterAction(this).also { slowerThanUsualFilterAction = it })
+    }
+
+    override fun createTestEventsConverter(
+        testFrameworkName: String,
+        consoleProperties: TestConsoleProperties
+    ): OutputToGeneralTestEventsConverter {
+        return VitestTestEventsConverter(
+            testFrameworkName,
+            consoleProperties,
+            eventChannel,
+            phaseTimings,
+            VitestBenchmarkBaselines.getInstance(project),
+            benchmarkThreshold
+        )
+    }
+
     override fun getTestLocator(): SMTestLocator? {
         return locator
     }
@@ -19,4 +19,19 @@ object VitestConstants {
         "vitest.config.cts"
     )
     const val REPORTER_JS_FILE_NAME = "intellij-vitest-reporter"
+    const val DAEMON_JS_FILE_NAME = "intellij-vitest-daemon"
+    const val RUN_STATS_MESSAGE = "vitestRunStats"
+    const val RUN_STATS_ENV = "VITEST_INTELLIJ_RUN_STATS"
+    const val RUN_TIMINGS_MESSAGE = "vitestRunTimings"
+    const val FILE_TIMINGS_MESSAGE = "vitestFileTimings"
+    const val BENCHMARK_RESULT_MESSAGE = "vitestBenchmarkResult"
+    const val PRIORITY_FILE_ENV = "VITEST_INTELLIJ_PRIORITY_FILE"
+    const val BAIL_ENV = "VITEST_INTELLIJ_BAIL"
+    const val EVENTS_PORT_ENV = "VITEST_INTELLIJ_EVENTS_PORT"
+    const val EVENTS_TOKEN_ENV = "VITEST_INTELLIJ_EVENTS_TOKEN"
+    const val CHANNEL_CLOSED_MESSAGE = "vitestEventChannelClosed"
+    const val MERGE_RESULTS_ENV = "VITEST_INTELLIJ_MERGE_RESULTS"
+    const val REPLAYED_METAINFO = "vitest-replayed"
+    // Executor of the bundled coverage plugin, compared by id so the plugin is not a dependency
+    const val COVERAGE_EXECUTOR_ID = "Coverage"
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.github.ericjgagnon.vitest.run
+
+import com.github.ericjgagnon.vitest.run.utils.TestProxyUtils
+import com.intellij.execution.testframework.AbstractTestProxy
+
+/**
+ * Failed tests of a finished run to run again, by full name and by the files they are declared in.
+ * [testFilePaths] is null when a failure has no file, since such a rerun can't be narrowed down to files.
+ */
+class VitestFailedTests(val names: List<String>, val testFilePaths: List<String>?) {
+
+    /**
+     * [settings] narrowed to these tests. Benchmarks stay in the benchmark scope so they are measured again.
+     * The names are the ones the tests were reported with, so `.each` cases are matched literally.
+     */
+    fun rerunSettings(settings: VitestSettings): VitestSettings {
+        val builder = settings.toBuilder()
+        builder.suiteName = null
+        builder.testNames(names)
+        builder.templateNames(false)
+        builder.scope(if (settings.scope() == VitestScopeKind.BENCH) VitestScopeKind.BENCH else VitestScopeKind.TEST)
+        return builder.build()
+    }
+
+    companion object {
+        /**
+         * The [tests] with their names relative to [suite], which is left out of them
+         */
+        fun of(tests: List<AbstractTestProxy>, suite: AbstractTestProxy? = null): VitestFailedTests {
+            val testFilePaths = tests.map(TestProxyUtils::testFilePath)
+            return VitestFailedTests(
+                tests.map { TestProxyUtils.fullName(it, suite) },
+                if (testFilePaths.isEmpty() || testFilePaths.contains(null)) null else testFilePaths.filterNotNull().distinct()
+            )
+        }
+    }
+}
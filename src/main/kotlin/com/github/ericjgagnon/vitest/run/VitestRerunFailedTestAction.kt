@@ -3,26 +3,37 @@ package com.github.ericjgagnon.vitest.run
 import com.intellij.execution.Executor
 import com.intellij.execution.configurations.RunProfileState
 import com.intellij.execution.runners.ExecutionEnvironment
+import com.intellij.execution.testframework.AbstractTestProxy
 import com.intellij.execution.testframework.actions.AbstractRerunFailedTestsAction
 import com.intellij.execution.testframework.sm.runner.ui.SMTRunnerConsoleView
 
-class VitestRerunFailedTestAction(consoleView: SMTRunnerConsoleView, consoleProperties: VitestConsoleProperties): AbstractRerunFailedTestsAction(consoleView) {
+class VitestRerunFailedTestAction(consoleView: SMTRunnerConsoleView, private val consoleProperties: VitestConsoleProperties): AbstractRerunFailedTestsAction(consoleView) {
 
     init {
         this.myConsoleProperties = consoleProperties
         this.model = consoleView.resultsViewer
     }
 
+    /**
+     * Reruns the failed tests in a single process which only collects the files they are declared in.
+     * A run of workspace packages reruns the failed tests of each package in a process of its own.
+     */
     override fun getRunProfile(environment: ExecutionEnvironment): MyRunProfile? {
         val runConfiguration = myConsoleProperties.configuration as VitestRunConfiguration
-        val failedTests = getFailedTests(runConfiguration.project)
-        val failedTestNames = failedTests.filter { it.isLeaf && it.name != null }.map { it.name }
+        val failedTests = getFailedTests(runConfiguration.project).filter { it.isLeaf && it.name != null }
 
-        val testSettingsBuilder = runConfiguration.settings.toBuilder()
-        testSettingsBuilder.testNames(failedTestNames)
-        runConfiguration.setRunSettings(testSettingsBuilder.build())
-
-        val rerunState = VitestRunProfileState(runConfiguration, environment)
+        val rerunState = if (runConfiguration.settings.scope() == VitestScopeKind.PACKAGES) {
+            val failedTestsByPackage = failedTests.groupBy(::packageSuite)
+                .mapNotNull { (suite, tests) -> suite?.let { it.name to VitestFailedTests.of(tests, it) } }
+                .toMap()
+            VitestRunProfileState(runConfiguration, environment, runConfiguration.settings, failedTestsByPackage = failedTestsByPackage)
+        } else {
+            val failed = VitestFailedTests.of(failedTests)
+            // A failure without a file can't be narrowed down, so those reruns keep the test files the
+            // original run resolved, never the source file of a dependents or changed run
+            val testFilePaths = failed.testFilePaths ?: consoleProperties.testFilePaths
+            VitestRunProfileState(runConfiguration, environment, failed.rerunSettings(runConfiguration.settings), testFilePaths)
+        }
 
         return object: MyRunProfile(runConfiguration) {
             override fun getState(executor: Executor, environment: ExecutionEnvironment): RunProfileState? {
@@ -30,4 +41,11 @@ class VitestRerunFailedTestAction(consoleView: SMTRunnerConsoleView, consoleProp
             }
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * The suite a packages run groups the tests of the test's package under, right below the root
+     */
+    private fun packageSuite(test: AbstractTestProxy): AbstractTestProxy? {
+        return generateSequence(test) { it.parent }.firstOrNull { it.isSuite && it.parent != null && it.parent?.parent == null }
+    }
+}
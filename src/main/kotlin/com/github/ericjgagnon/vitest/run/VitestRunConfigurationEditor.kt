@@ -1,6 +1,7 @@
 package com.github.ericjgagnon.vitest.run
 
 import com.github.ericjgagnon.vitest.run.VitestConstants.CONFIG_FILE_NAMES
+import com.github.ericjgagnon.vitest.run.history.VitestResultHistory
 import com.github.ericjgagnon.vitest.run.utils.FormUtils.fileSystemCell
 import com.github.ericjgagnon.vitest.run.views.VitestStructuredScopeView
 import com.intellij.execution.configuration.EnvironmentVariablesTextFieldWithBrowseButton
@@ -12,6 +13,9 @@ import com.intellij.openapi.options.SettingsEditor
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.ui.DialogPanel
 import com.intellij.openapi.ui.TextFieldWithBrowseButton
+import com.intellij.ui.JBIntSpinner
+import com.intellij.openapi.ui.ComboBox
+import com.intellij.ui.components.JBCheckBox
 import com.intellij.ui.dsl.builder.panel
 import com.intellij.ui.dsl.gridLayout.HorizontalAlign
 import java.util.Optional
@@ -27,10 +31,20 @@ class VitestRunConfigurationEditor(
     private var vitestJsPackageField: NodePackageField = NodePackageField(nodeInterpreterField, "vitest")
     private var viteConfigFilePathField: TextFieldWithBrowseButton = TextFieldWithBrowseButton()
     private var workingDirectoryField: TextFieldWithBrowseButton = TextFieldWithBrowseButton()
+    private var keepWarmField: JBCheckBox = JBCheckBox("Keep Vitest process warm between runs")
+    private var watchField: JBCheckBox = JBCheckBox("Rerun affected tests on save")
+    private var shardsField: JBIntSpinner = JBIntSpinner(1, 1, 64)
+    private var testOrderField: ComboBox<VitestTestOrder> = ComboBox(VitestTestOrder.values())
+    private var bailField: JBCheckBox = JBCheckBox("Stop at the first failure")
     private var vitestScopeView = VitestStructuredScopeView(project)
 
     private lateinit var editor: DialogPanel
 
+    /**
+     * The saved test file or working directory of the configuration, whose baselines can be reset
+     */
+    private var baselinePath: String? = null
+
     override fun resetEditorFrom(runConfiguration: VitestRunConfiguration) {
         val settings = runConfiguration.settings
         nodeInterpreterField.interpreterRef = settings.interpreter() ?: NodeJsInterpreterRef.createProjectRef()
@@ -38,7 +52,13 @@ class VitestRunConfigurationEditor(
         Optional.ofNullable(settings.vittestPackage()).ifPresent(vitestJsPackageField::setSelected)
         Optional.ofNullable(settings.vitestConfigFilePath()).ifPresent(viteConfigFilePathField::setText)
         Optional.ofNullable(settings.workingDirectory()).ifPresent(workingDirectoryField::setText)
+        keepWarmField.isSelected = settings.keepWarm()
+        watchField.isSelected = settings.watch()
+        shardsField.number = settings.shards()
+        testOrderField.item = settings.testOrder()
+        bailField.isSelected = settings.bail()
         vitestScopeView.setFromSettings(settings)
+        baselinePath = if (settings.scope() == VitestScopeKind.ALL) settings.workingDirectory() else settings.testFilePath()
     }
 
     override fun applyEditorTo(runConfiguration: VitestRunConfiguration) {
@@ -48,6 +68,11 @@ class VitestRunConfigurationEditor(
         vitestSettingsBuilder.vitestPackage(vitestJsPackageField.selected)
         vitestSettingsBuilder.vitestConfigFilePath(viteConfigFilePathField.text)
         vitestSettingsBuilder.workingDirectory(workingDirectoryField.text)
+        vitestSettingsBuilder.keepWarm(keepWarmField.isSelected)
+        vitestSettingsBuilder.watch(watchField.isSelected)
+        vitestSettingsBuilder.shards(shardsField.number)
+        vitestSettingsBuilder.testOrder(testOrderField.item ?: VitestTestOrder.DEFAULT)
+        vitestSettingsBuilder.bail(bailField.isSelected)
         vitestScopeView.updateSettings(vitestSettingsBuilder)
 
         val vitestSettings = vitestSettingsBuilder.build()
@@ -76,6 +101,30 @@ class VitestRunConfigurationEditor(
                     }
                 )
             }
+            row {
+                cell(keepWarmField)
+                    .comment("Reuses one Vitest process per working directory and configuration file. Not used when debugging.")
+            }
+            row {
+                cell(watchField)
+                    .comment("Keeps the run open in a warm Vitest process and reruns the tests affected by every save. Not used when debugging.")
+            }
+            row("Shards:") {
+                cell(shardsField)
+                    .comment("Splits the test files across this many Vitest processes. Not used when debugging.")
+            }
+            row("Test order:") {
+                cell(testOrderField)
+                    .comment("Ranks test files by the results of previous runs.")
+            }
+            row {
+                cell(bailField)
+            }
+            row {
+                button("Reset Duration Baselines") {
+                    VitestResultHistory.getInstance(project).resetBaselines(baselinePath?.takeIf { it.isNotBlank() })
+                }.comment("Tests slower than their baseline are reported after a run.")
+            }
             with(vitestScopeView) {
                 render()
             }
@@ -1,46 +1,90 @@
 package com.github.ericjgagnon.vitest.run
 
+import com.github.ericjgagnon.vitest.run.VitestConstants.BAIL_ENV
+import com.github.ericjgagnon.vitest.run.VitestConstants.EVENTS_PORT_ENV
+import com.github.ericjgagnon.vitest.run.VitestConstants.EVENTS_TOKEN_ENV
+import com.github.ericjgagnon.vitest.run.VitestConstants.MERGE_RESULTS_ENV
+import com.github.ericjgagnon.vitest.run.VitestConstants.PRIORITY_FILE_ENV
 import com.github.ericjgagnon.vitest.run.VitestConstants.REPORTER_JS_FILE_NAME
+import com.github.ericjgagnon.vitest.run.VitestConstants.RUN_STATS_ENV
 import com.github.ericjgagnon.vitest.run.VitestConstants.TEST_FRAMEWORK_NAME
-import com.github.ericjgagnon.vitest.run.utils.withNotNullNorEmpty
+import com.github.ericjgagnon.vitest.run.changes.VitestAffectedTestsCache
+import com.github.ericjgagnon.vitest.run.changes.VitestChangedFiles
+import com.github.ericjgagnon.vitest.run.channel.VitestEventChannel
+import com.github.ericjgagnon.vitest.run.coverage.VitestCoverageProgramRunner
+import com.github.ericjgagnon.vitest.run.daemon.VitestDaemonKey
+import com.github.ericjgagnon.vitest.run.daemon.VitestDaemonRunProcessHandler
+import com.github.ericjgagnon.vitest.run.daemon.VitestDaemonService
+import com.github.ericjgagnon.vitest.run.dependents.VitestDependentTestsFinder
+import com.github.ericjgagnon.vitest.run.history.VitestResultHistory
+import com.github.ericjgagnon.vitest.run.history.VitestResultHistoryListener
+import com.github.ericjgagnon.vitest.run.parallel.VitestParallelProcess
+import com.github.ericjgagnon.vitest.run.parallel.VitestParallelProcessHandler
+import com.github.ericjgagnon.vitest.run.timing.VitestPhaseTimingsListener
+import com.github.ericjgagnon.vitest.run.watch.VitestWatchProcessHandler
+import com.github.ericjgagnon.vitest.run.workspace.VitestWorkspacePackage
+import com.github.ericjgagnon.vitest.run.workspace.VitestWorkspacePackages
 import com.intellij.execution.DefaultExecutionResult
+import com.intellij.execution.ExecutionException
 import com.intellij.execution.ExecutionResult
 import com.intellij.execution.filters.Filter
+import com.intellij.execution.process.ProcessAdapter
+import com.intellij.execution.process.ProcessEvent
 import com.intellij.execution.process.ProcessHandler
+import com.intellij.execution.process.ProcessOutputTypes
 import com.intellij.execution.process.ProcessTerminatedListener
 import com.intellij.execution.runners.ExecutionEnvironment
 import com.intellij.execution.testframework.sm.SMTestRunnerConnectionUtil
+import com.intellij.execution.testframework.sm.runner.ui.SMTRunnerConsoleView
 import com.intellij.javascript.debugger.CommandLineDebugConfigurator
 import com.intellij.javascript.nodejs.NodeCommandLineUtil
 import com.intellij.javascript.nodejs.NodeConsoleAdditionalFilter
-import com.intellij.javascript.nodejs.NodeModuleDirectorySearchProcessor
-import com.intellij.javascript.nodejs.NodeModuleSearchUtil
 import com.intellij.javascript.nodejs.NodeStackTraceFilter
 import com.intellij.javascript.nodejs.debug.NodeCommandLineOwner
 import com.intellij.javascript.nodejs.execution.NodeBaseRunProfileState
 import com.intellij.javascript.nodejs.execution.NodeTargetRun
 import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreter
 import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef
+import com.intellij.javascript.nodejs.interpreter.local.NodeJsLocalInterpreter
 import com.intellij.javascript.nodejs.util.NodePackage
 import com.intellij.lang.javascript.ConsoleCommandLineFolder
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.progress.ProgressManager
 import com.intellij.openapi.project.Project
-import com.intellij.openapi.util.SystemInfo
+import com.intellij.openapi.util.ThrowableComputable
 import com.intellij.openapi.util.io.FileUtil
 import com.intellij.openapi.vfs.LocalFileSystem
+import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.util.PathUtil
 import java.io.File
+import java.io.IOException
 import java.nio.file.Files
+import java.nio.file.Path
 
-class VitestRunProfileState(
+private val LOG = logger<VitestRunProfileState>()
+
+class VitestRunProfileState @JvmOverloads constructor(
     private val vitestRunConfiguration: VitestRunConfiguration,
     private val environment: ExecutionEnvironment,
+    private val settings: VitestSettings = vitestRunConfiguration.settings,
+    private val requestedTestFilePaths: List<String> = listOfNotNull(settings.testFilePath()),
+    /**
+     * Narrows a packages run to the packages named by the keys, each running only its failed tests
+     */
+    private val failedTestsByPackage: Map<String, VitestFailedTests>? = null,
 ) : NodeBaseRunProfileState, NodeCommandLineOwner {
 
-    private val reporter by lazy {
-        Files.createTempFile(REPORTER_JS_FILE_NAME, ".js").toFile().apply {
-            val os = if (SystemInfo.isWindows) "windows" else "nix"
-            writeBytes(VitestRunProfileState::class.java.getResourceAsStream("/vitest-intellij-plugin/dist/reporter.$os.js")!!.readBytes())
-            deleteOnExit()
+    /**
+     * The test files to run, for the dependents and changed scopes the ones found to be affected
+     */
+    private val testFilePaths: List<String> by lazy {
+        when (settings.scope()) {
+            VitestScopeKind.DEPENDENTS -> findDependentTestFiles()
+            VitestScopeKind.CHANGED -> findAffectedTestFiles()
+            VitestScopeKind.BENCH -> requestedTestFilePaths.filter { it.isNotBlank() }
+            else -> requestedTestFilePaths
         }
     }
 
@@ -48,12 +92,12 @@ class VitestRunProfileState(
 
     private val project: Project = vitestRunConfiguration.project
 
-    private val settings: VitestSettings = vitestRunConfiguration.settings
-
     override fun createExecutionResult(processHandler: ProcessHandler): ExecutionResult {
         val consoleProperties = vitestRunConfiguration.createTestConsoleProperties(environment.executor,
             NodeCommandLineUtil.shouldUseTerminalConsole(processHandler),
             NodeTargetRun.getTargetRun(processHandler))
+        consoleProperties.eventChannel = processHandler.getUserData(VitestEventChannel.KEY)
+        consoleProperties.testFilePaths = testFilePaths
         val consoleView = SMTestRunnerConnectionUtil.createConsole(TEST_FRAMEWORK_NAME, consoleProperties)
         val workingDirectory = settings.workingDirectory()
         consoleProperties.addStackTraceFilter(NodeStackTraceFilter(project, workingDirectory, consoleProperties.targetRun))
@@ -65,16 +109,147 @@ class VitestRunProfileState(
         }
 
         consoleView.addMessageFilter(NodeConsoleAdditionalFilter(project, workingDirectory))
+        if (consoleView is SMTRunnerConsoleView) {
+            consoleProperties.resultsForm = consoleView.resultsViewer
+            consoleView.resultsViewer.addEventsListener(
+                VitestResultHistoryListener(VitestResultHistory.getInstance(project), consoleProperties)
+            )
+            consoleView.resultsViewer.addEventsListener(
+                VitestPhaseTimingsListener(consoleProperties.phaseTimings, workingDirectory)
+            )
+        }
 
         ProcessTerminatedListener.attach(processHandler)
         consoleView.attachToProcess(processHandler)
-        folder.foldCommandLine(consoleView, processHandler)
+        if (processHandler !is VitestDaemonRunProcessHandler
+            && processHandler !is VitestParallelProcessHandler
+            && processHandler !is VitestWatchProcessHandler) {
+            folder.foldCommandLine(consoleView, processHandler)
+        }
         val executionResult = DefaultExecutionResult(consoleView, processHandler)
         executionResult.setRestartActions(consoleProperties.createRerunFailedTestsAction(consoleView))
         return executionResult
     }
 
     override fun startProcess(configurator: CommandLineDebugConfigurator?): ProcessHandler {
+        val runEnvironment = runEnvironment()
+        if (settings.scope() == VitestScopeKind.PACKAGES) {
+            if (configurator != null) {
+                throw ExecutionException("Workspace packages run in processes of their own and can't be debugged together, debug a configuration of one package instead")
+            }
+            // The coverage runner already refuses them, a state reached otherwise must not run without coverage
+            if (environment.getUserData(VitestCoverageProgramRunner.REPORT_DIRECTORY) != null) {
+                throw ExecutionException("Workspace packages run in processes of their own and can't report coverage together, run a configuration of one package with coverage instead")
+            }
+            return startPackagesRun(runEnvironment.presentValues())
+        }
+        environment.getUserData(VitestCoverageProgramRunner.REPORT_DIRECTORY)?.let {
+            return startVitestProcess(configurator, coverageParameters(it), runEnvironment.presentValues(), withEventChannel = true)
+        }
+        // Benchmarks running side by side or in a process that already ran other files measure each other
+        val isBenchmarkRun = settings.scope() == VitestScopeKind.BENCH
+        if (settings.watch() && configurator == null && !isBenchmarkRun) {
+            startWatchRun(runEnvironment)?.let { return it }
+        }
+        if (settings.shards() > 1 && configurator == null && !isBenchmarkRun) {
+            return startShardedRun(settings.shards(), runEnvironment.presentValues())
+        }
+        if (settings.keepWarm() && configurator == null && !isBenchmarkRun) {
+            startDaemonRun(runEnvironment)?.let { return it }
+        }
+
+        return startVitestProcess(configurator, environment = runEnvironment.presentValues(), withEventChannel = true)
+    }
+
+    /**
+     * Variables read by the reporter during the run, a null value means the variable must be unset
+     */
+    private fun runEnvironment(): Map<String, String?> {
+        val priorityFile = VitestResultHistory.getInstance(project).writePriorityFile(settings.testOrder())
+        return mapOf(
+            PRIORITY_FILE_ENV to priorityFile?.toString(),
+            BAIL_ENV to if (settings.bail()) "1" else null,
+            MERGE_RESULTS_ENV to null,
+        )
+    }
+
+    /**
+     * Makes Vitest write only the json coverage report, into [reportDirectory]
+     */
+    private fun coverageParameters(reportDirectory: Path): List<String> {
+        return listOf(
+            "--coverage.enabled",
+            "--coverage.reporter=json",
+            "--coverage.reportsDirectory=$reportDirectory",
+        )
+    }
+
+    private fun Map<String, String?>.presentValues(): Map<String, String> {
+        return entries.mapNotNull { (name, value) -> value?.let { name to it } }.toMap()
+    }
+
+    /**
+     * Starts one Vitest process per shard with `--shard=i/N` and merges them into a single run
+     */
+    private fun startShardedRun(shardCount: Int, environment: Map<String, String>): ProcessHandler {
+        val shards = (1..shardCount).map { shard ->
+            VitestParallelProcess(null) {
+                startVitestProcess(null, listOf("--shard=$shard/$shardCount"), environment + (RUN_STATS_ENV to "1"))
+            }
+        }
+        return VitestParallelProcessHandler(shards)
+    }
+
+    /**
+     * Starts one Vitest process per package below the working directory, with the package's own
+     * working directory, config file and Vitest, and merges them into a single run grouped by package.
+     * At most [VitestSettings.packageConcurrency] packages run at a time. A rerun of failed tests only
+     * starts the packages which have some.
+     */
+    private fun startPackagesRun(environment: Map<String, String>): ProcessHandler {
+        val rootPath = settings.workingDirectory()?.takeIf { it.isNotBlank() }
+            ?: throw ExecutionException("Select the directory whose packages should run")
+        val root = LocalFileSystem.getInstance().refreshAndFindFileByPath(FileUtil.toSystemIndependentName(rootPath))
+            ?: throw ExecutionException("Cannot find $rootPath")
+
+        val findPackages = ThrowableComputable<List<VitestWorkspacePackage>, RuntimeException> {
+            ReadAction.compute<List<VitestWorkspacePackage>, RuntimeException> { VitestWorkspacePackages.find(root) }
+        }
+        val packages = withProgress("Finding Vitest Packages in ${root.name}", findPackages)
+        if (packages.isEmpty()) {
+            throw ExecutionException("No Vitest packages found below $rootPath")
+        }
+
+        val processes = packages.mapNotNull { workspacePackage ->
+            val packageState = if (failedTestsByPackage == null) {
+                VitestRunProfileState(vitestRunConfiguration, this.environment, packageSettings(workspacePackage), emptyList())
+            } else {
+                val failedTests = failedTestsByPackage[workspacePackage.name] ?: return@mapNotNull null
+                val packageSettings = failedTests.rerunSettings(packageSettings(workspacePackage))
+                VitestRunProfileState(vitestRunConfiguration, this.environment, packageSettings, failedTests.testFilePaths ?: emptyList())
+            }
+            VitestParallelProcess(workspacePackage.name) {
+                packageState.startVitestProcess(null, environment = environment + (RUN_STATS_ENV to "1"))
+            }
+        }
+        return VitestParallelProcessHandler(processes, settings.packageConcurrency(), "packages")
+    }
+
+    private fun packageSettings(workspacePackage: VitestWorkspacePackage): VitestSettings {
+        val builder = settings.toBuilder()
+            .scope(VitestScopeKind.ALL)
+            .workingDirectory(FileUtil.toSystemDependentName(workspacePackage.directory.path))
+        builder.vitestConfigFilePath = workspacePackage.configFile?.let { FileUtil.toSystemDependentName(it.path) }
+        workspacePackage.vitestPackage?.let { builder.vitestPackage(it) }
+        return builder.build()
+    }
+
+    private fun startVitestProcess(
+        configurator: CommandLineDebugConfigurator?,
+        extraParameters: List<String> = emptyList(),
+        environment: Map<String, String> = emptyMap(),
+        withEventChannel: Boolean = false,
+    ): ProcessHandler {
         val nodeJsInterpreterRef = settings.interpreter() ?: NodeJsInterpreterRef.createProjectRef()
         val nodeInterpreter: NodeJsInterpreter = nodeJsInterpreterRef.resolveNotNull(project)
         val nodeTargetRun = NodeTargetRun(nodeInterpreter, project, configurator, NodeTargetRun.createOptionsForTestConsole(
@@ -92,9 +267,16 @@ class VitestRunProfileState(
         vitestPackage?.let {
             val bin = File(it.systemDependentPath, "dist/cli.mjs")
             commandLine.addParameter(nodeTargetRun.path(bin.absolutePath))
-            commandLine.addParameter("run")
             folder.addPlaceholderText(it.name)
-            folder.addPlaceholderText("run")
+            if (settings.scope() == VitestScopeKind.BENCH) {
+                // Benchmarks watch for changes unless told to run once
+                commandLine.addParameter("bench")
+                commandLine.addParameter("--run")
+                folder.addPlaceholderTexts(listOf("bench", "--run"))
+            } else {
+                commandLine.addParameter("run")
+                folder.addPlaceholderText("run")
+            }
         }
 
         NodeCommandLineUtil.prependNodeDirToPATH(nodeTargetRun)
@@ -105,7 +287,7 @@ class VitestRunProfileState(
             folder.addPlaceholderTexts(listOf("--config=" + PathUtil.getFileName(it)))
         }
 
-        val reporterFile = vitestRunConfiguration.getVitestReporterFile()
+        val reporterFile = getVitestReporterFile()
         reporterFile.let {
             commandLine.addParameter("--reporter")
             commandLine.addParameter(it)
@@ -113,38 +295,201 @@ class VitestRunProfileState(
             folder.addPlaceholderText(it)
         }
 
-        val testFilePath = settings.testFilePath()
-        testFilePath?.let {
+        testFilePaths.forEach {
             commandLine.addParameter(it)
             folder.addPlaceholderText(it)
         }
 
-        val testNames = settings.testNames()
-        testNames.withNotNullNorEmpty {
-            val testNamesPiped = this.joinToString("|");
-            commandLine.addParameter("--testNamePattern=$testNamesPiped")
-            folder.addPlaceholderText("--testNamePattern=$testNamesPiped")
+        testNamePattern()?.let {
+            commandLine.addParameter("--testNamePattern=$it")
+            folder.addPlaceholderText("--testNamePattern=$it")
         }
 
         commandLine.addParameter(" --passWithNoTests")
         folder.addPlaceholderText(" --passWithNoTests")
 
+        extraParameters.forEach {
+            commandLine.addParameter(it)
+            folder.addPlaceholderText(it)
+        }
+        environment.forEach(commandLine::addEnvironmentVariable)
+
+        // The reporter can only reach a loopback socket of the IDE from a local interpreter
+        val eventChannel = if (withEventChannel && nodeInterpreter is NodeJsLocalInterpreter) openEventChannel() else null
+        eventChannel?.let {
+            commandLine.addEnvironmentVariable(EVENTS_PORT_ENV, it.port.toString())
+            commandLine.addEnvironmentVariable(EVENTS_TOKEN_ENV, it.token)
+        }
+        val processHandler = try {
+            nodeTargetRun.startProcess()
+        } catch (e: ExecutionException) {
+            eventChannel?.close()
+            throw e
+        }
+        eventChannel?.let {
+            processHandler.putUserData(VitestEventChannel.KEY, it)
+            processHandler.addProcessListener(object : ProcessAdapter() {
+                override fun processTerminated(event: ProcessEvent) {
+                    it.finish()
+                }
+            })
+            it.start()
+        }
+        return processHandler
+    }
+
+    private fun openEventChannel(): VitestEventChannel? {
+        return try {
+            VitestEventChannel.open()
+        } catch (e: IOException) {
+            LOG.warn("Unable to open the Vitest event channel, the reporter will use stdout", e)
+            null
+        }
+    }
+
+    /**
+     * Sends the run to the warm daemon of this working directory and config file, starting the daemon
+     * if needed. Returns null when the run can't be served by a daemon so a regular process is used.
+     */
+    private fun startDaemonRun(environment: Map<String, String?>): ProcessHandler? {
+        val vitestPackage = settings.vittestPackage() ?: return null
+        val workingDir = settings.workingDirectory()?.takeIf { it.isNotBlank() } ?: return null
+        val nodeJsInterpreterRef = settings.interpreter() ?: NodeJsInterpreterRef.createProjectRef()
+        val key = daemonKey(nodeJsInterpreterRef, vitestPackage, workingDir)
+        val filters = testFilePaths.filter { it.isNotBlank() }
+
+        val processHandler = VitestDaemonService.getInstance(project).run(key, filters, testNamePattern(), environment) {
+            startDaemonProcess(nodeJsInterpreterRef, vitestPackage, workingDir)
+        } ?: return null
+        processHandler.output("Running in warm Vitest process for $workingDir\n", ProcessOutputTypes.SYSTEM)
+        return processHandler
+    }
+
+    /**
+     * Keeps the run open and reruns the tests affected by every save in the warm daemon of this
+     * working directory and config file, into the same console. Returns null when the run can't be
+     * served by a daemon so a regular process is used.
+     */
+    private fun startWatchRun(environment: Map<String, String?>): ProcessHandler? {
+        val vitestPackage = settings.vittestPackage() ?: return null
+        val workingDir = settings.workingDirectory()?.takeIf { it.isNotBlank() } ?: return null
+        val nodeJsInterpreterRef = settings.interpreter() ?: NodeJsInterpreterRef.createProjectRef()
+        val key = daemonKey(nodeJsInterpreterRef, vitestPackage, workingDir)
+
+        // Without a fixed set of files a rerun covers a few of them, the reporter repeats the others
+        val watchesAllFiles = settings.scope() == VitestScopeKind.ALL || settings.scope() == VitestScopeKind.CHANGED
+        val scopeFiles = if (watchesAllFiles) null else testFilePaths.filter { it.isNotBlank() }.toSet()
+        val initialTestFiles = if (settings.scope() == VitestScopeKind.ALL) emptyList() else testFilePaths
+        val runEnvironment = environment + (MERGE_RESULTS_ENV to if (watchesAllFiles) "1" else null)
+        val testNamePattern = testNamePattern()
+        val daemonService = VitestDaemonService.getInstance(project)
+        return VitestWatchProcessHandler(project, workingDir, scopeFiles, initialTestFiles) { testFiles, changedFiles ->
+            daemonService.run(key, testFiles, testNamePattern, runEnvironment, changedFiles) {
+                startDaemonProcess(nodeJsInterpreterRef, vitestPackage, workingDir)
+            }
+        }
+    }
+
+    private fun daemonKey(nodeJsInterpreterRef: NodeJsInterpreterRef, vitestPackage: NodePackage, workingDir: String): VitestDaemonKey {
+        return VitestDaemonKey(
+            nodeJsInterpreterRef.referenceName,
+            vitestPackage.systemIndependentPath,
+            FileUtil.toSystemIndependentName(workingDir),
+            settings.vitestConfigFilePath()?.takeIf { it.isNotBlank() }?.let(FileUtil::toSystemIndependentName)
+        )
+    }
+
+    private fun startDaemonProcess(nodeJsInterpreterRef: NodeJsInterpreterRef, vitestPackage: NodePackage, workingDir: String): ProcessHandler {
+        val nodeInterpreter: NodeJsInterpreter = nodeJsInterpreterRef.resolveNotNull(project)
+        val nodeTargetRun = NodeTargetRun(nodeInterpreter, project, null, NodeTargetRun.createOptionsForTestConsole(
+            listOf(), true, vitestRunConfiguration
+        ))
+        val commandLine = nodeTargetRun.commandLineBuilder
+        commandLine.setWorkingDirectory(workingDir)
+        commandLine.addParameter(nodeTargetRun.path(VitestBundledScripts.daemon().toString()))
+        commandLine.addParameter(nodeTargetRun.path(vitestPackage.systemDependentPath))
+        commandLine.addParameter(nodeTargetRun.path(workingDir))
+        commandLine.addParameter(getVitestReporterFile())
+        settings.vitestConfigFilePath()?.takeIf { it.isNotBlank() }?.let {
+            commandLine.addParameter(nodeTargetRun.path(FileUtil.toSystemDependentName(it)))
+        }
+        NodeCommandLineUtil.prependNodeDirToPATH(nodeTargetRun)
         return nodeTargetRun.startProcess()
     }
 
-    private fun VitestRunConfiguration.getVitestReporterFile(): String {
-        val file = LocalFileSystem.getInstance().findFileByPath(settings.workingDirectory()!!)
-        file?.let {
-            val info = NodeModuleSearchUtil.resolveModuleFromNodeModulesDir(
-                it,
-                REPORTER_JS_FILE_NAME,
-                NodeModuleDirectorySearchProcessor.PROCESSOR
-            )
-            if (info != null && info.moduleSourceRoot.isDirectory) {
-                return NodePackage(info.moduleSourceRoot.path).systemIndependentPath
+    private fun findDependentTestFiles(): List<String> {
+        val sourcePath = settings.testFilePath()?.takeIf { it.isNotBlank() }
+            ?: throw ExecutionException("Select the file whose dependent tests should run")
+        val sourceFile = LocalFileSystem.getInstance().refreshAndFindFileByPath(FileUtil.toSystemIndependentName(sourcePath))
+            ?: throw ExecutionException("Cannot find $sourcePath")
+
+        val finder = VitestDependentTestsFinder(project)
+        val findTests = ThrowableComputable<List<VirtualFile>, RuntimeException> { finder.findDependentTests(sourceFile) }
+        val tests = withProgress("Finding Tests Depending on ${sourceFile.name}", findTests)
+        if (tests.isEmpty()) {
+            throw ExecutionException("No test files depend on ${sourceFile.name}")
+        }
+        return tests.map { FileUtil.toSystemDependentName(it.path) }
+    }
+
+    private fun findAffectedTestFiles(): List<String> {
+        val changedSince = settings.changedSince()
+        val findTests = ThrowableComputable<List<VirtualFile>, ExecutionException> {
+            // Asking git happens outside the read action, it may take a while on a large repository
+            val changedFiles = VitestChangedFiles(project).find(changedSince, settings.workingDirectory())
+            ReadAction.compute<List<VirtualFile>, RuntimeException> {
+                VitestAffectedTestsCache.getInstance(project).affectedTests(changedFiles)
+            }
+        }
+        val tests = withProgress("Finding Tests Affected by Changes", findTests)
+        if (tests.isEmpty()) {
+            throw ExecutionException(if (changedSince == null) "No tests are affected by the local changes" else "No tests are affected by the changes since $changedSince")
+        }
+        return tests.map { FileUtil.toSystemDependentName(it.path) }
+    }
+
+    private fun <T, E : Exception> withProgress(title: String, computable: ThrowableComputable<T, E>): T {
+        return if (ApplicationManager.getApplication().isDispatchThread) {
+            ProgressManager.getInstance().runProcessWithProgressSynchronously(computable, title, true, project)
+        } else {
+            computable.compute()
+        }
+    }
+
+    /**
+     * Pattern selecting exactly the suite, tests or benchmarks of the scope, [VitestSettings.suiteName]
+     * holds the path of suite names the selection is nested in
+     */
+    private fun testNamePattern(): String? {
+        val testNames = settings.testNames()
+        val suiteName = settings.suiteName()?.takeIf { it.isNotBlank() }
+        val template = settings.templateNames()
+        return when (settings.scope()) {
+            VitestScopeKind.SUITE -> suiteName?.let { VitestTestNamePattern.forSuite(it, template) }
+            VitestScopeKind.TEST -> if (testNames.isEmpty()) {
+                suiteName?.let { VitestTestNamePattern.forSuite(it, template) }
+            } else {
+                VitestTestNamePattern.forTests(suiteName, testNames, template)
+            }
+            VitestScopeKind.BENCH -> testNames.takeIf { it.isNotEmpty() }?.let { VitestTestNamePattern.forTests(suiteName, it, template) }
+            else -> null
+        }
+    }
+
+    /**
+     * Prefers a reporter installed in the project's node_modules and falls back to the bundled one.
+     * Resolved with plain file system checks since this runs on every launch.
+     */
+    private fun getVitestReporterFile(): String {
+        var directory = settings.workingDirectory()?.takeIf { it.isNotBlank() }?.let { Path.of(it) }
+        while (directory != null) {
+            val installedReporter = directory.resolve("node_modules").resolve(REPORTER_JS_FILE_NAME)
+            if (Files.isDirectory(installedReporter)) {
+                return FileUtil.toSystemIndependentName(installedReporter.toString())
             }
+            directory = directory.parent
         }
 
-        return reporter.absolutePath
+        return VitestBundledScripts.reporter().toString()
     }
 }
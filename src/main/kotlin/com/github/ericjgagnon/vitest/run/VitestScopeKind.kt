@@ -4,5 +4,9 @@ enum class VitestScopeKind(val label: String) {
     ALL("All tests"),
     TEST_FILE("Test file"),
     TEST("Test"),
-    SUITE("Suite");
+    SUITE("Suite"),
+    DEPENDENTS("Tests depending on file"),
+    CHANGED("Tests of changed files"),
+    BENCH("Benchmarks"),
+    PACKAGES("Workspace packages");
 }
\ No newline at end of file
@@ -3,20 +3,35 @@ package com.github.ericjgagnon.vitest.run
 import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef
 import com.intellij.javascript.nodejs.util.NodePackage
 import com.intellij.openapi.util.io.FileUtil
-import org.apache.commons.collections.CollectionUtils
 
+/**
+ * Immutable settings of a Vitest run configuration. The hash is computed once and [VitestTestNames]
+ * compare by an interned key, so comparing settings, which the IDE does constantly while editing and
+ * matching configurations, neither allocates nor walks the test names of equal settings.
+ */
 class VitestSettings private constructor(
     private val interpreter: NodeJsInterpreterRef?,
     private val nodeOptions: String?,
     private val vitestPackage: NodePackage?,
     private val vitestConfigFilePath: String?,
     private val workingDirectory: String?,
-    private val testNames: List<String>?,
+    private val testNames: VitestTestNames,
     private val testFilePath: String?,
     private val suiteName: String?,
     private val scope: VitestScopeKind,
+    private val keepWarm: Boolean,
+    private val shards: Int,
+    private val testOrder: VitestTestOrder,
+    private val bail: Boolean,
+    private val changedSince: String?,
+    private val benchmarkThreshold: Int,
+    private val watch: Boolean,
+    private val packageConcurrency: Int,
+    private val templateNames: Boolean,
     ) {
 
+    private val hash: Int = computeHash()
+
     fun interpreter(): NodeJsInterpreterRef? {
         return interpreter
     }
@@ -37,8 +52,15 @@ class VitestSettings private constructor(
         return workingDirectory
     }
 
-    fun testNames(): List<String>? {
-        return testNames
+    fun testNames(): List<String> {
+        return testNames.names
+    }
+
+    /**
+     * Whether the test names are the same as [names], regardless of their order
+     */
+    fun hasTestNames(names: Collection<String>?): Boolean {
+        return testNames.hasNames(names)
     }
 
     fun testFilePath(): String? {
@@ -53,8 +75,56 @@ class VitestSettings private constructor(
         return scope
     }
 
+    fun keepWarm(): Boolean {
+        return keepWarm
+    }
+
+    fun shards(): Int {
+        return shards
+    }
+
+    fun testOrder(): VitestTestOrder {
+        return testOrder
+    }
+
+    fun bail(): Boolean {
+        return bail
+    }
+
+    fun changedSince(): String? {
+        return changedSince
+    }
+
+    /**
+     * How many percent fewer operations per second than its baseline fail a benchmark
+     */
+    fun benchmarkThreshold(): Int {
+        return benchmarkThreshold
+    }
+
+    /**
+     * Whether the run stays open and reruns the tests affected by saved changes
+     */
+    fun watch(): Boolean {
+        return watch
+    }
+
+    /**
+     * How many workspace packages run at the same time
+     */
+    fun packageConcurrency(): Int {
+        return packageConcurrency
+    }
+
+    /**
+     * Whether the suite and test names were declared with `.each`, their placeholders then match any value
+     */
+    fun templateNames(): Boolean {
+        return templateNames
+    }
+
     fun toBuilder(): Builder {
-        return Builder(interpreter, nodeOptions, vitestPackage, vitestConfigFilePath, workingDirectory, testNames, testFilePath, suiteName, scope)
+        return Builder(interpreter, nodeOptions, vitestPackage, vitestConfigFilePath, workingDirectory, testNames.names, testFilePath, suiteName, scope, keepWarm, shards, testOrder, bail, changedSince, benchmarkThreshold, watch, packageConcurrency, templateNames)
     }
 
     override fun equals(other: Any?): Boolean {
@@ -63,33 +133,53 @@ class VitestSettings private constructor(
 
         other as VitestSettings
 
+        if (hash != other.hash) return false
         if (interpreter != other.interpreter) return false
         if (nodeOptions != other.nodeOptions) return false
         if (vitestPackage != other.vitestPackage) return false
         if (vitestConfigFilePath != other.vitestConfigFilePath) return false
         if (workingDirectory != other.workingDirectory) return false
-        if (!CollectionUtils.isEqualCollection(testNames, other.testNames)) return false
+        if (testNames != other.testNames) return false
         if (testFilePath != other.testFilePath) return false
         if (suiteName != other.suiteName) return false
         if (scope != other.scope) return false
+        if (keepWarm != other.keepWarm) return false
+        if (shards != other.shards) return false
+        if (testOrder != other.testOrder) return false
+        if (bail != other.bail) return false
+        if (changedSince != other.changedSince) return false
+        if (benchmarkThreshold != other.benchmarkThreshold) return false
+        if (watch != other.watch) return false
+        if (packageConcurrency != other.packageConcurrency) return false
+        if (templateNames != other.templateNames) return false
 
         return true
     }
 
-    override fun hashCode(): Int {
+    override fun hashCode(): Int = hash
+
+    private fun computeHash(): Int {
         var result = interpreter?.hashCode() ?: 0
         result = 31 * result + (nodeOptions?.hashCode() ?: 0)
         result = 31 * result + (vitestPackage?.hashCode() ?: 0)
         result = 31 * result + (vitestConfigFilePath?.hashCode() ?: 0)
         result = 31 * result + (workingDirectory?.hashCode() ?: 0)
-        result = 31 * result + (testNames?.hashCode() ?: 0)
+        result = 31 * result + testNames.hashCode()
         result = 31 * result + (testFilePath?.hashCode() ?: 0)
         result = 31 * result + (suiteName?.hashCode() ?: 0)
         result = 31 * result + scope.hashCode()
+        result = 31 * result + keepWarm.hashCode()
+        result = 31 * result + shards
+        result = 31 * result + testOrder.hashCode()
+        result = 31 * result + bail.hashCode()
+        result = 31 * result + (changedSince?.hashCode() ?: 0)
+        result = 31 * result + benchmarkThreshold
+        result = 31 * result + watch.hashCode()
+        result = 31 * result + packageConcurrency
+        result = 31 * result + templateNames.hashCode()
         return result
     }
 
-
     data class Builder(
         var interpreter: NodeJsInterpreterRef? = null,
         var nodeOptions: String? = null,
@@ -100,6 +190,15 @@ class VitestSettings private constructor(
         var testFilePath: String? = null,
         var suiteName: String?  = null,
         var scope: VitestScopeKind = VitestScopeKind.ALL,
+        var keepWarm: Boolean = false,
+        var shards: Int = 1,
+        var testOrder: VitestTestOrder = VitestTestOrder.DEFAULT,
+        var bail: Boolean = false,
+        var changedSince: String? = null,
+        var benchmarkThreshold: Int = DEFAULT_BENCHMARK_THRESHOLD,
+        var watch: Boolean = false,
+        var packageConcurrency: Int = DEFAULT_PACKAGE_CONCURRENCY,
+        var templateNames: Boolean = false,
     ) {
 
         fun interpreter(interpreter: NodeJsInterpreterRef) = apply { this.interpreter = interpreter }
@@ -111,6 +210,15 @@ class VitestSettings private constructor(
         fun testNames(testNames: List<String>) = apply { this.testNames = testNames }
         fun testFilePath(testFilePath: String) = apply { this.testFilePath = FileUtil.toSystemDependentName(testFilePath) }
         fun suiteName(suiteName: String) = apply { this.suiteName = suiteName }
+        fun keepWarm(keepWarm: Boolean) = apply { this.keepWarm = keepWarm }
+        fun shards(shards: Int) = apply { this.shards = shards.coerceAtLeast(1) }
+        fun testOrder(testOrder: VitestTestOrder) = apply { this.testOrder = testOrder }
+        fun bail(bail: Boolean) = apply { this.bail = bail }
+        fun changedSince(changedSince: String?) = apply { this.changedSince = changedSince?.trim()?.ifEmpty { null } }
+        fun benchmarkThreshold(benchmarkThreshold: Int) = apply { this.benchmarkThreshold = benchmarkThreshold.coerceIn(1, 100) }
+        fun watch(watch: Boolean) = apply { this.watch = watch }
+        fun packageConcurrency(packageConcurrency: Int) = apply { this.packageConcurrency = packageConcurrency.coerceIn(1, MAX_PACKAGE_CONCURRENCY) }
+        fun templateNames(templateNames: Boolean) = apply { this.templateNames = templateNames }
         fun build(): VitestSettings {
             return VitestSettings(
                 interpreter,
@@ -118,11 +226,26 @@ class VitestSettings private constructor(
                 vitestPackage,
                 vitestConfigFilePath,
                 workingDirectory,
-                testNames,
+                VitestTestNames.of(testNames),
                 testFilePath,
                 suiteName,
-                scope
+                scope,
+                keepWarm,
+                shards,
+                testOrder,
+                bail,
+                changedSince,
+                benchmarkThreshold,
+                watch,
+                packageConcurrency,
+                templateNames
             )
         }
     }
+
+    companion object {
+        const val DEFAULT_BENCHMARK_THRESHOLD = 10
+        const val DEFAULT_PACKAGE_CONCURRENCY = 4
+        const val MAX_PACKAGE_CONCURRENCY = 32
+    }
 }
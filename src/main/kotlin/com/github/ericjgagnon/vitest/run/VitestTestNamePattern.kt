@@ -0,0 +1,99 @@
+package com.github.ericjgagnon.vitest.run
+
+private const val REGEX_SPECIAL_CHARACTERS = "\\^$.*+?()[]{}|/-"
+private const val PRINTF_PLACEHOLDERS = "sdifjoO#"
+
+/**
+ * Builds `--testNamePattern` values which match exactly the selected suites and tests. Vitest matches
+ * the pattern against the full name of a test, its suite names and its own name joined by spaces,
+ * which starts with a space when the file itself is reported as an unnamed suite.
+ *
+ * Names declared with `.each` are templates which Vitest formats with every case, so when `template`
+ * is set their placeholders, printf style ones such as `%s` and object keys such as `$name`, match
+ * anything. Every other name, including the reported names of failed tests, is matched literally.
+ */
+object VitestTestNamePattern {
+
+    /**
+     * Matches every test inside the suite with the given path of suite names
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun forSuite(suitePath: String, template: Boolean = false): String {
+        return "^\\s*${escape(suitePath, template)} "
+    }
+
+    /**
+     * Matches the tests with exactly the given full names and nothing else
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun forTests(fullNames: Collection<String>, template: Boolean = false): String {
+        return fullNames.joinToString("|", "^\\s*(?:", ")$") { escape(it, template) }
+    }
+
+    /**
+     * Matches the tests with the given names inside the suite with the given path of suite names.
+     * Without a suite path the names are matched at the end of the full name, so a test's own name
+     * selects it in any suite, as it did for configurations saved before full names were used and
+     * still does for names typed into the editor.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun forTests(suitePath: String?, names: Collection<String>, template: Boolean = false): String {
+        if (suitePath.isNullOrBlank()) {
+            return names.joinToString("|", "(?:^|\\s)(?:", ")$") { escape(it, template) }
+        }
+        return forTests(names.map { fullName(suitePath, it) }, template)
+    }
+
+    @JvmStatic
+    fun fullName(suitePath: String?, testName: String): String {
+        return if (suitePath.isNullOrBlank()) testName else "$suitePath $testName"
+    }
+
+    @JvmStatic
+    fun escape(text: String, template: Boolean): String {
+        return if (template) escapeTemplate(text) else escapeLiteral(text)
+    }
+
+    private fun escapeLiteral(text: String): String {
+        val builder = StringBuilder(text.length + 8)
+        for (char in text) {
+            if (REGEX_SPECIAL_CHARACTERS.indexOf(char) != -1) {
+                builder.append('\\')
+            }
+            builder.append(char)
+        }
+        return builder.toString()
+    }
+
+    private fun escapeTemplate(text: String): String {
+        val builder = StringBuilder(text.length + 8)
+        var index = 0
+        while (index < text.length) {
+            val char = text[index]
+            val next = text.getOrNull(index + 1)
+            if (char == '%' && next == '%') {
+                builder.append('%')
+                index += 2
+            } else if (char == '%' && next != null && PRINTF_PLACEHOLDERS.indexOf(next) != -1) {
+                builder.append(".*")
+                index += 2
+            } else if (char == '$' && next != null && (next.isLetter() || next == '_')) {
+                index++
+                while (index < text.length && (text[index].isLetterOrDigit() || text[index] == '_' || text[index] == '.')) {
+                    index++
+                }
+                builder.append(".*")
+            } else {
+                if (REGEX_SPECIAL_CHARACTERS.indexOf(char) != -1) {
+                    builder.append('\\')
+                }
+                builder.append(char)
+                index++
+            }
+        }
+        return builder.toString()
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.ericjgagnon.vitest.run
+
+import com.intellij.util.containers.Interner
+import java.util.Arrays
+
+/**
+ * The test names of a [VitestSettings], deduplicated and kept in the order they were given. Two sets
+ * of test names are equal regardless of their order: the sorted names are interned as a key, so equal
+ * sets of names share one sorted copy while it is in use and compare by identity.
+ */
+class VitestTestNames private constructor(private val ordered: Array<String>, private val key: Key) {
+
+    /**
+     * The names in the order they were first given, shared by every copy of the settings
+     */
+    val names: List<String> = NameList(this)
+
+    /**
+     * Whether [names] holds the same names, regardless of their order and duplicates
+     */
+    fun hasNames(names: Collection<String>?): Boolean {
+        if (names == null || names.isEmpty()) {
+            return ordered.isEmpty()
+        }
+        for (name in names) {
+            if (Arrays.binarySearch(key.sorted, name) < 0) {
+                return false
+            }
+        }
+        return key.sorted.all(names::contains)
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is VitestTestNames) return false
+        return key === other.key
+    }
+
+    override fun hashCode(): Int = key.hash
+
+    override fun toString(): String = names.toString()
+
+    private class NameList(val owner: VitestTestNames) : AbstractList<String>(), RandomAccess {
+        override val size: Int
+            get() = owner.ordered.size
+
+        override fun get(index: Int): String = owner.ordered[index]
+    }
+
+    private class Key(val sorted: Array<String>) {
+        val hash: Int = sorted.contentHashCode()
+
+        override fun equals(other: Any?): Boolean {
+            if (this === other) return true
+            if (other !is Key) return false
+            return hash == other.hash && sorted.contentEquals(other.sorted)
+        }
+
+        override fun hashCode(): Int = hash
+    }
+
+    companion object {
+        private val keys = Interner.createWeakInterner<Key>()
+
+        @JvmField
+        val EMPTY: VitestTestNames = VitestTestNames(emptyArray(), keys.intern(Key(emptyArray())))
+
+        /**
+         * The test names for [names], the names of existing settings are reused as they are
+         */
+        @JvmStatic
+        fun of(names: Collection<String>?): VitestTestNames {
+            if (names == null || names.isEmpty()) {
+                return EMPTY
+            }
+            if (names is NameList) {
+                return names.owner
+            }
+            val ordered = LinkedHashSet(names).toTypedArray()
+            return VitestTestNames(ordered, keys.intern(Key(ordered.sortedArray())))
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.ericjgagnon.vitest.run
+
+/**
+ * Order in which test files are started, based on the results of previous runs
+ */
+enum class VitestTestOrder(val label: String) {
+    DEFAULT("Default"),
+    FAILED_FIRST("Previously failed first, then slowest"),
+    SLOWEST_FIRST("Slowest first");
+
+    override fun toString(): String = label
+}
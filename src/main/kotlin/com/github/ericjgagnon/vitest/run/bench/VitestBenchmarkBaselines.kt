@@ -0,0 +1,157 @@
+package com.github.ericjgagnon.vitest.run.bench
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.util.concurrency.AppExecutorUtil
+import com.intellij.util.io.DataInputOutputUtil
+import com.intellij.util.io.IOUtil
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.atomic.AtomicBoolean
+
+private val LOG = logger<VitestBenchmarkBaselines>()
+private const val FORMAT_VERSION = 1
+
+/**
+ * The baseline result of each benchmark of a project, keyed by benchmark file and full benchmark
+ * name. The first result of a benchmark becomes its baseline and stays so until it is reset. Stored
+ * in the IDE system directory next to the test result history.
+ */
+class VitestBenchmarkBaselines(private val project: Project) : Disposable {
+
+    private val storeFile: Path = Path.of(PathManager.getSystemPath(), "vitest", "benchmarks", "${project.locationHash}.bin")
+    private val entries = HashMap<String, Baseline>()
+    private var loaded = false
+    private val dirty = AtomicBoolean()
+
+    /**
+     * Compares [result] with the baseline of the benchmark, recording it as the baseline when the
+     * benchmark has none yet
+     */
+    fun compare(file: String, name: String, result: VitestBenchmarkResult, thresholdPercent: Int): VitestBenchmarkComparison {
+        val independentFile = FileUtil.toSystemIndependentName(file)
+        val baseline = synchronized(this) {
+            load()
+            val key = key(independentFile, name)
+            val baseline = entries[key]
+            if (baseline == null) {
+                entries[key] = Baseline(independentFile, name, result)
+            }
+            baseline
+        }
+        if (baseline == null) {
+            scheduleSave()
+        }
+        return VitestBenchmarkComparison(result, baseline?.result, thresholdPercent)
+    }
+
+    /**
+     * Forgets the baselines of the benchmarks in [path], a benchmark file or a directory, or of the
+     * whole project when null. The next result of each benchmark becomes its new baseline.
+     */
+    fun resetBaselines(path: String?) {
+        val independentPath = path?.let(FileUtil::toSystemIndependentName)
+        synchronized(this) {
+            load()
+            entries.values.removeIf { independentPath == null || FileUtil.isAncestor(independentPath, it.file, false) }
+        }
+        scheduleSave()
+    }
+
+    private fun scheduleSave() {
+        if (dirty.compareAndSet(false, true)) {
+            AppExecutorUtil.getAppExecutorService().execute(::save)
+        }
+    }
+
+    private fun key(file: String, name: String): String = "$file\u0000$name"
+
+    private fun load() {
+        if (loaded) {
+            return
+        }
+        loaded = true
+        if (!Files.isRegularFile(storeFile)) {
+            return
+        }
+        try {
+            DataInputStream(BufferedInputStream(Files.newInputStream(storeFile))).use { input ->
+                if (DataInputOutputUtil.readINT(input) != FORMAT_VERSION) {
+                    return
+                }
+                repeat(DataInputOutputUtil.readINT(input)) {
+                    val file = IOUtil.readUTF(input)
+                    val name = IOUtil.readUTF(input)
+                    val result = VitestBenchmarkResult(
+                        input.readDouble(),
+                        input.readDouble(),
+                        input.readDouble(),
+                        input.readDouble(),
+                        input.readDouble(),
+                        DataInputOutputUtil.readINT(input)
+                    )
+                    entries[key(file, name)] = Baseline(file, name, result)
+                }
+            }
+        } catch (e: IOException) {
+            LOG.warn("Discarding unreadable Vitest benchmark baselines $storeFile", e)
+            entries.clear()
+        }
+    }
+
+    private fun save() {
+        if (!dirty.compareAndSet(true, false)) {
+            return
+        }
+        try {
+            Files.createDirectories(storeFile.parent)
+            val temp = Files.createTempFile(storeFile.parent, storeFile.fileName.toString(), ".tmp")
+            try {
+                synchronized(this) {
+                    DataOutputStream(BufferedOutputStream(Files.newOutputStream(temp))).use { out ->
+                        DataInputOutputUtil.writeINT(out, FORMAT_VERSION)
+                        DataInputOutputUtil.writeINT(out, entries.size)
+                        for (baseline in entries.values) {
+                            IOUtil.writeUTF(out, baseline.file)
+                            IOUtil.writeUTF(out, baseline.name)
+                            with(baseline.result) {
+                                out.writeDouble(hz)
+                                out.writeDouble(mean)
+                                out.writeDouble(p75)
+                                out.writeDouble(p99)
+                                out.writeDouble(rme)
+                                DataInputOutputUtil.writeINT(out, samples)
+                            }
+                        }
+                    }
+                }
+                Files.move(temp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                FileUtil.delete(temp)
+            }
+        } catch (e: IOException) {
+            LOG.warn("Unable to save Vitest benchmark baselines", e)
+        }
+    }
+
+    override fun dispose() {
+        save()
+    }
+
+    private class Baseline(val file: String, val name: String, val result: VitestBenchmarkResult)
+
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project): VitestBenchmarkBaselines = project.service()
+    }
+}
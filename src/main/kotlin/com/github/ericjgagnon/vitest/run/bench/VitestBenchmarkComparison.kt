@@ -0,0 +1,40 @@
+package com.github.ericjgagnon.vitest.run.bench
+
+import java.util.Locale
+
+/**
+ * A benchmark result next to the baseline of the benchmark, which it regresses from when it manages
+ * more than [thresholdPercent] percent fewer operations per second
+ */
+class VitestBenchmarkComparison(
+    val result: VitestBenchmarkResult,
+    val baseline: VitestBenchmarkResult?,
+    private val thresholdPercent: Int,
+) {
+
+    /**
+     * Relative change of the operations per second, -0.1 for 10% slower than the baseline
+     */
+    val change: Double?
+        get() = baseline?.takeIf { it.hz > 0 }?.let { (result.hz - it.hz) / it.hz }
+
+    val isRegression: Boolean
+        get() = change?.let { it * 100 < -thresholdPercent } ?: false
+
+    fun describe(): String {
+        val change = change ?: return "${result.describe()}, recorded as baseline"
+        return String.format(
+            Locale.ROOT,
+            "%s, %+.1f%% against the baseline of %,.2f ops/s",
+            result.describe(), change * 100, baseline!!.hz
+        )
+    }
+
+    fun describeRegression(): String {
+        return String.format(
+            Locale.ROOT,
+            "%.1f%% slower than the baseline of %,.2f ops/s, more than the %d%% allowed",
+            -(change ?: 0.0) * 100, baseline?.hz ?: 0.0, thresholdPercent
+        )
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.ericjgagnon.vitest.run.bench
+
+import java.util.Locale
+
+/**
+ * Statistics of one benchmark as measured by `vitest bench`, times in milliseconds and the relative
+ * margin of error in percent
+ */
+data class VitestBenchmarkResult(
+    val hz: Double,
+    val mean: Double,
+    val p75: Double,
+    val p99: Double,
+    val rme: Double,
+    val samples: Int,
+) {
+
+    fun describe(): String {
+        return String.format(
+            Locale.ROOT,
+            "%,.2f ops/s ±%.2f%% (mean %.4f ms, p75 %.4f ms, p99 %.4f ms, %d samples)",
+            hz, rme, mean, p75, p99, samples
+        )
+    }
+
+    companion object {
+        /**
+         * Reads the result from the attributes of the reporter's benchmark message, null without a
+         * valid number of operations per second
+         */
+        @JvmStatic
+        fun fromAttributes(attributes: Map<String, String>): VitestBenchmarkResult? {
+            val hz = attributes["hz"]?.toDoubleOrNull()?.takeIf { it.isFinite() } ?: return null
+            fun number(name: String) = attributes[name]?.toDoubleOrNull()?.takeIf { it.isFinite() } ?: 0.0
+            return VitestBenchmarkResult(
+                hz,
+                number("mean"),
+                number("p75"),
+                number("p99"),
+                number("rme"),
+                attributes["samples"]?.toIntOrNull() ?: 0
+            )
+        }
+    }
+}
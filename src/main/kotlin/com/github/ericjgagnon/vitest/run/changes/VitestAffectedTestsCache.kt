@@ -0,0 +1,156 @@
+package com.github.ericjgagnon.vitest.run.changes
+
+import com.github.ericjgagnon.vitest.run.dependents.VitestDependentTestsFinder
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.service
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileManager
+import com.intellij.openapi.vfs.newvfs.BulkFileListener
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent
+import org.jetbrains.annotations.TestOnly
+
+/**
+ * More files changed between two lookups than are worth diffing, everything is forgotten instead
+ */
+private const val MAX_CHANGED_FILES = 1000
+
+/**
+ * Remembers the test files affected by each changed file, so running the tests of the changes again
+ * after editing one of them only walks the references of the edited file.
+ *
+ * Each entry keeps the files its walk went through, and the files those import. Before a lookup the
+ * files changed since the last one have their imports compared with the recorded ones. Only the
+ * entries reaching a file whose imports changed, or a file it started or stopped importing, are
+ * dropped, so edits which leave the imports alone keep every entry. Moving, renaming or removing a
+ * file can change what other files' imports resolve to, so it has the imports of every recorded file
+ * compared. Must be called in a read action.
+ */
+class VitestAffectedTestsCache(private val project: Project) : Disposable {
+
+    private val entries = HashMap<VirtualFile, Entry>()
+    private val importsByFile = HashMap<VirtualFile, Set<VirtualFile>>()
+    private val changedFiles = HashSet<VirtualFile>()
+    private var structureChanged = false
+
+    init {
+        project.messageBus.connect(this).subscribe(VirtualFileManager.VFS_CHANGES, object : BulkFileListener {
+            override fun after(events: MutableList<out VFileEvent>) {
+                synchronized(this@VitestAffectedTestsCache) {
+                    if (entries.isNotEmpty()) {
+                        events.forEach(::onFileEvent)
+                    }
+                }
+            }
+        })
+    }
+
+    /**
+     * The test files to run for [changedFiles]: the changed test files themselves and the tests which
+     * depend on any other changed file
+     */
+    @Synchronized
+    fun affectedTests(changedFiles: Collection<VirtualFile>): List<VirtualFile> {
+        val finder = VitestDependentTestsFinder(project)
+        dropStaleEntries(finder)
+        val tests = sortedSetOf<VirtualFile>(compareBy { it.path })
+        for (file in changedFiles) {
+            ProgressManager.checkCanceled()
+            val isTest = finder.isTestFile(file)
+            val entry = entries[file]?.takeIf { it.isTest == isTest } ?: createEntry(finder, file, isTest)
+            tests.addAll(entry.tests)
+        }
+        return tests.toList()
+    }
+
+    private fun createEntry(finder: VitestDependentTestsFinder, file: VirtualFile, isTest: Boolean): Entry {
+        val entry = if (isTest) {
+            Entry(true, listOf(file), setOf(file))
+        } else {
+            val dependents = finder.findDependents(file)
+            Entry(false, dependents.tests, dependents.files)
+        }
+        for (dependent in entry.files) {
+            if (!importsByFile.containsKey(dependent)) {
+                importsByFile[dependent] = finder.importedFiles(dependent)
+            }
+        }
+        entries[file] = entry
+        return entry
+    }
+
+    private fun onFileEvent(event: VFileEvent) {
+        when {
+            event is VFileContentChangeEvent -> changedFiles.add(event.file)
+            event is VFileCreateEvent && !event.isDirectory -> event.file?.let(changedFiles::add)
+            else -> structureChanged = true
+        }
+        if (changedFiles.size > MAX_CHANGED_FILES) {
+            clear()
+        }
+    }
+
+    /**
+     * Compares the imports of the files changed since the last lookup with the recorded ones and drops
+     * the entries which may no longer be right
+     */
+    private fun dropStaleEntries(finder: VitestDependentTestsFinder) {
+        val filesToCompare = HashSet(changedFiles)
+        if (structureChanged) {
+            filesToCompare.addAll(importsByFile.keys)
+        }
+        changedFiles.clear()
+        structureChanged = false
+
+        val affectedFiles = HashSet<VirtualFile>()
+        for (file in filesToCompare) {
+            ProgressManager.checkCanceled()
+            val recordedImports = importsByFile[file] ?: emptySet()
+            val imports = if (file.isValid) finder.importedFiles(file) else emptySet()
+            if (!file.isValid || imports != recordedImports) {
+                affectedFiles.add(file)
+                recordedImports.filterTo(affectedFiles) { !imports.contains(it) }
+                imports.filterTo(affectedFiles) { !recordedImports.contains(it) }
+            }
+            if (importsByFile.containsKey(file)) {
+                importsByFile[file] = imports
+            }
+        }
+        if (affectedFiles.isEmpty()) {
+            return
+        }
+
+        entries.entries.removeIf { (file, entry) -> !file.isValid || entry.files.any(affectedFiles::contains) }
+        val recordedFiles = entries.values.flatMapTo(HashSet()) { it.files }
+        importsByFile.keys.retainAll(recordedFiles)
+    }
+
+    @TestOnly
+    @Synchronized
+    fun isCached(file: VirtualFile): Boolean = entries.containsKey(file)
+
+    @Synchronized
+    private fun clear() {
+        entries.clear()
+        importsByFile.clear()
+        changedFiles.clear()
+        structureChanged = false
+    }
+
+    override fun dispose() {
+        clear()
+    }
+
+    /**
+     * @param files the files depending on the changed file, through which its tests were found
+     */
+    private class Entry(val isTest: Boolean, val tests: List<VirtualFile>, val files: Set<VirtualFile>)
+
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project): VitestAffectedTestsCache = project.service()
+    }
+}
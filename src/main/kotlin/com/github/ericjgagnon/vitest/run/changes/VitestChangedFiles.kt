@@ -0,0 +1,59 @@
+package com.github.ericjgagnon.vitest.run.changes
+
+import com.intellij.execution.ExecutionException
+import com.intellij.execution.configurations.GeneralCommandLine
+import com.intellij.execution.util.ExecUtil
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.vcs.changes.ChangeListManager
+import com.intellij.openapi.vfs.LocalFileSystem
+import com.intellij.openapi.vfs.VirtualFile
+import java.io.File
+
+private const val GIT_TIMEOUT_MILLIS = 30_000
+
+/**
+ * Lists the files of the project which differ from a VCS base. Without a base these are the local
+ * changes tracked by the IDE, with one they are everything `git diff` reports against the merge base
+ * of the base and HEAD. Unversioned files are changes in both cases, deleted files are left out since
+ * there is nothing left to test.
+ */
+class VitestChangedFiles(private val project: Project) {
+
+    fun find(changedSince: String?, workingDirectory: String?): List<VirtualFile> {
+        val changeListManager = ChangeListManager.getInstance(project)
+        val files = if (changedSince.isNullOrBlank()) {
+            changeListManager.allChanges.mapNotNull { it.afterRevision?.file?.virtualFile }
+        } else {
+            changedSinceBase(changedSince, workingDirectory ?: project.basePath
+                ?: throw ExecutionException("Cannot compare against $changedSince without a working directory"))
+        }
+        val unversioned = changeListManager.unversionedFilesPaths.mapNotNull { it.virtualFile }
+
+        val fileIndex = ProjectFileIndex.getInstance(project)
+        return (files + unversioned)
+            .filter { it.isValid && !it.isDirectory && fileIndex.isInContent(it) }
+            .distinct()
+    }
+
+    private fun changedSinceBase(base: String, workingDirectory: String): List<VirtualFile> {
+        val root = git(workingDirectory, "rev-parse", "--show-toplevel").trim()
+        val mergeBase = git(root, "merge-base", base, "HEAD").trim()
+        val fileSystem = LocalFileSystem.getInstance()
+        return git(root, "diff", "--name-only", "-z", mergeBase)
+            .split('\u0000')
+            .filter { it.isNotEmpty() }
+            .mapNotNull { fileSystem.refreshAndFindFileByIoFile(File(root, it)) }
+    }
+
+    private fun git(workingDirectory: String, vararg parameters: String): String {
+        val commandLine = GeneralCommandLine("git", *parameters)
+            .withWorkDirectory(workingDirectory)
+            .withCharset(Charsets.UTF_8)
+        val output = ExecUtil.execAndGetOutput(commandLine, GIT_TIMEOUT_MILLIS)
+        if (output.isTimeout || output.exitCode != 0) {
+            throw ExecutionException("${commandLine.commandLineString} failed: ${output.stderr.trim().ifEmpty { "timed out" }}")
+        }
+        return output.stdout
+    }
+}
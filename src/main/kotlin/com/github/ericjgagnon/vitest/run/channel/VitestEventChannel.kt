@@ -0,0 +1,177 @@
+package com.github.ericjgagnon.vitest.run.channel
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.util.Key
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.IOException
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+import java.util.UUID
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+private val LOG = logger<VitestEventChannel>()
+private const val MAX_FRAME_LENGTH = 64 * 1024 * 1024
+private const val FINISH_TIMEOUT_SECONDS = 5L
+private const val TOKEN_TIMEOUT_MILLIS = 5000
+
+/**
+ * Loopback socket the reporter of one run sends its TeamCity messages over instead of stdout. The
+ * reporter connects to [port] and writes each message as a frame of its UTF-8 length, a 4 byte big
+ * endian integer, followed by the message, so no message can be split or mixed with test output.
+ * Its first frame must be the run's [token], any other process connecting to the port is rejected.
+ *
+ * Messages received before a sink is [attach]ed are held back until then.
+ */
+class VitestEventChannel private constructor(private val serverSocket: ServerSocket) {
+
+    private val finished = CountDownLatch(1)
+    private val tokenBytes = UUID.randomUUID().toString().toByteArray(StandardCharsets.UTF_8)
+    private val pendingMessages = mutableListOf<String>()
+    private var sink: ((String) -> Unit)? = null
+
+    @Volatile
+    private var socket: Socket? = null
+
+    val port: Int
+        get() = serverSocket.localPort
+
+    /**
+     * Passed to the reporter with the port, it sends it first to prove it is the run's reporter
+     */
+    val token: String = String(tokenBytes, StandardCharsets.UTF_8)
+
+    /**
+     * Whether the reporter connected and sent the token, from then on its messages only arrive
+     * through this channel
+     */
+    val isConnected: Boolean
+        get() = socket != null
+
+    fun start() {
+        ApplicationManager.getApplication().executeOnPooledThread {
+            try {
+                while (true) {
+                    val connection = serverSocket.accept()
+                    val input = authenticate(connection)
+                    if (input == null) {
+                        connection.close()
+                        continue
+                    }
+                    connection.use {
+                        socket = it
+                        serverSocket.close()
+                        read(input)
+                    }
+                    break
+                }
+            } catch (e: IOException) {
+                if (!serverSocket.isClosed) {
+                    LOG.warn("Vitest event channel failed", e)
+                }
+            } finally {
+                finished.countDown()
+            }
+        }
+    }
+
+    fun attach(sink: (String) -> Unit) {
+        val pending = synchronized(this) {
+            this.sink = sink
+            pendingMessages.toList().also { pendingMessages.clear() }
+        }
+        pending.forEach(sink)
+    }
+
+    /**
+     * Waits for the reporter to close its end after the process ended and stops listening, every
+     * message has been delivered once this returns. Safe to call more than once.
+     */
+    fun finish() {
+        if (isConnected && !finished.await(FINISH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOG.warn("Vitest reporter did not close its event channel")
+        }
+        close()
+    }
+
+    fun close() {
+        try {
+            serverSocket.close()
+            socket?.close()
+        } catch (e: IOException) {
+            LOG.debug(e)
+        }
+    }
+
+    /**
+     * Reads the first frame of a connection, returning the input to read the messages from when it
+     * is the token and null otherwise
+     */
+    private fun authenticate(connection: Socket): DataInputStream? {
+        return try {
+            connection.soTimeout = TOKEN_TIMEOUT_MILLIS
+            val input = DataInputStream(connection.getInputStream().buffered())
+            val received = readFrame(input, tokenBytes.size)
+            connection.soTimeout = 0
+            if (received != null && MessageDigest.isEqual(received, tokenBytes)) {
+                input
+            } else {
+                LOG.warn("Vitest event channel rejected a connection without the run's token")
+                null
+            }
+        } catch (e: IOException) {
+            LOG.warn("Vitest event channel rejected a connection without the run's token", e)
+            null
+        }
+    }
+
+    private fun read(input: DataInputStream) {
+        while (true) {
+            val bytes = readFrame(input, MAX_FRAME_LENGTH) ?: return
+            deliver(String(bytes, StandardCharsets.UTF_8))
+        }
+    }
+
+    /**
+     * The next frame's bytes, or null when the connection was closed before it started
+     */
+    private fun readFrame(input: DataInputStream, maxLength: Int): ByteArray? {
+        val length = try {
+            input.readInt()
+        } catch (e: EOFException) {
+            return null
+        }
+        if (length < 0 || length > maxLength) {
+            throw IOException("Invalid frame length $length")
+        }
+        val bytes = ByteArray(length)
+        input.readFully(bytes)
+        return bytes
+    }
+
+    private fun deliver(message: String) {
+        val sink = synchronized(this) {
+            sink ?: run {
+                pendingMessages.add(message)
+                return
+            }
+        }
+        sink(message)
+    }
+
+    companion object {
+        @JvmField
+        val KEY: Key<VitestEventChannel> = Key.create("vitest.eventChannel")
+
+        @JvmStatic
+        @Throws(IOException::class)
+        fun open(): VitestEventChannel {
+            return VitestEventChannel(ServerSocket(0, 1, InetAddress.getByName("127.0.0.1")))
+        }
+    }
+}
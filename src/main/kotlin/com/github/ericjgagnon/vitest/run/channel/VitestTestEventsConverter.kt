@@ -0,0 +1,223 @@
+package com.github.ericjgagnon.vitest.run.channel
+
+import com.github.ericjgagnon.vitest.run.VitestConstants.BENCHMARK_RESULT_MESSAGE
+import com.github.ericjgagnon.vitest.run.VitestConstants.CHANNEL_CLOSED_MESSAGE
+import com.github.ericjgagnon.vitest.run.VitestConstants.FILE_TIMINGS_MESSAGE
+import com.github.ericjgagnon.vitest.run.VitestConstants.RUN_TIMINGS_MESSAGE
+import com.github.ericjgagnon.vitest.run.bench.VitestBenchmarkBaselines
+import com.github.ericjgagnon.vitest.run.bench.VitestBenchmarkComparison
+import com.github.ericjgagnon.vitest.run.bench.VitestBenchmarkResult
+import com.github.ericjgagnon.vitest.run.output.VitestSpilledOutput
+import com.github.ericjgagnon.vitest.run.output.VitestTestOutputCapture
+import com.github.ericjgagnon.vitest.run.parallel.VitestServiceMessageRewriter
+import com.github.ericjgagnon.vitest.run.timing.VitestPhaseTimings
+import com.intellij.execution.testframework.TestConsoleProperties
+import com.intellij.execution.testframework.sm.runner.GeneralIdBasedToSMTRunnerEventsConvertor
+import com.intellij.execution.testframework.sm.runner.GeneralTestEventsProcessor
+import com.intellij.execution.testframework.sm.runner.OutputToGeneralTestEventsConverter
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsAdapter
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.util.Key
+import jetbrains.buildServer.messages.serviceMessages.ServiceMessage
+import jetbrains.buildServer.messages.serviceMessages.ServiceMessageVisitor
+import jetbrains.buildServer.messages.serviceMessages.TestStdErr
+import jetbrains.buildServer.messages.serviceMessages.TestFinished
+import jetbrains.buildServer.messages.serviceMessages.TestStdOut
+import jetbrains.buildServer.messages.serviceMessages.TestSuiteFinished
+
+/**
+ * Output type of the messages received over the [VitestEventChannel], never split into lines or
+ * merged with partial lines of the process output
+ */
+private val CHANNEL_OUTPUT_TYPE = Key<Any>("VitestEventChannel")
+private const val TESTING_STARTED = "testingStarted"
+private const val TESTING_STARTED_LINE = "##teamcity[$TESTING_STARTED"
+private const val SERVICE_MESSAGE_PREFIX = "##teamcity["
+private const val CHANNEL_CLOSED_LINE = "$SERVICE_MESSAGE_PREFIX$CHANNEL_CLOSED_MESSAGE"
+private val NODE_ATTRIBUTES = setOf("id", "name", "nodeId", "parentNodeId")
+
+/**
+ * Feeds the reporter's messages into the test tree, from the process output or from a
+ * [VitestEventChannel]. Once the reporter is connected to the channel, the process output is only
+ * console output and is no longer checked for service messages, until the reporter announces that
+ * the messages of its exit follow on stdout. Those are held back and reported once the process
+ * terminated and everything sent over the channel was received.
+ *
+ * Console output of each test beyond what [VitestTestOutputCapture] keeps in memory goes to disk and
+ * is only read back when the test is selected. Phase timings are collected into [phaseTimings].
+ *
+ * Benchmark results are compared with their [benchmarkBaselines] and fail the benchmark when it is
+ * more than [benchmarkThreshold] percent slower.
+ *
+ * A watch run reports every rerun into the same console, starting with testingStarted. Each rerun
+ * starts from an empty tree, and since Vitest reuses its task ids, which the processor would take for
+ * nodes it already finished, the node ids of every run after the first get a prefix of their own.
+ */
+class VitestTestEventsConverter(
+    testFrameworkName: String,
+    consoleProperties: TestConsoleProperties,
+    private val channel: VitestEventChannel?,
+    private val phaseTimings: VitestPhaseTimings,
+    private val benchmarkBaselines: VitestBenchmarkBaselines,
+    private val benchmarkThreshold: Int,
+) : OutputToGeneralTestEventsConverter(testFrameworkName, consoleProperties) {
+
+    private val lock = Any()
+    private val outputCapture = VitestTestOutputCapture().also { Disposer.register(consoleProperties, it) }
+    private var runCount = 0
+    private var rerunNodeIds: VitestServiceMessageRewriter? = null
+    private var channelClosed = false
+    private val lateMessages = mutableListOf<String>()
+
+    override fun setProcessor(processor: GeneralTestEventsProcessor?) {
+        super.setProcessor(processor)
+        processor?.addEventsListener(object : SMTRunnerEventsAdapter() {
+            override fun onTestingStarted(testsRoot: SMTestProxy.SMRootTestProxy) {
+                if (testsRoot.children.isNotEmpty()) {
+                    testsRoot.testingRestarted()
+                }
+            }
+        })
+    }
+
+    override fun onStartTesting() {
+        super.onStartTesting()
+        channel?.attach { message -> process(message + "\n", CHANNEL_OUTPUT_TYPE) }
+    }
+
+    override fun process(text: String, outputType: Key<*>) {
+        // The channel and the process output are read on different threads
+        synchronized(lock) {
+            super.process(text, outputType)
+        }
+    }
+
+    override fun processServiceMessages(text: String, outputType: Key<*>, visitor: ServiceMessageVisitor): Boolean {
+        if (channel != null && outputType !== CHANNEL_OUTPUT_TYPE && channel.isConnected) {
+            return holdBackLateMessage(text)
+        }
+        return super.processServiceMessages(separateRuns(text), outputType, RunMessageVisitor(visitor))
+    }
+
+    private fun separateRuns(text: String): String {
+        if (text.startsWith(TESTING_STARTED_LINE)) {
+            runCount++
+            rerunNodeIds = if (runCount > 1) VitestServiceMessageRewriter("r${runCount}_") else null
+            return text
+        }
+        return rerunNodeIds?.prefixNodeIds(text) ?: text
+    }
+
+    /**
+     * Whether the line of the process output is a message the reporter wrote after closing the channel
+     */
+    private fun holdBackLateMessage(text: String): Boolean {
+        if (!channelClosed) {
+            channelClosed = text.startsWith(CHANNEL_CLOSED_LINE)
+            return channelClosed
+        }
+        if (!text.startsWith(SERVICE_MESSAGE_PREFIX)) {
+            return false
+        }
+        lateMessages.add(text.trimEnd('\r', '\n'))
+        return true
+    }
+
+    override fun flushBufferOnProcessTermination(exitCode: Int) {
+        channel?.finish()
+        val messages = synchronized(lock) {
+            lateMessages.toList().also { lateMessages.clear() }
+        }
+        messages.forEach { process(it + "\n", CHANNEL_OUTPUT_TYPE) }
+        super.flushBufferOnProcessTermination(exitCode)
+    }
+
+    /**
+     * Whether the output goes to the test tree as usual, otherwise it was written to disk
+     */
+    private fun keepInTree(message: ServiceMessage, text: String): Boolean {
+        val nodeId = message.attributes["nodeId"] ?: return true
+        if (outputCapture.accepts(nodeId, text.length)) {
+            return true
+        }
+        outputCapture.spill(nodeId, text)?.let { attachSpilledOutput(nodeId, it) }
+        return false
+    }
+
+    private fun attachSpilledOutput(nodeId: String, spilledOutput: VitestSpilledOutput) {
+        val processor = processor as? GeneralIdBasedToSMTRunnerEventsConvertor ?: return
+        // After the events already handed to the processor, which applies them on the EDT
+        ApplicationManager.getApplication().invokeLater {
+            processor.findProxyById(nodeId)?.addLast(spilledOutput)
+        }
+    }
+
+    /**
+     * Messages for the node of a benchmark describing its result and, on a regression, failing it
+     */
+    private fun benchmarkMessages(message: ServiceMessage): List<String> {
+        val attributes = message.attributes
+        val result = VitestBenchmarkResult.fromAttributes(attributes) ?: return emptyList()
+        val path = attributes["path"]
+        val fullName = attributes["fullName"]
+        val comparison = if (path != null && fullName != null) {
+            benchmarkBaselines.compare(path, fullName, result, benchmarkThreshold)
+        } else {
+            VitestBenchmarkComparison(result, null, benchmarkThreshold)
+        }
+
+        val nodeAttributes = attributes.filterKeys(NODE_ATTRIBUTES::contains)
+        val messages = mutableListOf(ServiceMessage.asString("testStdOut", nodeAttributes + ("out" to comparison.describe() + "\n")))
+        if (comparison.isRegression) {
+            messages.add(ServiceMessage.asString("testFailed", nodeAttributes + ("message" to comparison.describeRegression())))
+        }
+        return messages
+    }
+
+    private fun phases(message: ServiceMessage): Map<String, Long> {
+        return message.attributes.mapNotNull { (name, value) -> value.toLongOrNull()?.let { name to it } }.toMap()
+    }
+
+    private inner class RunMessageVisitor(private val delegate: ServiceMessageVisitor) : ServiceMessageVisitor by delegate {
+        override fun visitServiceMessage(message: ServiceMessage) {
+            when (message.messageName) {
+                RUN_TIMINGS_MESSAGE -> phaseTimings.addRun(phases(message))
+                FILE_TIMINGS_MESSAGE -> message.attributes["path"]?.let { phaseTimings.addFile(it, phases(message)) }
+                BENCHMARK_RESULT_MESSAGE -> benchmarkMessages(message).forEach { ServiceMessage.parse(it)?.visit(this) }
+                // Only means something while the channel is connected, see holdBackLateMessage
+                CHANNEL_CLOSED_MESSAGE -> {}
+                else -> {
+                    // Cleared here rather than by the console, which only learns of the run later on the EDT
+                    if (message.messageName == TESTING_STARTED) {
+                        phaseTimings.clear()
+                    }
+                    delegate.visitServiceMessage(message)
+                }
+            }
+        }
+
+        override fun visitTestStdOut(testStdOut: TestStdOut) {
+            if (keepInTree(testStdOut, testStdOut.stdOut)) {
+                delegate.visitTestStdOut(testStdOut)
+            }
+        }
+
+        override fun visitTestStdErr(testStdErr: TestStdErr) {
+            if (keepInTree(testStdErr, testStdErr.stdErr)) {
+                delegate.visitTestStdErr(testStdErr)
+            }
+        }
+
+        override fun visitTestFinished(testFinished: TestFinished) {
+            delegate.visitTestFinished(testFinished)
+            testFinished.attributes["nodeId"]?.let(outputCapture::finish)
+        }
+
+        override fun visitTestSuiteFinished(suiteFinished: TestSuiteFinished) {
+            delegate.visitTestSuiteFinished(suiteFinished)
+            suiteFinished.attributes["nodeId"]?.let(outputCapture::finish)
+        }
+    }
+}
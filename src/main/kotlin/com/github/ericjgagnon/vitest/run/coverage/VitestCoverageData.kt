@@ -0,0 +1,16 @@
+package com.github.ericjgagnon.vitest.run.coverage
+
+import com.intellij.openapi.util.io.FileUtil
+
+/**
+ * The coverage of one run, every file kept in its encoded form until an editor asks for it
+ */
+class VitestCoverageData(private val files: Map<String, ByteArray>, val coveredLines: Long, val totalLines: Long) {
+
+    val fileCount: Int
+        get() = files.size
+
+    operator fun get(path: String): VitestFileCoverage? {
+        return files[FileUtil.toSystemIndependentName(path)]?.let(VitestFileCoverage::decode)
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.ericjgagnon.vitest.run.coverage
+
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.editor.colors.CodeInsightColors
+import com.intellij.openapi.editor.colors.TextAttributesKey
+import com.intellij.openapi.editor.impl.DocumentMarkupModel
+import com.intellij.openapi.editor.markup.HighlighterLayer
+import com.intellij.openapi.editor.markup.LineMarkerRenderer
+import com.intellij.openapi.editor.markup.RangeHighlighter
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.fileEditor.FileEditorManagerListener
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.vfs.VirtualFile
+import java.awt.Graphics
+import java.awt.Rectangle
+
+private val HIGHLIGHTERS = Key.create<List<RangeHighlighter>>("vitest.coverage.highlighters")
+private const val MARKER_WIDTH = 3
+
+/**
+ * Marks covered and uncovered lines in the gutter. A file's coverage is only decoded once it is
+ * opened, so a run covering thousands of files costs nothing for the ones never looked at.
+ */
+class VitestCoverageHighlighter(private val project: Project) : FileEditorManagerListener {
+
+    override fun fileOpened(source: FileEditorManager, file: VirtualFile) {
+        highlight(project, file)
+    }
+
+    companion object {
+        /**
+         * Replaces the coverage markers of [file] with the ones of the current coverage, must be called
+         * on the EDT
+         */
+        fun highlight(project: Project, file: VirtualFile) {
+            val document = FileDocumentManager.getInstance().getCachedDocument(file) ?: return
+            val markupModel = DocumentMarkupModel.forDocument(document, project, true)
+            document.getUserData(HIGHLIGHTERS)?.forEach(markupModel::removeHighlighter)
+            document.putUserData(HIGHLIGHTERS, null)
+
+            val coverage = VitestCoverageService.getInstance(project).coverage(file) ?: return
+            val highlighters = ArrayList<RangeHighlighter>(coverage.lines.size)
+            for (i in coverage.lines.indices) {
+                val line = coverage.lines[i] - 1
+                if (line >= document.lineCount) {
+                    break
+                }
+                val hits = coverage.hits[i]
+                val highlighter = markupModel.addLineHighlighter(line, HighlighterLayer.SELECTION - 1, null)
+                highlighter.lineMarkerRenderer = CoverageLineMarkerRenderer(
+                    if (hits > 0) CodeInsightColors.LINE_FULL_COVERAGE else CodeInsightColors.LINE_NONE_COVERAGE
+                )
+                highlighter.errorStripeTooltip = if (hits == 1) "Ran once" else "Ran $hits times"
+                highlighters.add(highlighter)
+            }
+            document.putUserData(HIGHLIGHTERS, highlighters)
+        }
+    }
+
+    private class CoverageLineMarkerRenderer(private val key: TextAttributesKey) : LineMarkerRenderer {
+        override fun paint(editor: Editor, g: Graphics, r: Rectangle) {
+            val color = editor.colorsScheme.getAttributes(key)?.foregroundColor ?: return
+            g.color = color
+            g.fillRect(r.x, r.y, MARKER_WIDTH, r.height)
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.github.ericjgagnon.vitest.run.coverage
+
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Reads the `coverage-final.json` written by Vitest's `json` coverage reporter, the istanbul format
+ * both the c8 and the istanbul providers produce.
+ *
+ * The report is streamed token by token and only the statement locations and counts are kept, function
+ * and branch data are skipped without being materialized. Line hits follow istanbul's own line
+ * coverage: a line ran as often as the most executed statement starting on it.
+ */
+object VitestCoverageParser {
+
+    private val jsonFactory = JsonFactory()
+
+    @Throws(IOException::class)
+    fun parse(input: InputStream, consumer: (path: String, coverage: VitestFileCoverage) -> Unit) {
+        jsonFactory.createParser(input).use { parser ->
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw IOException("Coverage report is not a JSON object")
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                val key = parser.currentName
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren()
+                    continue
+                }
+                val file = parseFile(parser)
+                consumer(file.path ?: key, file.toCoverage())
+            }
+        }
+    }
+
+    private fun parseFile(parser: JsonParser): FileData {
+        val file = FileData()
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val name = parser.currentName
+            parser.nextToken()
+            when (name) {
+                "path" -> file.path = parser.valueAsString
+                "statementMap" -> parseStatementMap(parser, file.startLines)
+                "s" -> parseCounts(parser, file.counts)
+                else -> parser.skipChildren()
+            }
+        }
+        return file
+    }
+
+    private fun parseStatementMap(parser: JsonParser, startLines: IntArrayList) {
+        if (parser.currentToken != JsonToken.START_OBJECT) {
+            parser.skipChildren()
+            return
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val id = parser.currentName.toIntOrNull()
+            if (parser.nextToken() != JsonToken.START_OBJECT || id == null) {
+                parser.skipChildren()
+                continue
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                val name = parser.currentName
+                parser.nextToken()
+                if (name == "start" && parser.currentToken == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        val field = parser.currentName
+                        parser.nextToken()
+                        if (field == "line") {
+                            set(startLines, id, parser.intValue)
+                        } else {
+                            parser.skipChildren()
+                        }
+                    }
+                } else {
+                    parser.skipChildren()
+                }
+            }
+        }
+    }
+
+    private fun parseCounts(parser: JsonParser, counts: IntArrayList) {
+        if (parser.currentToken != JsonToken.START_OBJECT) {
+            parser.skipChildren()
+            return
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val id = parser.currentName.toIntOrNull()
+            parser.nextToken()
+            if (id != null && parser.currentToken == JsonToken.VALUE_NUMBER_INT) {
+                set(counts, id, parser.longValue.coerceIn(0, Int.MAX_VALUE.toLong()).toInt())
+            } else {
+                parser.skipChildren()
+            }
+        }
+    }
+
+    private fun set(list: IntArrayList, index: Int, value: Int) {
+        while (list.size <= index) {
+            list.add(-1)
+        }
+        list.set(index, value)
+    }
+
+    private class FileData {
+        var path: String? = null
+        val startLines = IntArrayList()
+        val counts = IntArrayList()
+
+        fun toCoverage(): VitestFileCoverage {
+            var maxLine = 0
+            for (i in 0 until startLines.size) {
+                maxLine = maxOf(maxLine, startLines.getInt(i))
+            }
+            val hitsByLine = IntArray(maxLine + 1) { -1 }
+            for (id in 0 until minOf(startLines.size, counts.size)) {
+                val line = startLines.getInt(id)
+                val count = counts.getInt(id)
+                if (line > 0 && count >= 0 && count > hitsByLine[line]) {
+                    hitsByLine[line] = count
+                }
+            }
+
+            val lineCount = hitsByLine.count { it >= 0 }
+            val lines = IntArray(lineCount)
+            val hits = IntArray(lineCount)
+            var index = 0
+            for (line in hitsByLine.indices) {
+                if (hitsByLine[line] >= 0) {
+                    lines[index] = line
+                    hits[index++] = hitsByLine[line]
+                }
+            }
+            return VitestFileCoverage(lines, hits)
+        }
+    }
+}
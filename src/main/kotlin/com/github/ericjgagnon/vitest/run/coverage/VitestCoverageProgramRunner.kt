@@ -0,0 +1,62 @@
+package com.github.ericjgagnon.vitest.run.coverage
+
+import com.github.ericjgagnon.vitest.run.VitestConstants.COVERAGE_EXECUTOR_ID
+import com.github.ericjgagnon.vitest.run.VitestRunConfiguration
+import com.github.ericjgagnon.vitest.run.VitestScopeKind
+import com.intellij.execution.ExecutionException
+import com.intellij.execution.configurations.RunProfile
+import com.intellij.execution.configurations.RunProfileState
+import com.intellij.execution.configurations.RunnerSettings
+import com.intellij.execution.process.ProcessAdapter
+import com.intellij.execution.process.ProcessEvent
+import com.intellij.execution.runners.ExecutionEnvironment
+import com.intellij.execution.runners.GenericProgramRunner
+import com.intellij.execution.runners.RunContentBuilder
+import com.intellij.execution.ui.RunContentDescriptor
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.io.FileUtil
+import java.io.IOException
+import java.nio.file.Path
+
+/**
+ * Runs a Vitest configuration with the "Run with Coverage" executor. Vitest writes its json coverage
+ * report into a fresh directory which is loaded into [VitestCoverageService] once the run is over.
+ */
+class VitestCoverageProgramRunner : GenericProgramRunner<RunnerSettings>() {
+
+    override fun getRunnerId(): String = "VitestCoverageRunner"
+
+    override fun canRun(executorId: String, profile: RunProfile): Boolean {
+        // Each package of a workspace run would write its own report
+        return COVERAGE_EXECUTOR_ID == executorId && profile is VitestRunConfiguration && profile.settings.scope() != VitestScopeKind.PACKAGES
+    }
+
+    override fun doExecute(state: RunProfileState, environment: ExecutionEnvironment): RunContentDescriptor? {
+        FileDocumentManager.getInstance().saveAllDocuments()
+        val reportDirectory = try {
+            FileUtil.createTempDirectory("vitest-coverage", null, true).toPath()
+        } catch (e: IOException) {
+            throw ExecutionException("Unable to create the coverage report directory", e)
+        }
+        environment.putUserData(REPORT_DIRECTORY, reportDirectory)
+
+        val executionResult = state.execute(environment.executor, this) ?: return null
+        executionResult.processHandler.addProcessListener(object : ProcessAdapter() {
+            override fun processTerminated(event: ProcessEvent) {
+                VitestCoverageService.getInstance(environment.project).load(reportDirectory.resolve(REPORT_FILE_NAME))
+            }
+        })
+        return RunContentBuilder(executionResult, environment).showRunContent(environment.contentToReuse)
+    }
+
+    companion object {
+        const val REPORT_FILE_NAME = "coverage-final.json"
+
+        /**
+         * Where the run started by this runner must write its coverage report
+         */
+        @JvmField
+        val REPORT_DIRECTORY: Key<Path> = Key.create("vitest.coverage.reportDirectory")
+    }
+}
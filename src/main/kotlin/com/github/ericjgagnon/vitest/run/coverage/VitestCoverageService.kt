@@ -0,0 +1,89 @@
+package com.github.ericjgagnon.vitest.run.coverage
+
+import com.intellij.notification.NotificationGroupManager
+import com.intellij.notification.NotificationType
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.vfs.VirtualFile
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+
+private val LOG = logger<VitestCoverageService>()
+private const val NOTIFICATION_GROUP = "Vitest"
+
+/**
+ * Holds the coverage of the last run with coverage of the project and keeps the gutters of the open
+ * editors in sync with it.
+ */
+class VitestCoverageService(private val project: Project) {
+
+    @Volatile
+    var data: VitestCoverageData? = null
+        private set
+
+    fun coverage(file: VirtualFile): VitestFileCoverage? = data?.get(file.path)
+
+    /**
+     * Reads [reportFile] in the background, replaces the current coverage with it and deletes the
+     * report directory
+     */
+    fun load(reportFile: Path) {
+        object : Task.Backgroundable(project, "Loading Vitest coverage", true) {
+            override fun run(indicator: ProgressIndicator) {
+                try {
+                    if (!Files.isRegularFile(reportFile)) {
+                        notify("Vitest wrote no coverage report, make sure a coverage provider is installed", NotificationType.WARNING)
+                        return
+                    }
+                    val loaded = read(reportFile, indicator)
+                    data = loaded
+                    ApplicationManager.getApplication().invokeLater({ highlightOpenFiles() }, project.disposed)
+                    notify("Covered ${loaded.coveredLines} of ${loaded.totalLines} lines in ${loaded.fileCount} files", NotificationType.INFORMATION)
+                } catch (e: IOException) {
+                    LOG.warn("Unable to read coverage report $reportFile", e)
+                    notify("Unable to read the coverage report: ${e.message}", NotificationType.ERROR)
+                } finally {
+                    FileUtil.delete(reportFile.parent)
+                }
+            }
+        }.queue()
+    }
+
+    private fun read(reportFile: Path, indicator: ProgressIndicator): VitestCoverageData {
+        val files = HashMap<String, ByteArray>()
+        var coveredLines = 0L
+        var totalLines = 0L
+        Files.newInputStream(reportFile).buffered().use { input ->
+            VitestCoverageParser.parse(input) { path, coverage ->
+                indicator.checkCanceled()
+                indicator.text2 = path
+                files[FileUtil.toSystemIndependentName(path)] = coverage.encode()
+                coveredLines += coverage.coveredLineCount
+                totalLines += coverage.lines.size
+            }
+        }
+        return VitestCoverageData(files, coveredLines, totalLines)
+    }
+
+    private fun highlightOpenFiles() {
+        FileEditorManager.getInstance(project).openFiles.forEach { VitestCoverageHighlighter.highlight(project, it) }
+    }
+
+    private fun notify(content: String, type: NotificationType) {
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP)
+            .createNotification(content, type)
+            .notify(project)
+    }
+
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project): VitestCoverageService = project.service()
+    }
+}
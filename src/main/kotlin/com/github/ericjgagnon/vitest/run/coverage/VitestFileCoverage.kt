@@ -0,0 +1,78 @@
+package com.github.ericjgagnon.vitest.run.coverage
+
+/**
+ * Line hits of one file, [lines] holds the 1-based line numbers with code in ascending order and
+ * [hits] how often each of them ran.
+ */
+class VitestFileCoverage(val lines: IntArray, val hits: IntArray) {
+
+    val coveredLineCount: Int
+        get() = hits.count { it > 0 }
+
+    /**
+     * Packs the coverage into varints of line deltas and hits, a fraction of the size of the arrays
+     * for the typical file with small hit counts
+     */
+    fun encode(): ByteArray {
+        val bytes = VarIntWriter(lines.size * 2 + 4)
+        bytes.write(lines.size)
+        var previousLine = 0
+        for (i in lines.indices) {
+            bytes.write(lines[i] - previousLine)
+            bytes.write(hits[i])
+            previousLine = lines[i]
+        }
+        return bytes.toByteArray()
+    }
+
+    companion object {
+        fun decode(bytes: ByteArray): VitestFileCoverage {
+            var position = 0
+            fun read(): Int {
+                var value = 0
+                var shift = 0
+                while (true) {
+                    val byte = bytes[position++].toInt()
+                    value = value or ((byte and 0x7f) shl shift)
+                    if (byte and 0x80 == 0) {
+                        return value
+                    }
+                    shift += 7
+                }
+            }
+
+            val size = read()
+            val lines = IntArray(size)
+            val hits = IntArray(size)
+            var line = 0
+            for (i in 0 until size) {
+                line += read()
+                lines[i] = line
+                hits[i] = read()
+            }
+            return VitestFileCoverage(lines, hits)
+        }
+    }
+
+    private class VarIntWriter(capacity: Int) {
+        private var buffer = ByteArray(capacity)
+        private var size = 0
+
+        fun write(value: Int) {
+            var remaining = value
+            while (true) {
+                if (size == buffer.size) {
+                    buffer = buffer.copyOf(buffer.size * 2)
+                }
+                if (remaining and 0x7f.inv() == 0) {
+                    buffer[size++] = remaining.toByte()
+                    return
+                }
+                buffer[size++] = ((remaining and 0x7f) or 0x80).toByte()
+                remaining = remaining ushr 7
+            }
+        }
+
+        fun toByteArray(): ByteArray = buffer.copyOf(size)
+    }
+}
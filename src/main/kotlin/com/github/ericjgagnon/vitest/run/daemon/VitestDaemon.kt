@@ -0,0 +1,168 @@
+package com.github.ericjgagnon.vitest.run.daemon
+
+import com.intellij.execution.process.ProcessAdapter
+import com.intellij.execution.process.ProcessEvent
+import com.intellij.execution.process.ProcessHandler
+import com.intellij.execution.process.ProcessOutputTypes
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.util.Key
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicInteger
+
+private val LOG = logger<VitestDaemon>()
+private const val RUN_FINISHED_PREFIX = "##vitest-daemon[runFinished "
+
+/**
+ * A long-lived Vitest process started by `daemon.js` which runs test files on request instead of
+ * booting Vite, resolving the config and optimizing dependencies for every launch.
+ *
+ * Only one run is in flight at a time; its output is forwarded to the [VitestDaemonRunProcessHandler]
+ * returned by [run] until the daemon reports the run as finished.
+ */
+class VitestDaemon(val key: VitestDaemonKey, private val processHandler: ProcessHandler) {
+
+    private val requestIds = AtomicInteger()
+    private val stdOutLine = StringBuilder()
+
+    @Volatile
+    private var currentRun: VitestDaemonRunProcessHandler? = null
+
+    @Volatile
+    var lastUsed: Long = System.currentTimeMillis()
+        private set
+
+    init {
+        processHandler.addProcessListener(object : ProcessAdapter() {
+            override fun onTextAvailable(event: ProcessEvent, outputType: Key<*>) {
+                if (ProcessOutputTypes.STDOUT == outputType) {
+                    onStdOut(event.text)
+                } else if (ProcessOutputTypes.SYSTEM != outputType) {
+                    currentRun?.output(event.text, outputType)
+                }
+            }
+
+            override fun processTerminated(event: ProcessEvent) {
+                LOG.info("Vitest daemon for ${key.workingDirectory} exited with code ${event.exitCode}")
+                finishCurrentRun(event.exitCode)
+            }
+        })
+        processHandler.startNotify()
+    }
+
+    val isAlive: Boolean
+        get() = !processHandler.isProcessTerminating && !processHandler.isProcessTerminated
+
+    val isBusy: Boolean
+        get() = currentRun != null
+
+    /**
+     * Asks the daemon to run the test files matching [filters], or every test file when empty, with
+     * [environment] variables set or, for null values, unset. [changedFiles] are reloaded by Vitest
+     * first, without waiting for its file watcher to notice them.
+     * Returns null when the daemon is busy with another run or can no longer accept requests.
+     */
+    @Synchronized
+    fun run(
+        filters: List<String>,
+        testNamePattern: String?,
+        environment: Map<String, String?> = emptyMap(),
+        changedFiles: List<String> = emptyList(),
+    ): VitestDaemonRunProcessHandler? {
+        val input = processHandler.processInput
+        if (currentRun != null || !isAlive || input == null) {
+            return null
+        }
+
+        val id = requestIds.incrementAndGet()
+        val run = VitestDaemonRunProcessHandler(this)
+        val request = buildString {
+            append("{\"id\":").append(id)
+            append(",\"filters\":[")
+            filters.joinTo(this, ",") { toJsonString(it) }
+            append("]")
+            testNamePattern?.let { append(",\"testNamePattern\":").append(toJsonString(it)) }
+            if (changedFiles.isNotEmpty()) {
+                append(",\"changed\":[")
+                changedFiles.joinTo(this, ",") { toJsonString(it) }
+                append("]")
+            }
+            if (environment.isNotEmpty()) {
+                append(",\"env\":{")
+                environment.entries.joinTo(this, ",") { (name, value) ->
+                    toJsonString(name) + ":" + (value?.let(::toJsonString) ?: "null")
+                }
+                append("}")
+            }
+            append("}\n")
+        }
+
+        currentRun = run
+        lastUsed = System.currentTimeMillis()
+        try {
+            input.write(request.toByteArray(StandardCharsets.UTF_8))
+            input.flush()
+        } catch (e: IOException) {
+            LOG.warn("Unable to send run request to Vitest daemon", e)
+            currentRun = null
+            return null
+        }
+        return run
+    }
+
+    fun destroy() {
+        processHandler.destroyProcess()
+    }
+
+    private fun onStdOut(text: String) {
+        var start = 0
+        while (start < text.length) {
+            val newLine = text.indexOf('\n', start)
+            if (newLine == -1) {
+                stdOutLine.append(text, start, text.length)
+                return
+            }
+            stdOutLine.append(text, start, newLine + 1)
+            onStdOutLine(stdOutLine.toString())
+            stdOutLine.setLength(0)
+            start = newLine + 1
+        }
+    }
+
+    private fun onStdOutLine(line: String) {
+        if (line.startsWith(RUN_FINISHED_PREFIX)) {
+            finishCurrentRun(if (line.contains("failed='true'")) 1 else 0)
+        } else {
+            currentRun?.output(line, ProcessOutputTypes.STDOUT)
+        }
+    }
+
+    private fun finishCurrentRun(exitCode: Int) {
+        val run = synchronized(this) {
+            currentRun.also { currentRun = null }
+        }
+        lastUsed = System.currentTimeMillis()
+        run?.finish(exitCode)
+    }
+
+    internal fun detach(run: VitestDaemonRunProcessHandler) {
+        synchronized(this) {
+            if (currentRun === run) {
+                currentRun = null
+            }
+        }
+    }
+
+    private fun toJsonString(value: String): String {
+        val builder = StringBuilder(value.length + 2).append('"')
+        for (char in value) {
+            when {
+                char == '"' -> builder.append("\\\"")
+                char == '\\' -> builder.append("\\\\")
+                char < ' ' -> builder.append(String.format("\\u%04x", char.code))
+                else -> builder.append(char)
+            }
+        }
+        return builder.append('"').toString()
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.ericjgagnon.vitest.run.daemon
+
+/**
+ * Identifies the daemon which can serve a run: one per interpreter, Vitest package, working
+ * directory and config file.
+ */
+data class VitestDaemonKey(
+    val interpreter: String,
+    val vitestPackage: String,
+    val workingDirectory: String,
+    val configFile: String?,
+)
@@ -0,0 +1,70 @@
+package com.github.ericjgagnon.vitest.run.daemon
+
+import com.intellij.execution.process.ProcessHandler
+import com.intellij.openapi.util.Key
+import java.io.OutputStream
+
+/**
+ * Process handler for a single run executed by a [VitestDaemon]. It never owns an OS process, the
+ * daemon pushes the run's output into it and terminates it once the run has finished.
+ *
+ * Output and termination arriving before the console called [startNotify] are held back so nothing
+ * is lost while the run content is being set up.
+ */
+class VitestDaemonRunProcessHandler(private val daemon: VitestDaemon) : ProcessHandler() {
+
+    private val pendingOutput = mutableListOf<Pair<String, Key<*>>>()
+    private var pendingExitCode: Int? = null
+    private var started = false
+
+    override fun startNotify() {
+        super.startNotify()
+        val exitCode = synchronized(this) {
+            started = true
+            pendingOutput.forEach { (text, outputType) -> notifyTextAvailable(text, outputType) }
+            pendingOutput.clear()
+            pendingExitCode
+        }
+        exitCode?.let(::finish)
+    }
+
+    /**
+     * Vitest cannot abort a run which is already in progress, so stopping the run stops the daemon
+     * and the next launch starts a fresh one.
+     */
+    override fun destroyProcessImpl() {
+        daemon.detach(this)
+        daemon.destroy()
+        notifyProcessTerminated(1)
+    }
+
+    override fun detachProcessImpl() {
+        destroyProcessImpl()
+    }
+
+    override fun detachIsDefault(): Boolean = false
+
+    override fun getProcessInput(): OutputStream? = null
+
+    internal fun output(text: String, outputType: Key<*>) {
+        synchronized(this) {
+            if (!started) {
+                pendingOutput.add(text to outputType)
+                return
+            }
+            notifyTextAvailable(text, outputType)
+        }
+    }
+
+    internal fun finish(exitCode: Int) {
+        synchronized(this) {
+            if (!started) {
+                pendingExitCode = exitCode
+                return
+            }
+        }
+        if (!isProcessTerminated && !isProcessTerminating) {
+            notifyProcessTerminated(exitCode)
+        }
+    }
+}
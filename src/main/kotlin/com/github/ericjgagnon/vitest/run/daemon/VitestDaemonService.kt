@@ -0,0 +1,68 @@
+package com.github.ericjgagnon.vitest.run.daemon
+
+import com.intellij.execution.process.ProcessHandler
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.project.Project
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+private val LOG = logger<VitestDaemonService>()
+private val IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(15)
+private const val EVICTION_PERIOD_MINUTES = 1L
+
+/**
+ * Keeps the warm [VitestDaemon]s of a project alive between launches and shuts down the ones which
+ * have been idle for longer than [IDLE_TIMEOUT_MILLIS].
+ */
+class VitestDaemonService : Disposable {
+
+    private val daemons = ConcurrentHashMap<VitestDaemonKey, VitestDaemon>()
+    private val eviction: ScheduledFuture<*> = AppExecutorUtil.getAppScheduledExecutorService()
+        .scheduleWithFixedDelay(::evictIdleDaemons, EVICTION_PERIOD_MINUTES, EVICTION_PERIOD_MINUTES, TimeUnit.MINUTES)
+
+    /**
+     * Runs the test files matching [filters] in the daemon identified by [key], starting the daemon
+     * with [startDaemon] when there is none yet. [environment] is applied to the daemon for this run
+     * and [changedFiles] are reloaded before it. Returns null when the daemon is busy with another run.
+     */
+    fun run(
+        key: VitestDaemonKey,
+        filters: List<String>,
+        testNamePattern: String?,
+        environment: Map<String, String?>,
+        changedFiles: List<String> = emptyList(),
+        startDaemon: () -> ProcessHandler,
+    ): VitestDaemonRunProcessHandler? {
+        val daemon = daemons.compute(key) { _, existing ->
+            if (existing != null && existing.isAlive) existing else VitestDaemon(key, startDaemon())
+        }!!
+        return daemon.run(filters, testNamePattern, environment, changedFiles)
+    }
+
+    private fun evictIdleDaemons() {
+        val now = System.currentTimeMillis()
+        daemons.values.removeIf { daemon ->
+            val evict = !daemon.isAlive || (!daemon.isBusy && now - daemon.lastUsed > IDLE_TIMEOUT_MILLIS)
+            if (evict) {
+                LOG.info("Stopping idle Vitest daemon for ${daemon.key.workingDirectory}")
+                daemon.destroy()
+            }
+            evict
+        }
+    }
+
+    override fun dispose() {
+        eviction.cancel(false)
+        daemons.values.forEach(VitestDaemon::destroy)
+        daemons.clear()
+    }
+
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project): VitestDaemonService = project.service()
+    }
+}
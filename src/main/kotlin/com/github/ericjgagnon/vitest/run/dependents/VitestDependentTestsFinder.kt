@@ -0,0 +1,133 @@
+package com.github.ericjgagnon.vitest.run.dependents
+
+import com.github.ericjgagnon.vitest.run.structure.VitestTestStructureIndex
+import com.intellij.lang.ecmascript6.psi.ES6FromClause
+import com.intellij.lang.javascript.psi.JSLiteralExpression
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiDirectory
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiFileSystemItem
+import com.intellij.psi.PsiManager
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.util.PsiTreeUtil
+
+private val TEST_FILE_NAME = Regex("\\.(test|spec)\\.[cm]?[jt]sx?$")
+private val INDEX_FILE_NAME = Regex("^index\\.[cm]?[jt]sx?$")
+
+/**
+ * Finds the test files which import a source file, directly or through any chain of other files,
+ * by walking the references to each file found so far. The walk takes a read action of its own for
+ * each level of references, so a long walk doesn't hold up write actions. Every other method must be
+ * called in a read action.
+ */
+class VitestDependentTestsFinder(private val project: Project) {
+
+    fun findDependentTests(sourceFile: VirtualFile): List<VirtualFile> {
+        return findDependents(sourceFile).tests
+    }
+
+    /**
+     * The dependent tests of [sourceFile] along with every file the walk went through to find them
+     */
+    fun findDependents(sourceFile: VirtualFile): VitestDependents {
+        val walk = Walk(sourceFile)
+        while (walk.hasNextLevel()) {
+            walk.nextLevel()
+        }
+        return VitestDependents(walk.tests.sortedBy { it.path }, walk.visited)
+    }
+
+    /**
+     * The files [file] imports, requires or re-exports, an imported directory standing for its index
+     * files. These are the references the walk of [findDependents] follows backwards.
+     */
+    fun importedFiles(file: VirtualFile): Set<VirtualFile> {
+        val psiFile = PsiManager.getInstance(project).findFile(file) ?: return emptySet()
+        val imported = mutableSetOf<VirtualFile>()
+        PsiTreeUtil.processElements(psiFile) { element ->
+            if (element is ES6FromClause || element is JSLiteralExpression) {
+                for (reference in element.references) {
+                    when (val target = reference.resolve()) {
+                        is PsiDirectory -> target.virtualFile.children.filterTo(imported) { INDEX_FILE_NAME.matches(it.name) }
+                        is PsiFile -> target.virtualFile?.let(imported::add)
+                    }
+                }
+            }
+            true
+        }
+        imported.remove(file)
+        return imported
+    }
+
+    /**
+     * The file itself and, for an index file, its directory since imports of the directory load it
+     */
+    private fun referenceTargets(psiManager: PsiManager, file: VirtualFile): List<PsiFileSystemItem> {
+        val psiFile: PsiFile = psiManager.findFile(file) ?: return emptyList()
+        val directory = psiFile.containingDirectory
+        return if (directory != null && INDEX_FILE_NAME.matches(file.name)) listOf(psiFile, directory) else listOf(psiFile)
+    }
+
+    fun isTestFile(file: VirtualFile): Boolean {
+        return TEST_FILE_NAME.containsMatchIn(file.name) || VitestTestStructureIndex.getStructure(project, file) != null
+    }
+
+    /**
+     * A breadth first walk of the files depending on [sourceFile], one level of references at a time
+     */
+    private inner class Walk(private val sourceFile: VirtualFile) {
+        private val psiManager = PsiManager.getInstance(project)
+        private val scope = GlobalSearchScope.projectScope(project)
+        private var level = listOf(sourceFile)
+        val visited = mutableSetOf(sourceFile)
+        val tests = mutableListOf<VirtualFile>()
+
+        fun hasNextLevel(): Boolean = level.isNotEmpty()
+
+        /**
+         * Collects the tests of the current level and moves on to the files referencing its other files
+         */
+        fun nextLevel() {
+            level = ReadAction.compute<List<VirtualFile>, RuntimeException> { walkLevel() }
+        }
+
+        private fun walkLevel(): List<VirtualFile> {
+            val nextLevel = mutableListOf<VirtualFile>()
+            for (file in level) {
+                ProgressManager.checkCanceled()
+                // Files may have gone while a write action ran between two levels
+                if (!file.isValid) {
+                    continue
+                }
+                if (isTestFile(file)) {
+                    tests.add(file)
+                    // Tests importing each other is rare, their dependents are not worth running
+                    if (file != sourceFile) {
+                        continue
+                    }
+                }
+
+                for (target in referenceTargets(psiManager, file)) {
+                    ReferencesSearch.search(target, scope).forEach { reference ->
+                        val dependent = reference.element.containingFile?.virtualFile
+                        if (dependent != null && visited.add(dependent)) {
+                            nextLevel.add(dependent)
+                        }
+                        true
+                    }
+                }
+            }
+            return nextLevel
+        }
+    }
+}
+
+/**
+ * What [VitestDependentTestsFinder.findDependents] found: the dependent [tests] and all the [files]
+ * depending on the source file, the source file included
+ */
+class VitestDependents(val tests: List<VirtualFile>, val files: Set<VirtualFile>)
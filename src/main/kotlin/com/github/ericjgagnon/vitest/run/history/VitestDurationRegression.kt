@@ -0,0 +1,16 @@
+package com.github.ericjgagnon.vitest.run.history
+
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
+
+/**
+ * A test of the last run which took much longer than its baseline
+ */
+data class VitestDurationRegression(
+    val test: SMTestProxy,
+    val name: String,
+    val durationMillis: Long,
+    val baselineMillis: Long,
+) {
+    val slowdown: Double
+        get() = durationMillis.toDouble() / baselineMillis.coerceAtLeast(1)
+}
@@ -0,0 +1,265 @@
+package com.github.ericjgagnon.vitest.run.history
+
+import com.github.ericjgagnon.vitest.run.VitestTestOrder
+import com.github.ericjgagnon.vitest.run.utils.TestProxyUtils
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.util.concurrency.AppExecutorUtil
+import com.intellij.util.io.DataInputOutputUtil
+import com.intellij.util.io.IOUtil
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+private val LOG = logger<VitestResultHistory>()
+private const val FORMAT_VERSION = 4
+// Entries of older formats lack the regressed runs and when the test last ran
+private const val OLDEST_FORMAT_VERSION = 2
+private const val REGRESSED_RUNS_FORMAT_VERSION = 3
+private const val MAX_ENTRIES = 20_000
+private val MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(90)
+
+/**
+ * Outcomes and durations of the tests of a project across runs, keyed by test file and full test
+ * name. Stored in the IDE system directory and fed from the test tree of every finished run.
+ *
+ * Tests which haven't run for [MAX_AGE_MILLIS], such as removed or renamed ones, are forgotten, and
+ * so are the least recently run ones beyond [MAX_ENTRIES].
+ */
+class VitestResultHistory(private val project: Project) : Disposable {
+
+    private val storeFile: Path = Path.of(PathManager.getSystemPath(), "vitest", "history", "${project.locationHash}.bin")
+    private val priorityDirectory: Path = Path.of(PathManager.getSystemPath(), "vitest", "priority")
+    private val entries = HashMap<String, VitestTestHistory>()
+    private var loaded = false
+    private val dirty = AtomicBoolean()
+
+    /**
+     * Records the results of the tests a finished run ran and returns the ones which were significantly slower
+     * than their baseline, compared before the baseline takes this run into account
+     */
+    fun record(tests: Collection<SMTestProxy>): List<VitestDurationRegression> {
+        val regressions = mutableListOf<VitestDurationRegression>()
+        synchronized(this) {
+            load()
+            for (test in tests) {
+                if (!test.isLeaf || test.isSuite) {
+                    continue
+                }
+                val file = TestProxyUtils.testFilePath(test)?.let(FileUtil::toSystemIndependentName) ?: continue
+                val name = TestProxyUtils.fullName(test)
+                val status = when {
+                    test.isIgnored -> VitestTestHistory.Status.SKIPPED
+                    test.isDefect -> VitestTestHistory.Status.FAILED
+                    test.isPassed -> VitestTestHistory.Status.PASSED
+                    else -> continue
+                }
+                val history = entries.getOrPut(key(file, name)) { VitestTestHistory(file, name) }
+                val duration = test.duration
+                if (status == VitestTestHistory.Status.PASSED && duration != null && history.isRegression(duration)) {
+                    regressions.add(VitestDurationRegression(test, name, duration, history.baselineMillis.toLong()))
+                }
+                history.record(status, duration)
+            }
+        }
+        scheduleSave()
+        return regressions.sortedByDescending { it.slowdown }
+    }
+
+    fun get(file: String, name: String): VitestTestHistory? {
+        synchronized(this) {
+            load()
+            return entries[key(FileUtil.toSystemIndependentName(file), name)]
+        }
+    }
+
+    /**
+     * Test files ranked for [order], most important first. Files without history are left out.
+     */
+    fun rankFiles(order: VitestTestOrder): List<String> {
+        if (order == VitestTestOrder.DEFAULT) {
+            return emptyList()
+        }
+        val failedFiles = mutableSetOf<String>()
+        val fileDurations = mutableMapOf<String, Long>()
+        synchronized(this) {
+            load()
+            for (history in entries.values) {
+                if (history.status == VitestTestHistory.Status.FAILED) {
+                    failedFiles.add(history.file)
+                }
+                fileDurations.merge(history.file, history.typicalDurationMillis(), Long::plus)
+            }
+        }
+        val slowestFirst = compareByDescending<String> { fileDurations[it] ?: 0 }
+        val comparator = if (order == VitestTestOrder.FAILED_FIRST) {
+            compareByDescending<String> { failedFiles.contains(it) }.then(slowestFirst)
+        } else {
+            slowestFirst
+        }
+        return fileDurations.keys.sortedWith(comparator)
+    }
+
+    /**
+     * Writes the ranking for [order] for the reporter's sequencer, returns null when there is nothing
+     * to rank. Every launch of the project with the same order rewrites the same file in the system
+     * directory, replacing it at once so a process of an earlier launch still reading it sees
+     * either ranking whole.
+     */
+    fun writePriorityFile(order: VitestTestOrder): Path? {
+        val files = rankFiles(order)
+        if (files.isEmpty()) {
+            return null
+        }
+        return try {
+            Files.createDirectories(priorityDirectory)
+            val priorityFile = priorityDirectory.resolve("${project.locationHash}-${order.name.lowercase()}.txt")
+            val temp = Files.createTempFile(priorityDirectory, priorityFile.fileName.toString(), ".tmp")
+            try {
+                Files.write(temp, files)
+                Files.move(temp, priorityFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                FileUtil.delete(temp)
+            }
+            priorityFile
+        } catch (e: IOException) {
+            LOG.warn("Unable to write Vitest test priorities", e)
+            null
+        }
+    }
+
+    /**
+     * Forgets the duration baselines of the tests in [path], a test file or a directory, or of the
+     * whole project when null
+     */
+    fun resetBaselines(path: String?) {
+        val independentPath = path?.let(FileUtil::toSystemIndependentName)
+        synchronized(this) {
+            load()
+            for (history in entries.values) {
+                if (independentPath == null || FileUtil.isAncestor(independentPath, history.file, false)) {
+                    history.resetBaseline()
+                }
+            }
+        }
+        scheduleSave()
+    }
+
+    private fun scheduleSave() {
+        if (dirty.compareAndSet(false, true)) {
+            AppExecutorUtil.getAppExecutorService().execute(::save)
+        }
+    }
+
+    private fun key(file: String, name: String): String = "$file\u0000$name"
+
+    private fun load() {
+        if (loaded) {
+            return
+        }
+        loaded = true
+        if (!Files.isRegularFile(storeFile)) {
+            return
+        }
+        try {
+            DataInputStream(BufferedInputStream(Files.newInputStream(storeFile))).use { input ->
+                val version = DataInputOutputUtil.readINT(input)
+                if (version < OLDEST_FORMAT_VERSION || version > FORMAT_VERSION) {
+                    return
+                }
+                val loadedAt = System.currentTimeMillis()
+                repeat(DataInputOutputUtil.readINT(input)) {
+                    val history = VitestTestHistory(IOUtil.readUTF(input), IOUtil.readUTF(input))
+                    history.status = VitestTestHistory.Status.values()[input.readByte().toInt()]
+                    history.runs = DataInputOutputUtil.readINT(input)
+                    history.flakyCount = DataInputOutputUtil.readINT(input)
+                    for (bucket in 0 until VitestTestHistory.DURATION_BUCKETS) {
+                        history.durationHistogram[bucket] = DataInputOutputUtil.readINT(input)
+                    }
+                    history.baselineMillis = input.readDouble()
+                    history.baselineRuns = DataInputOutputUtil.readINT(input)
+                    if (version >= REGRESSED_RUNS_FORMAT_VERSION) {
+                        history.regressedRuns = DataInputOutputUtil.readINT(input)
+                    }
+                    // Entries saved before the time was kept age from now on
+                    history.lastRunMillis = if (version == FORMAT_VERSION) DataInputOutputUtil.readLONG(input) else loadedAt
+                    entries[key(history.file, history.name)] = history
+                }
+            }
+        } catch (e: IOException) {
+            LOG.warn("Discarding unreadable Vitest result history $storeFile", e)
+            entries.clear()
+        }
+    }
+
+    private fun save() {
+        if (!dirty.compareAndSet(true, false)) {
+            return
+        }
+        try {
+            Files.createDirectories(storeFile.parent)
+            val temp = Files.createTempFile(storeFile.parent, storeFile.fileName.toString(), ".tmp")
+            try {
+                synchronized(this) {
+                    prune(entries, System.currentTimeMillis())
+                    DataOutputStream(BufferedOutputStream(Files.newOutputStream(temp))).use { out ->
+                        DataInputOutputUtil.writeINT(out, FORMAT_VERSION)
+                        DataInputOutputUtil.writeINT(out, entries.size)
+                        for (history in entries.values) {
+                            IOUtil.writeUTF(out, history.file)
+                            IOUtil.writeUTF(out, history.name)
+                            out.writeByte(history.status.ordinal)
+                            DataInputOutputUtil.writeINT(out, history.runs)
+                            DataInputOutputUtil.writeINT(out, history.flakyCount)
+                            history.durationHistogram.forEach { DataInputOutputUtil.writeINT(out, it) }
+                            out.writeDouble(history.baselineMillis)
+                            DataInputOutputUtil.writeINT(out, history.baselineRuns)
+                            DataInputOutputUtil.writeINT(out, history.regressedRuns)
+                            DataInputOutputUtil.writeLONG(out, history.lastRunMillis)
+                        }
+                    }
+                }
+                Files.move(temp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                FileUtil.delete(temp)
+            }
+        } catch (e: IOException) {
+            LOG.warn("Unable to save Vitest result history", e)
+        }
+    }
+
+    override fun dispose() {
+        save()
+    }
+
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project): VitestResultHistory = project.service()
+
+        /**
+         * Drops the entries of tests which haven't run for [MAX_AGE_MILLIS] before [now], then the least
+         * recently run ones beyond [maxEntries]
+         */
+        internal fun prune(entries: MutableMap<String, VitestTestHistory>, now: Long, maxEntries: Int = MAX_ENTRIES) {
+            entries.values.removeIf { now - it.lastRunMillis > MAX_AGE_MILLIS }
+            if (entries.size > maxEntries) {
+                entries.entries
+                    .sortedBy { it.value.lastRunMillis }
+                    .take(entries.size - maxEntries)
+                    .forEach { entries.remove(it.key) }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.ericjgagnon.vitest.run.history
+
+import com.github.ericjgagnon.vitest.run.VitestConsoleProperties
+import com.github.ericjgagnon.vitest.run.VitestConstants.REPLAYED_METAINFO
+import com.intellij.execution.testframework.TestFrameworkRunningModel
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
+import com.intellij.execution.testframework.sm.runner.ui.TestResultsViewer
+import com.intellij.openapi.util.text.StringUtil
+
+private const val SUMMARY_LIMIT = 10
+
+/**
+ * Feeds every finished run of a console into the [VitestResultHistory] and points out the tests
+ * which were slower than usual, on the test itself, in the console's filter and in a summary.
+ *
+ * Only the tests added to the tree since the run started are recorded, so the nodes a watch console
+ * keeps from its earlier runs are not counted again. Neither are the results a watch rerun repeats
+ * for the files it leaves out, which the reporter marks with [REPLAYED_METAINFO].
+ */
+class VitestResultHistoryListener(
+    private val history: VitestResultHistory,
+    private val consoleProperties: VitestConsoleProperties,
+) : TestResultsViewer.EventsListener {
+
+    // The same node may be reported as added more than once
+    private val runTests = LinkedHashSet<SMTestProxy>()
+
+    override fun onTestingStarted(sender: TestResultsViewer) {
+        runTests.clear()
+        consoleProperties.resetSlowerThanUsual()
+    }
+
+    override fun onTestNodeAdded(sender: TestResultsViewer, test: SMTestProxy) {
+        if (!test.isSuite && test.metainfo != REPLAYED_METAINFO) {
+            runTests.add(test)
+        }
+    }
+
+    override fun onTestingFinished(sender: TestResultsViewer) {
+        val root = sender.testsRootNode
+        val regressions = history.record(runTests.toList())
+        runTests.clear()
+        if (regressions.isEmpty()) {
+            return
+        }
+
+        regressions.forEach { regression ->
+            regression.test.addSystemOutput("Slower than usual: ${describe(regression)}\n")
+            consoleProperties.markSlowerThanUsual(regression.test)
+        }
+
+        val summary = StringBuilder("\n${regressions.size} test(s) slower than usual")
+        if (regressions.size > SUMMARY_LIMIT) {
+            summary.append(", slowest $SUMMARY_LIMIT")
+        }
+        summary.append(":\n")
+        regressions.take(SUMMARY_LIMIT).forEach { regression ->
+            summary.append("  ").append(regression.name).append(": ").append(describe(regression)).append('\n')
+        }
+        root.addSystemOutput(summary.toString())
+    }
+
+    override fun onSelected(selectedTestProxy: SMTestProxy?, viewer: TestResultsViewer, model: TestFrameworkRunningModel) {
+    }
+
+    private fun describe(regression: VitestDurationRegression): String {
+        return "${StringUtil.formatDuration(regression.durationMillis)} instead of about " +
+            "${StringUtil.formatDuration(regression.baselineMillis)} (${String.format("%.1f", regression.slowdown)}x)"
+    }
+}
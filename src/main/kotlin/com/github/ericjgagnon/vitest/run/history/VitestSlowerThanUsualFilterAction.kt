@@ -0,0 +1,65 @@
+package com.github.ericjgagnon.vitest.run.history
+
+import com.github.ericjgagnon.vitest.run.VitestConsoleProperties
+import com.intellij.execution.testframework.AbstractTestProxy
+import com.intellij.execution.testframework.Filter
+import com.intellij.execution.testframework.TestConsoleProperties
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
+import com.intellij.icons.AllIcons
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.ToggleAction
+
+/**
+ * Narrows the test tree down to the tests of the last run which were slower than their baseline
+ */
+class VitestSlowerThanUsualFilterAction(
+    private val consoleProperties: VitestConsoleProperties,
+) : ToggleAction("Show Only Tests Slower Than Usual", null, AllIcons.Actions.Profile) {
+
+    private var selected = false
+
+    override fun isSelected(e: AnActionEvent): Boolean = selected
+
+    override fun setSelected(e: AnActionEvent, state: Boolean) {
+        select(state)
+    }
+
+    /**
+     * Turns the filter off, for a new run of the console
+     */
+    fun reset() {
+        if (selected) {
+            select(false)
+        }
+    }
+
+    private fun select(state: Boolean) {
+        selected = state
+        val resultsForm = consoleProperties.resultsForm ?: return
+        resultsForm.setFilter(if (state) propertiesFilter().and(SlowerThanUsualFilter()) else propertiesFilter())
+    }
+
+    /**
+     * The filter the console would otherwise use for its hide passed and hide ignored options
+     */
+    private fun propertiesFilter(): Filter<AbstractTestProxy> {
+        var filter = Filter.NO_FILTER.typed()
+        if (TestConsoleProperties.HIDE_PASSED_TESTS.value(consoleProperties)) {
+            filter = Filter.NOT_PASSED.typed().or(Filter.DEFECT.typed())
+        }
+        if (TestConsoleProperties.HIDE_IGNORED_TEST.value(consoleProperties)) {
+            filter = filter.and(Filter.IGNORED.typed().not())
+        }
+        return filter
+    }
+
+    // The platform's filters are raw types
+    @Suppress("UNCHECKED_CAST")
+    private fun Filter<*>.typed(): Filter<AbstractTestProxy> = this as Filter<AbstractTestProxy>
+
+    private inner class SlowerThanUsualFilter : Filter<AbstractTestProxy>() {
+        override fun shouldAccept(test: AbstractTestProxy): Boolean {
+            return test is SMTestProxy && consoleProperties.isSlowerThanUsual(test)
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.ericjgagnon.vitest.run.history
+
+/**
+ * What previous runs recorded about one test. Durations are kept as a histogram of power of two
+ * millisecond buckets so the entry has a fixed size no matter how often the test ran, next to an
+ * exponential moving average of passing durations used as the baseline for regressions.
+ *
+ * Regressed durations are kept out of the baseline, otherwise a regression would raise the baseline
+ * it is measured against. Only once a test regressed [BASELINE_MIN_RUNS] passing runs in a row is
+ * its new duration taken as the baseline to start over from.
+ */
+class VitestTestHistory(val file: String, val name: String) {
+
+    enum class Status {
+        UNKNOWN,
+        PASSED,
+        FAILED,
+        SKIPPED,
+    }
+
+    var status: Status = Status.UNKNOWN
+        internal set
+
+    var runs: Int = 0
+        internal set
+
+    /**
+     * How often the test changed between passing and failing
+     */
+    var flakyCount: Int = 0
+        internal set
+
+    internal val durationHistogram = IntArray(DURATION_BUCKETS)
+
+    /**
+     * Moving average of the durations of passing runs, 0 until one was recorded
+     */
+    var baselineMillis: Double = 0.0
+        internal set
+
+    /**
+     * Passing runs which contributed to [baselineMillis]
+     */
+    var baselineRuns: Int = 0
+        internal set
+
+    /**
+     * Passing runs in a row which regressed and were kept out of [baselineMillis]
+     */
+    var regressedRuns: Int = 0
+        internal set
+
+    /**
+     * When the test last ran, in milliseconds since the epoch
+     */
+    var lastRunMillis: Long = 0
+        internal set
+
+    fun record(status: Status, durationMillis: Long?) {
+        lastRunMillis = System.currentTimeMillis()
+        if (status == Status.SKIPPED) {
+            return
+        }
+        if (this.status != Status.UNKNOWN && this.status != status) {
+            flakyCount++
+        }
+        this.status = status
+        runs++
+        if (durationMillis != null) {
+            durationHistogram[bucket(durationMillis)]++
+            if (status == Status.PASSED) {
+                recordBaseline(durationMillis)
+            }
+        }
+    }
+
+    private fun recordBaseline(durationMillis: Long) {
+        if (isRegression(durationMillis)) {
+            regressedRuns++
+            if (regressedRuns < BASELINE_MIN_RUNS) {
+                return
+            }
+            resetBaseline()
+        }
+        regressedRuns = 0
+        baselineMillis = if (baselineRuns == 0) {
+            durationMillis.toDouble()
+        } else {
+            baselineMillis + BASELINE_WEIGHT * (durationMillis - baselineMillis)
+        }
+        baselineRuns++
+    }
+
+    /**
+     * Whether [durationMillis] is far enough above an established baseline to be a regression rather
+     * than noise: at least [REGRESSION_FACTOR] times the baseline and [REGRESSION_MIN_MILLIS] slower
+     */
+    fun isRegression(durationMillis: Long): Boolean {
+        return baselineRuns >= BASELINE_MIN_RUNS &&
+            durationMillis >= baselineMillis * REGRESSION_FACTOR &&
+            durationMillis - baselineMillis >= REGRESSION_MIN_MILLIS
+    }
+
+    fun resetBaseline() {
+        baselineMillis = 0.0
+        baselineRuns = 0
+        regressedRuns = 0
+    }
+
+    /**
+     * Upper bound of the bucket holding the median duration, 0 when no duration was recorded
+     */
+    fun typicalDurationMillis(): Long {
+        val total = durationHistogram.sum()
+        if (total == 0) {
+            return 0
+        }
+        var seen = 0
+        durationHistogram.forEachIndexed { bucket, count ->
+            seen += count
+            if (seen * 2 >= total) {
+                return 1L shl bucket
+            }
+        }
+        return 1L shl (DURATION_BUCKETS - 1)
+    }
+
+    companion object {
+        const val DURATION_BUCKETS = 24
+        const val BASELINE_MIN_RUNS = 3
+        const val REGRESSION_FACTOR = 2.0
+        const val REGRESSION_MIN_MILLIS = 50
+        private const val BASELINE_WEIGHT = 0.2
+
+        internal fun bucket(durationMillis: Long): Int {
+            if (durationMillis <= 1) {
+                return 0
+            }
+            return (64 - java.lang.Long.numberOfLeadingZeros(durationMillis - 1)).coerceAtMost(DURATION_BUCKETS - 1)
+        }
+    }
+}
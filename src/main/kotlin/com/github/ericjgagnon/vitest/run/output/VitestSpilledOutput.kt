@@ -0,0 +1,103 @@
+package com.github.ericjgagnon.vitest.run.output
+
+import com.intellij.execution.filters.HyperlinkInfo
+import com.intellij.execution.testframework.Printable
+import com.intellij.execution.testframework.Printer
+import com.intellij.execution.ui.ConsoleViewContentType
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.fileEditor.OpenFileDescriptor
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.LocalFileSystem
+import java.io.IOException
+import java.io.Writer
+import java.nio.file.Files
+import java.nio.file.Path
+
+private val LOG = logger<VitestSpilledOutput>()
+private const val DISPLAY_LIMIT = 1024 * 1024
+
+/**
+ * The output of a test beyond what is kept in memory. The file is only read when the test's output
+ * is printed, i.e. once the test is selected, and at most [DISPLAY_LIMIT] characters of it are shown
+ * with a link opening the whole file in an editor. Stdout and stderr are shown as one stream.
+ *
+ * The output is written on the thread processing the run's messages and printed on the EDT, the
+ * writer is closed once the test finishes.
+ */
+class VitestSpilledOutput(private val file: Path, private val writer: Writer, private val memoryLimit: Int) : Printable {
+
+    private var closed = false
+
+    @Synchronized
+    @Throws(IOException::class)
+    fun write(text: String) {
+        writer.write(text)
+    }
+
+    @Synchronized
+    @Throws(IOException::class)
+    fun close() {
+        if (!closed) {
+            closed = true
+            writer.close()
+        }
+    }
+
+    /**
+     * Makes everything written so far readable from the file, the test may still be running
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    private fun flush() {
+        if (!closed) {
+            writer.flush()
+        }
+    }
+
+    override fun printOn(printer: Printer) {
+        val text = try {
+            flush()
+            Files.newBufferedReader(file).use { reader ->
+                val buffer = CharArray(DISPLAY_LIMIT)
+                var length = 0
+                while (length < buffer.size) {
+                    val read = reader.read(buffer, length, buffer.size - length)
+                    if (read < 0) {
+                        break
+                    }
+                    length += read
+                }
+                String(buffer, 0, length)
+            }
+        } catch (e: IOException) {
+            LOG.warn("Unable to read spilled test output $file", e)
+            return
+        }
+
+        printer.print(
+            "\nOutput beyond ${StringUtil.formatFileSize(memoryLimit.toLong())} was written to disk\n",
+            ConsoleViewContentType.SYSTEM_OUTPUT
+        )
+        printer.print(text, ConsoleViewContentType.NORMAL_OUTPUT)
+        printer.print("\n", ConsoleViewContentType.SYSTEM_OUTPUT)
+        printer.printHyperlink("Open the full output (${StringUtil.formatFileSize(sizeOf(file))})", OpenSpilledOutput(file))
+        printer.print("\n", ConsoleViewContentType.SYSTEM_OUTPUT)
+    }
+
+    private fun sizeOf(file: Path): Long {
+        return try {
+            Files.size(file)
+        } catch (e: IOException) {
+            0
+        }
+    }
+
+    private class OpenSpilledOutput(private val file: Path) : HyperlinkInfo {
+        override fun navigate(project: Project) {
+            LocalFileSystem.getInstance().refreshAndFindFileByNioFile(file)?.let {
+                OpenFileDescriptor(project, it).navigate(true)
+            }
+        }
+    }
+}
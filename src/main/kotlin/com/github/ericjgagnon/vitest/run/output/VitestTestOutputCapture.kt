@@ -0,0 +1,91 @@
+package com.github.ericjgagnon.vitest.run.output
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.util.io.FileUtil
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+
+private val LOG = logger<VitestTestOutputCapture>()
+private const val DEFAULT_MEMORY_LIMIT = 256 * 1024
+
+/**
+ * Keeps up to [memoryLimit] characters of console output of each test or suite of a run in the test
+ * tree and writes the rest to a file per node, so a test printing hundreds of megabytes costs disk
+ * space instead of heap and console rendering. A node's file is closed once the node finishes and
+ * the files are deleted when the run's console is.
+ *
+ * Not thread safe, the output of a run is processed by one thread at a time.
+ */
+class VitestTestOutputCapture(private val memoryLimit: Int = DEFAULT_MEMORY_LIMIT) : Disposable {
+
+    private val keptLengths = HashMap<String, Int>()
+    private val spilledOutputs = HashMap<String, VitestSpilledOutput>()
+    private var directory: Path? = null
+
+    /**
+     * Whether [length] more characters of the node's output still fit in memory
+     */
+    fun accepts(nodeId: String, length: Int): Boolean {
+        if (spilledOutputs.containsKey(nodeId)) {
+            return false
+        }
+        val kept = keptLengths.getOrDefault(nodeId, 0)
+        if (kept + length > memoryLimit) {
+            return false
+        }
+        keptLengths[nodeId] = kept + length
+        return true
+    }
+
+    /**
+     * Appends [text] to the node's file, returns the printable showing the file the first time
+     * output of the node is spilled and null afterwards or when the file can't be written
+     */
+    fun spill(nodeId: String, text: String): VitestSpilledOutput? {
+        try {
+            val existing = spilledOutputs[nodeId]
+            if (existing != null) {
+                existing.write(text)
+                return null
+            }
+
+            val file = Files.createTempFile(spillDirectory(), "output", ".log")
+            val spilledOutput = VitestSpilledOutput(file, Files.newBufferedWriter(file), memoryLimit)
+            spilledOutput.write(text)
+            spilledOutputs[nodeId] = spilledOutput
+            return spilledOutput
+        } catch (e: IOException) {
+            LOG.warn("Unable to write test output to disk, dropping it", e)
+            return null
+        }
+    }
+
+    /**
+     * Forgets the node, closing its file when its output was spilled. Output the node still writes
+     * afterwards starts over.
+     */
+    fun finish(nodeId: String) {
+        keptLengths.remove(nodeId)
+        spilledOutputs.remove(nodeId)?.let(::close)
+    }
+
+    private fun close(spilledOutput: VitestSpilledOutput) {
+        try {
+            spilledOutput.close()
+        } catch (e: IOException) {
+            LOG.debug(e)
+        }
+    }
+
+    private fun spillDirectory(): Path {
+        return directory ?: FileUtil.createTempDirectory("vitest-output", null, true).toPath().also { directory = it }
+    }
+
+    override fun dispose() {
+        spilledOutputs.values.forEach(::close)
+        spilledOutputs.clear()
+        directory?.let { FileUtil.delete(it) }
+    }
+}
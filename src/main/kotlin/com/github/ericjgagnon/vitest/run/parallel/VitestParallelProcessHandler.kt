@@ -0,0 +1,222 @@
+package com.github.ericjgagnon.vitest.run.parallel
+
+import com.intellij.execution.ExecutionException
+import com.intellij.execution.process.ProcessAdapter
+import com.intellij.execution.process.ProcessEvent
+import com.intellij.execution.process.ProcessHandler
+import com.intellij.execution.process.ProcessOutputTypes
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.text.StringUtil
+import jetbrains.buildServer.messages.serviceMessages.ServiceMessage
+import java.io.OutputStream
+
+/**
+ * One of the processes of a [VitestParallelProcessHandler], started by [start] once it may run. Its
+ * tests go under a suite named [group] when set, otherwise straight under the root of the tree.
+ */
+class VitestParallelProcess(val group: String?, val start: () -> ProcessHandler)
+
+/**
+ * Runs several Vitest processes side by side, the shards of one run or the packages of a workspace,
+ * and presents them to the console as a single process. Each process's TeamCity stream goes through
+ * its own [VitestServiceMessageRewriter] and is forwarded line by line, so messages of different
+ * processes never interleave mid line.
+ *
+ * At most [concurrency] processes run at a time, the next one is started whenever one finishes. The
+ * suite of a grouped process reports the wall time of the process. Stopping the run stops every
+ * process, and the run fails when any process fails.
+ *
+ * @param unitName what the processes are, in plural, for the summary printed at the end
+ */
+class VitestParallelProcessHandler(
+    private val processes: List<VitestParallelProcess>,
+    private val concurrency: Int = processes.size,
+    private val unitName: String = "shards",
+) : ProcessHandler() {
+
+    private val lock = Any()
+    private val running = mutableListOf<ProcessHandler>()
+    private val wallTimes = arrayOfNulls<Long>(processes.size)
+    private var nextProcess = 0
+    private var remainingProcesses = processes.size
+    private var stopped = false
+    private var exitCode = 0
+    private var startedAt = 0L
+    private var cpuTimeMillis = 0L
+
+    override fun startNotify() {
+        super.startNotify()
+        startedAt = System.currentTimeMillis()
+        notifyTextAvailable("##teamcity[testingStarted]\n", ProcessOutputTypes.STDOUT)
+        if (processes.isEmpty()) {
+            finish()
+            return
+        }
+        repeat(concurrency.coerceIn(1, processes.size)) { startNextProcess() }
+    }
+
+    override fun destroyProcessImpl() {
+        val (processHandlers, done) = synchronized(lock) {
+            stopped = true
+            // The processes which never started are done
+            remainingProcesses -= processes.size - nextProcess
+            nextProcess = processes.size
+            running.toList() to (remainingProcesses == 0)
+        }
+        processHandlers.forEach(ProcessHandler::destroyProcess)
+        if (done) {
+            finish()
+        }
+    }
+
+    override fun detachProcessImpl() {
+        val processHandlers = synchronized(lock) {
+            stopped = true
+            running.toList()
+        }
+        processHandlers.forEach(ProcessHandler::detachProcess)
+        notifyProcessDetached()
+    }
+
+    override fun detachIsDefault(): Boolean = false
+
+    override fun getProcessInput(): OutputStream? = null
+
+    private fun startNextProcess() {
+        val index = synchronized(lock) {
+            if (stopped || nextProcess >= processes.size) {
+                return
+            }
+            nextProcess++
+        }
+
+        val process = processes[index]
+        process.group?.let { group ->
+            forward(ServiceMessage.asString("testSuiteStarted", mapOf(
+                "name" to group,
+                "nodeId" to groupNodeId(index),
+                "parentNodeId" to "0",
+            )) + "\n", ProcessOutputTypes.STDOUT)
+        }
+
+        val processStartedAt = System.currentTimeMillis()
+        val processHandler = try {
+            process.start()
+        } catch (e: ExecutionException) {
+            forward("Unable to start ${process.group ?: "Vitest"}: ${e.message}\n", ProcessOutputTypes.STDERR)
+            onProcessTerminated(index, processStartedAt, 1, 0)
+            return
+        }
+
+        val destroy = synchronized(lock) {
+            running.add(processHandler)
+            stopped
+        }
+        val rewriter = VitestServiceMessageRewriter("${index + 1}_", if (process.group != null) groupNodeId(index) else "0")
+        processHandler.addProcessListener(ProcessListener(rewriter) { processExitCode ->
+            synchronized(lock) { running.remove(processHandler) }
+            onProcessTerminated(index, processStartedAt, processExitCode, rewriter.cpuTimeMillis)
+        })
+        processHandler.startNotify()
+        if (destroy) {
+            processHandler.destroyProcess()
+        }
+    }
+
+    private fun onProcessTerminated(index: Int, processStartedAt: Long, processExitCode: Int, processCpuTimeMillis: Long) {
+        val wallTime = System.currentTimeMillis() - processStartedAt
+        processes[index].group?.let { group ->
+            forward(ServiceMessage.asString("testStdOut", mapOf(
+                "nodeId" to groupNodeId(index),
+                "out" to "Finished in ${StringUtil.formatDuration(wallTime)}\n",
+            )) + "\n", ProcessOutputTypes.STDOUT)
+            forward(ServiceMessage.asString("testSuiteFinished", mapOf(
+                "name" to group,
+                "nodeId" to groupNodeId(index),
+            )) + "\n", ProcessOutputTypes.STDOUT)
+        }
+
+        val done = synchronized(lock) {
+            if (exitCode == 0) {
+                exitCode = processExitCode
+            }
+            cpuTimeMillis += processCpuTimeMillis
+            wallTimes[index] = wallTime
+            --remainingProcesses == 0
+        }
+        if (done) {
+            finish()
+        } else {
+            startNextProcess()
+        }
+    }
+
+    private fun finish() {
+        val wallClockTime = StringUtil.formatDuration(System.currentTimeMillis() - startedAt)
+        notifyTextAvailable("##teamcity[testingFinished]\n", ProcessOutputTypes.STDOUT)
+        notifyTextAvailable(
+            "Ran ${processes.size} $unitName in $wallClockTime, ${StringUtil.formatDuration(cpuTimeMillis)} of CPU time in total\n",
+            ProcessOutputTypes.SYSTEM
+        )
+        processes.forEachIndexed { index, process ->
+            val wallTime = wallTimes[index]
+            if (process.group != null && wallTime != null) {
+                notifyTextAvailable("  ${process.group}: ${StringUtil.formatDuration(wallTime)}\n", ProcessOutputTypes.SYSTEM)
+            }
+        }
+        notifyProcessTerminated(exitCode)
+    }
+
+    /**
+     * Node id of the suite of a grouped process, which can't collide with the prefixed ids of tests
+     */
+    private fun groupNodeId(index: Int): String = "g${index + 1}"
+
+    private fun forward(text: String, outputType: Key<*>) {
+        synchronized(lock) { notifyTextAvailable(text, outputType) }
+    }
+
+    private inner class ProcessListener(
+        private val rewriter: VitestServiceMessageRewriter,
+        private val onTerminated: (exitCode: Int) -> Unit,
+    ) : ProcessAdapter() {
+
+        private val stdOutLine = StringBuilder()
+
+        override fun onTextAvailable(event: ProcessEvent, outputType: Key<*>) {
+            if (ProcessOutputTypes.STDOUT != outputType) {
+                // The command lines of the processes are not worth repeating
+                if (ProcessOutputTypes.SYSTEM != outputType) {
+                    forward(event.text, outputType)
+                }
+                return
+            }
+
+            val text = event.text
+            var start = 0
+            while (start < text.length) {
+                val newLine = text.indexOf('\n', start)
+                if (newLine == -1) {
+                    stdOutLine.append(text, start, text.length)
+                    return
+                }
+                stdOutLine.append(text, start, newLine + 1)
+                forwardLine()
+                start = newLine + 1
+            }
+        }
+
+        override fun processTerminated(event: ProcessEvent) {
+            if (stdOutLine.isNotEmpty()) {
+                stdOutLine.append('\n')
+                forwardLine()
+            }
+            onTerminated(event.exitCode)
+        }
+
+        private fun forwardLine() {
+            rewriter.rewrite(stdOutLine.toString())?.let { forward(it, ProcessOutputTypes.STDOUT) }
+            stdOutLine.setLength(0)
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.ericjgagnon.vitest.run.parallel
+
+import com.github.ericjgagnon.vitest.run.VitestConstants.RUN_STATS_MESSAGE
+
+private const val SERVICE_MESSAGE_PREFIX = "##teamcity["
+private const val ROOT_NODE_ID = "0"
+private val NODE_ID_ATTRIBUTE = Regex(" (id|nodeId|parentNodeId)='([^']*)'")
+private val CPU_TIME_ATTRIBUTE = Regex(" cpuTime='(\\d+)'")
+
+/**
+ * Rewrites the TeamCity stream of one of several concurrent Vitest processes so their trees can be
+ * merged into one: node ids get [nodeIdPrefix] so they can't collide, while the messages which
+ * frame a whole run are swallowed so the merged stream announces them only once. The top level nodes
+ * of the process are put under [rootParentNodeId], the root of the merged tree unless the process
+ * gets a suite of its own.
+ */
+class VitestServiceMessageRewriter(
+    private val nodeIdPrefix: String,
+    private val rootParentNodeId: String = ROOT_NODE_ID,
+) {
+
+    /**
+     * CPU time reported by the process through its run stats message, in milliseconds
+     */
+    var cpuTimeMillis: Long = 0
+        private set
+
+    /**
+     * Returns the line to forward or null when it should be dropped
+     */
+    fun rewrite(line: String): String? {
+        if (!line.startsWith(SERVICE_MESSAGE_PREFIX)) {
+            return line
+        }
+
+        val name = messageName(line)
+        if (name == "testingStarted" || name == "testingFinished") {
+            return null
+        }
+        if (name == RUN_STATS_MESSAGE) {
+            cpuTimeMillis += CPU_TIME_ATTRIBUTE.find(line)?.groupValues?.get(1)?.toLong() ?: 0
+            return null
+        }
+
+        return prefixNodeIds(line)
+    }
+
+    /**
+     * Returns the line with [nodeIdPrefix] added to its node ids, keeping every message
+     */
+    fun prefixNodeIds(line: String): String {
+        if (!line.startsWith(SERVICE_MESSAGE_PREFIX)) {
+            return line
+        }
+        return NODE_ID_ATTRIBUTE.replace(line) { match ->
+            val (attribute, id) = match.destructured
+            if (attribute == "parentNodeId" && id == ROOT_NODE_ID) {
+                " $attribute='$rootParentNodeId'"
+            } else {
+                " $attribute='$nodeIdPrefix$id'"
+            }
+        }
+    }
+
+    private fun messageName(line: String): String {
+        val start = SERVICE_MESSAGE_PREFIX.length
+        var end = start
+        while (end < line.length && line[end] != ' ' && line[end] != ']') {
+            end++
+        }
+        return line.substring(start, end)
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.ericjgagnon.vitest.run.resolution
+
+import com.github.ericjgagnon.vitest.run.VitestConstants.CONFIG_FILE_NAMES
+import com.intellij.openapi.vfs.VirtualFile
+
+object VitestConfigFiles {
+
+    /**
+     * The config file Vitest picks up from the directory, a vitest config wins over a vite config
+     */
+    @JvmStatic
+    fun find(directory: VirtualFile): VirtualFile? {
+        var viteConfig: VirtualFile? = null
+        for (configFileName in CONFIG_FILE_NAMES) {
+            val config = directory.findChild(configFileName)
+            if (config != null && !config.isDirectory) {
+                if (configFileName.startsWith("vitest.")) {
+                    return config
+                } else if (viteConfig == null) {
+                    viteConfig = config
+                }
+            }
+        }
+        return viteConfig
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.ericjgagnon.vitest.run.resolution
+
+import com.intellij.javascript.nodejs.util.NodePackage
+import com.intellij.openapi.vfs.VirtualFile
+
+/**
+ * What the configuration producer resolves for the test files of one directory
+ */
+data class VitestDirectoryResolution(
+    val workingDirectory: VirtualFile?,
+    val configFile: VirtualFile?,
+    val vitestPackage: NodePackage?,
+)
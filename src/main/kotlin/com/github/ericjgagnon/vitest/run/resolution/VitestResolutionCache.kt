@@ -0,0 +1,83 @@
+package com.github.ericjgagnon.vitest.run.resolution
+
+import com.github.ericjgagnon.vitest.run.VitestConstants.CONFIG_FILE_NAMES
+import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef
+import com.intellij.lang.javascript.buildTools.npm.PackageJsonUtil
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.service
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileManager
+import com.intellij.openapi.vfs.newvfs.BulkFileListener
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent
+import com.intellij.util.PathUtil
+import java.util.concurrent.ConcurrentHashMap
+
+private const val LERNA_JSON = "lerna.json"
+
+/**
+ * Remembers the [VitestDirectoryResolution] of each directory so evaluating a run context doesn't walk
+ * the directory tree and read package.json files again. Everything is forgotten as soon as a
+ * package.json, lerna.json or Vitest config file changes, or a directory is added, moved or removed,
+ * since any of those can change the result for many directories at once.
+ */
+class VitestResolutionCache(project: Project) : Disposable {
+
+    private val resolutions = ConcurrentHashMap<ResolutionKey, VitestDirectoryResolution>()
+
+    init {
+        project.messageBus.connect(this).subscribe(VirtualFileManager.VFS_CHANGES, object : BulkFileListener {
+            override fun after(events: MutableList<out VFileEvent>) {
+                if (resolutions.isNotEmpty() && events.any(::invalidates)) {
+                    resolutions.clear()
+                }
+            }
+        })
+    }
+
+    /**
+     * Returns the resolution of [directory] for [interpreter], computing it with [resolve] the first time
+     */
+    fun resolve(
+        directory: VirtualFile,
+        interpreter: NodeJsInterpreterRef,
+        resolve: () -> VitestDirectoryResolution,
+    ): VitestDirectoryResolution {
+        val key = ResolutionKey(directory, interpreter.referenceName)
+        // Not computeIfAbsent, resolving reads PSI and indexes and must not run under the map's lock
+        resolutions[key]?.let { return it }
+        val resolution = resolve()
+        return resolutions.putIfAbsent(key, resolution) ?: resolution
+    }
+
+    private fun invalidates(event: VFileEvent): Boolean {
+        if (isWatchedFileName(PathUtil.getFileName(event.path))) {
+            return true
+        }
+        return when (event) {
+            is VFileContentChangeEvent -> false
+            is VFileCreateEvent -> event.isDirectory
+            is VFilePropertyChangeEvent -> event.isRename &&
+                (event.file.isDirectory || isWatchedFileName(event.oldValue as? String))
+            else -> event.file?.isDirectory ?: true
+        }
+    }
+
+    private fun isWatchedFileName(name: String?): Boolean {
+        return name != null && (PackageJsonUtil.FILE_NAME == name || LERNA_JSON == name || CONFIG_FILE_NAMES.contains(name))
+    }
+
+    override fun dispose() {
+        resolutions.clear()
+    }
+
+    private data class ResolutionKey(val directory: VirtualFile, val interpreter: String)
+
+    companion object {
+        @JvmStatic
+        fun getInstance(project: Project): VitestResolutionCache = project.service()
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.ericjgagnon.vitest.run.structure
+
+/**
+ * A `describe`, `it`, `test` or `bench` call found in a test file. [parentIndex] is the index of the
+ * enclosing suite in [VitestTestFileStructure.declarations] or -1 for top level declarations.
+ * [isTemplate] is set for `.each` declarations, whose name Vitest formats with every case.
+ */
+data class VitestTestDeclaration(
+    val kind: Kind,
+    val name: String,
+    val startOffset: Int,
+    val endOffset: Int,
+    val parentIndex: Int,
+    val isTemplate: Boolean = false,
+) {
+
+    enum class Kind {
+        SUITE,
+        TEST,
+        BENCH,
+    }
+
+    fun contains(startOffset: Int, endOffset: Int): Boolean {
+        return this.startOffset <= startOffset && endOffset <= this.endOffset
+    }
+}
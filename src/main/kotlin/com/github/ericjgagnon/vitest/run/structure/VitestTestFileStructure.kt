@@ -0,0 +1,61 @@
+package com.github.ericjgagnon.vitest.run.structure
+
+/**
+ * The Vitest declarations of one file in source order, parents always come before their children
+ */
+data class VitestTestFileStructure(val declarations: List<VitestTestDeclaration>) {
+
+    /**
+     * The innermost declaration containing the range, or null when the range is outside of all of them
+     */
+    fun findDeclaration(startOffset: Int, endOffset: Int): VitestTestDeclaration? {
+        var found: VitestTestDeclaration? = null
+        for (declaration in declarations) {
+            if (declaration.startOffset > startOffset) {
+                break
+            }
+            if (declaration.contains(startOffset, endOffset)) {
+                found = declaration
+            }
+        }
+        return found
+    }
+
+    /**
+     * Names of the suites enclosing the declaration, outermost first
+     */
+    fun suiteNames(declaration: VitestTestDeclaration): List<String> {
+        val names = mutableListOf<String>()
+        var parentIndex = declaration.parentIndex
+        while (parentIndex >= 0) {
+            val parent = declarations[parentIndex]
+            names.add(parent.name)
+            parentIndex = parent.parentIndex
+        }
+        return names.asReversed()
+    }
+
+    /**
+     * Whether the declaration or a suite enclosing it is an `.each` template
+     */
+    fun isTemplate(declaration: VitestTestDeclaration): Boolean {
+        var current: VitestTestDeclaration? = declaration
+        while (current != null) {
+            if (current.isTemplate) {
+                return true
+            }
+            current = declarations.getOrNull(current.parentIndex)
+        }
+        return false
+    }
+
+    fun children(parent: VitestTestDeclaration?): List<VitestTestDeclaration> {
+        val parentIndex = if (parent == null) -1 else declarations.indexOf(parent)
+        return declarations.filter { it.parentIndex == parentIndex }
+    }
+
+    companion object {
+        @JvmField
+        val EMPTY = VitestTestFileStructure(emptyList())
+    }
+}
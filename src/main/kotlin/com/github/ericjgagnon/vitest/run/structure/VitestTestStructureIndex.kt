@@ -0,0 +1,216 @@
+package com.github.ericjgagnon.vitest.run.structure
+
+import com.intellij.lang.javascript.JavascriptLanguage
+import com.intellij.lang.javascript.psi.JSCallExpression
+import com.intellij.lang.javascript.psi.JSExpression
+import com.intellij.lang.javascript.psi.JSLiteralExpression
+import com.intellij.lang.javascript.psi.JSReferenceExpression
+import com.intellij.lang.javascript.psi.JSStringTemplateExpression
+import com.intellij.openapi.fileTypes.LanguageFileType
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
+import com.intellij.util.indexing.FileBasedIndex
+import com.intellij.util.indexing.FileContent
+import com.intellij.util.indexing.ID
+import com.intellij.util.indexing.SingleEntryFileBasedIndexExtension
+import com.intellij.util.indexing.SingleEntryIndexer
+import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.DataInputOutputUtil
+import com.intellij.util.io.IOUtil
+import java.io.DataInput
+import java.io.DataOutput
+
+private val SUITE_FUNCTIONS = setOf("describe", "suite")
+private val TEST_FUNCTIONS = setOf("it", "test")
+private const val BENCH_FUNCTION = "bench"
+private val DECLARATION_CALL = Regex("\\b(?:describe|suite|it|test|bench)\\s*[.(]")
+private const val EACH_MODIFIER = "each"
+private val MODIFIERS = setOf(
+    EACH_MODIFIER, "concurrent", "sequential", "shuffle", "skip", "only", "todo", "fails", "skipIf", "runIf"
+)
+
+/**
+ * Indexes the `describe`, `suite`, `it`, `test` and `bench` declarations of JavaScript and TypeScript
+ * files, including their modifiers like `test.each(...)`, `describe.concurrent` or `it.skipIf(...)`,
+ * so the test at a caret or the tests of a file can be found without building PSI.
+ */
+class VitestTestStructureIndex : SingleEntryFileBasedIndexExtension<VitestTestFileStructure>() {
+
+    override fun getName(): ID<Int, VitestTestFileStructure> = NAME
+
+    override fun getIndexer(): SingleEntryIndexer<VitestTestFileStructure> {
+        return object : SingleEntryIndexer<VitestTestFileStructure>(false) {
+            override fun computeValue(inputData: FileContent): VitestTestFileStructure? {
+                val text = inputData.contentAsText
+                if (!mayDeclareTests(text)) {
+                    return null
+                }
+                return VitestTestStructureBuilder().build(inputData.psiFile)
+            }
+        }
+    }
+
+    override fun getValueExternalizer(): DataExternalizer<VitestTestFileStructure> = VitestTestFileStructureExternalizer
+
+    override fun getVersion(): Int = 2
+
+    override fun getInputFilter(): FileBasedIndex.InputFilter {
+        return FileBasedIndex.InputFilter { file ->
+            val fileType = file.fileType
+            fileType is LanguageFileType && fileType.language.isKindOf(JavascriptLanguage.INSTANCE) &&
+                !file.path.contains("/node_modules/")
+        }
+    }
+
+    override fun dependsOnFileContent(): Boolean = true
+
+    private fun mayDeclareTests(text: CharSequence): Boolean = DECLARATION_CALL.containsMatchIn(text)
+
+    companion object {
+        @JvmField
+        val NAME: ID<Int, VitestTestFileStructure> = ID.create("vitest.test.structure")
+
+        /**
+         * The indexed structure of the file, or null while indexes are being updated or when the file
+         * declares no tests
+         */
+        @JvmStatic
+        fun getStructure(project: Project, file: VirtualFile): VitestTestFileStructure? {
+            if (DumbService.isDumb(project)) {
+                return null
+            }
+            return FileBasedIndex.getInstance().getFileData(NAME, file, project).values.firstOrNull()
+        }
+    }
+}
+
+/**
+ * Collects the declarations of a file, keeping a stack of the suites being visited for nesting
+ */
+private class VitestTestStructureBuilder : PsiRecursiveElementWalkingVisitor() {
+
+    private val declarations = mutableListOf<VitestTestDeclaration>()
+    private val suites = ArrayDeque<Pair<JSCallExpression, Int>>()
+
+    fun build(root: PsiElement): VitestTestFileStructure? {
+        root.accept(this)
+        return if (declarations.isEmpty()) null else VitestTestFileStructure(declarations.toList())
+    }
+
+    override fun visitElement(element: PsiElement) {
+        if (element is JSCallExpression) {
+            declarationOf(element)?.let { declaration ->
+                declarations.add(declaration)
+                if (declaration.kind == VitestTestDeclaration.Kind.SUITE) {
+                    suites.addLast(element to declarations.lastIndex)
+                }
+            }
+        }
+        super.visitElement(element)
+    }
+
+    override fun elementFinished(element: PsiElement) {
+        if (suites.isNotEmpty() && suites.last().first === element) {
+            suites.removeLast()
+        }
+    }
+
+    private fun declarationOf(call: JSCallExpression): VitestTestDeclaration? {
+        val kind = kindOf(call.methodExpression) ?: return null
+        val name = nameOf(call.arguments.firstOrNull()) ?: return null
+        val range = call.textRange
+        val parentIndex = suites.lastOrNull()?.second ?: -1
+        return VitestTestDeclaration(kind, name, range.startOffset, range.endOffset, parentIndex, isEach(call.methodExpression))
+    }
+
+    /**
+     * Whether the callee of a declaration has an `.each(...)` modifier, e.g. `describe.concurrent.each(...)`
+     */
+    private fun isEach(callee: JSExpression?): Boolean {
+        var expression = callee
+        while (true) {
+            expression = when (expression) {
+                is JSCallExpression -> expression.methodExpression
+                is JSReferenceExpression -> {
+                    if (expression.referenceName == EACH_MODIFIER && expression.qualifier != null) {
+                        return true
+                    }
+                    expression.qualifier
+                }
+                else -> return false
+            }
+        }
+    }
+
+    /**
+     * Resolves `describe`, `test.concurrent`, `it.skipIf(...)` or `describe.each(...)` to the kind of
+     * declaration they make
+     */
+    private fun kindOf(callee: JSExpression?): VitestTestDeclaration.Kind? {
+        var expression = callee
+        while (true) {
+            when (expression) {
+                // The table of `.each(...)` or the condition of `.skipIf(...)`
+                is JSCallExpression -> expression = expression.methodExpression
+                is JSReferenceExpression -> {
+                    val name = expression.referenceName ?: return null
+                    val qualifier = expression.qualifier ?: return when {
+                        SUITE_FUNCTIONS.contains(name) -> VitestTestDeclaration.Kind.SUITE
+                        TEST_FUNCTIONS.contains(name) -> VitestTestDeclaration.Kind.TEST
+                        name == BENCH_FUNCTION -> VitestTestDeclaration.Kind.BENCH
+                        else -> null
+                    }
+                    if (!MODIFIERS.contains(name)) {
+                        return null
+                    }
+                    expression = qualifier
+                }
+                else -> return null
+            }
+        }
+    }
+
+    private fun nameOf(argument: JSExpression?): String? {
+        return when (argument) {
+            is JSLiteralExpression -> if (argument.isQuotedLiteral) argument.stringValue else null
+            is JSStringTemplateExpression -> if (argument.arguments.isEmpty()) StringUtil.unquoteString(argument.text, '`') else null
+            else -> null
+        }
+    }
+}
+
+private object VitestTestFileStructureExternalizer : DataExternalizer<VitestTestFileStructure> {
+
+    private val kinds = VitestTestDeclaration.Kind.values()
+
+    override fun save(out: DataOutput, value: VitestTestFileStructure) {
+        DataInputOutputUtil.writeINT(out, value.declarations.size)
+        for (declaration in value.declarations) {
+            out.writeByte(declaration.kind.ordinal)
+            IOUtil.writeUTF(out, declaration.name)
+            DataInputOutputUtil.writeINT(out, declaration.startOffset)
+            DataInputOutputUtil.writeINT(out, declaration.endOffset - declaration.startOffset)
+            DataInputOutputUtil.writeINT(out, declaration.parentIndex + 1)
+            out.writeBoolean(declaration.isTemplate)
+        }
+    }
+
+    override fun read(input: DataInput): VitestTestFileStructure {
+        val size = DataInputOutputUtil.readINT(input)
+        val declarations = ArrayList<VitestTestDeclaration>(size)
+        repeat(size) {
+            val kind = kinds[input.readByte().toInt()]
+            val name = IOUtil.readUTF(input)
+            val startOffset = DataInputOutputUtil.readINT(input)
+            val endOffset = startOffset + DataInputOutputUtil.readINT(input)
+            val parentIndex = DataInputOutputUtil.readINT(input) - 1
+            val isTemplate = input.readBoolean()
+            declarations.add(VitestTestDeclaration(kind, name, startOffset, endOffset, parentIndex, isTemplate))
+        }
+        return VitestTestFileStructure(declarations)
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.ericjgagnon.vitest.run.timing
+
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.util.text.StringUtil
+
+private val PHASE_ORDER = listOf("transform", "prepare", "environment", "setup", "collect", "tests")
+private const val TESTS_PHASE = "tests"
+private const val FILE_LIMIT = 10
+
+/**
+ * Time spent in each phase of a run as reported by the reporter, for the run as a whole and for
+ * each test file. Everything but running the tests is time spent loading a file, which is what
+ * makes import or transform bound runs slow.
+ *
+ * A sharded run reports once per shard, the totals of the shards are added up.
+ */
+class VitestPhaseTimings {
+
+    private val runTotals = LinkedHashMap<String, Long>()
+    private val files = mutableListOf<FileTimings>()
+
+    @Synchronized
+    fun addRun(phases: Map<String, Long>) {
+        phases.forEach { (phase, millis) -> runTotals.merge(phase, millis, Long::plus) }
+    }
+
+    @Synchronized
+    fun addFile(path: String, phases: Map<String, Long>) {
+        files.add(FileTimings(path, phases))
+    }
+
+    @Synchronized
+    fun clear() {
+        runTotals.clear()
+        files.clear()
+    }
+
+    /**
+     * The phases of the run and the files slowest to load, null when nothing was reported
+     */
+    @Synchronized
+    fun summary(basePath: String?): String? {
+        if (runTotals.isEmpty()) {
+            return null
+        }
+
+        val summary = StringBuilder("\nTime by phase: ").append(describe(runTotals)).append('\n')
+        val slowestFiles = files.filter { it.loadMillis > 0 }.sortedByDescending { it.loadMillis }.take(FILE_LIMIT)
+        if (slowestFiles.isNotEmpty()) {
+            summary.append("Slowest files to load:\n")
+            slowestFiles.forEach { file ->
+                val path = basePath?.let { FileUtil.getRelativePath(it, file.path, '/') } ?: file.path
+                summary.append("  ").append(path).append(": ")
+                    .append(StringUtil.formatDuration(file.loadMillis))
+                    .append(" (").append(describe(file.phases - TESTS_PHASE)).append(")")
+                file.phases[TESTS_PHASE]?.let { summary.append(", tests ").append(StringUtil.formatDuration(it)) }
+                summary.append('\n')
+            }
+        }
+        return summary.toString()
+    }
+
+    private fun describe(phases: Map<String, Long>): String {
+        return phases.entries
+            .sortedBy { (phase, _) -> PHASE_ORDER.indexOf(phase).let { if (it < 0) PHASE_ORDER.size else it } }
+            .joinToString(", ") { (phase, millis) -> "$phase ${StringUtil.formatDuration(millis)}" }
+    }
+
+    private class FileTimings(val path: String, val phases: Map<String, Long>) {
+        val loadMillis: Long = phases.filterKeys { it != TESTS_PHASE }.values.sum()
+    }
+}
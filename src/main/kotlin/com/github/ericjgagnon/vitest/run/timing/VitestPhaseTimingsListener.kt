@@ -0,0 +1,21 @@
+package com.github.ericjgagnon.vitest.run.timing
+
+import com.intellij.execution.testframework.TestFrameworkRunningModel
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
+import com.intellij.execution.testframework.sm.runner.ui.TestResultsViewer
+
+/**
+ * Prints the [VitestPhaseTimings] of every finished run of a console on its root node
+ */
+class VitestPhaseTimingsListener(
+    private val timings: VitestPhaseTimings,
+    private val basePath: String?,
+) : TestResultsViewer.EventsListener {
+
+    override fun onTestingFinished(sender: TestResultsViewer) {
+        timings.summary(basePath)?.let(sender.testsRootNode::addSystemOutput)
+    }
+
+    override fun onSelected(selectedTestProxy: SMTestProxy?, viewer: TestResultsViewer, model: TestFrameworkRunningModel) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.ericjgagnon.vitest.run.utils
+
+import com.intellij.execution.testframework.AbstractTestProxy
+import com.intellij.openapi.util.io.FileUtil
+
+private const val FILE_LOCATION_PREFIX = "file::/"
+
+object TestProxyUtils {
+
+    /**
+     * Path of the file a test is declared in, taken from the location hint written by the reporter
+     */
+    @JvmStatic
+    fun testFilePath(test: AbstractTestProxy): String? {
+        val locationUrl = test.locationUrl ?: return null
+        if (!locationUrl.startsWith(FILE_LOCATION_PREFIX)) {
+            return null
+        }
+        return FileUtil.toSystemDependentName(locationUrl.substring(FILE_LOCATION_PREFIX.length))
+    }
+
+    /**
+     * Names of the suites the test is nested in followed by its own, as Vitest matches them. Suites
+     * from [suite] up are left out.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun fullName(test: AbstractTestProxy, suite: AbstractTestProxy? = null): String {
+        return generateSequence(test) { it.parent }
+            .takeWhile { it !== suite }
+            .filter { it.parent != null }
+            .map { it.name }
+            .toList()
+            .asReversed()
+            .joinToString(" ")
+    }
+}
@@ -1,16 +1,15 @@
 package com.github.ericjgagnon.vitest.run.views
 
-import com.intellij.javascript.testFramework.jasmine.JasmineFileStructureBuilder
-import com.intellij.lang.javascript.psi.JSFile
+import com.github.ericjgagnon.vitest.run.structure.VitestTestDeclaration
+import com.github.ericjgagnon.vitest.run.structure.VitestTestFileStructure
+import com.github.ericjgagnon.vitest.run.structure.VitestTestStructureIndex
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.ui.DialogWrapper
 import com.intellij.openapi.ui.TextFieldWithBrowseButton
 import com.intellij.openapi.vfs.VirtualFileManager
-import com.intellij.psi.PsiManager
 import com.intellij.ui.CheckboxTree
 import com.intellij.ui.CheckedTreeNode
 import com.intellij.ui.ScrollPaneFactory
-import com.intellij.util.ObjectUtils
 import com.intellij.util.containers.TreeTraversal
 import com.intellij.util.ui.tree.TreeUtil
 import java.awt.Dimension
@@ -67,29 +66,22 @@ class TestNameSelectionDialog(val project: Project, private val filePath: String
 
     private fun testNamesInSelectedFile(rootNode: DefaultMutableTreeNode) {
         VirtualFileManager.getInstance().findFileByUrl("file://$filePath")?.let { virtualFile ->
-            PsiManager.getInstance(project).findFile(virtualFile)?.let { psiFile ->
-                ObjectUtils.tryCast(psiFile, JSFile::class.java)?.let { jsFile ->
-                    var latestSuiteNode: DefaultMutableTreeNode? = null
-                    val fetchCachedTestFileStructure =
-                        JasmineFileStructureBuilder.getInstance().fetchCachedTestFileStructure(jsFile)
-                    fetchCachedTestFileStructure.forEach({
-                            suite ->
-                        val suiteNode = DefaultMutableTreeNode(suite.name)
-                        suite.specs.forEach {
-                            val testNode = CheckedTreeNode(it.name)
-                            testNode.isChecked = false
-                            suiteNode.add(testNode)
-                        }
-                        latestSuiteNode?.let {
-                            suiteNode.add(latestSuiteNode)
-                        }
-                        latestSuiteNode = suiteNode
-                    }, null)
-                    latestSuiteNode?.also {
-                        rootNode.add(latestSuiteNode)
-                    }
-                }
+            VitestTestStructureIndex.getStructure(project, virtualFile)?.let { structure ->
+                addDeclarations(structure, null, rootNode)
+            }
+        }
+    }
 
+    private fun addDeclarations(structure: VitestTestFileStructure, parent: VitestTestDeclaration?, parentNode: DefaultMutableTreeNode) {
+        structure.children(parent).forEach { declaration ->
+            if (declaration.kind == VitestTestDeclaration.Kind.SUITE) {
+                val suiteNode = DefaultMutableTreeNode(declaration.name)
+                addDeclarations(structure, declaration, suiteNode)
+                parentNode.add(suiteNode)
+            } else {
+                val testNode = CheckedTreeNode(declaration.name)
+                testNode.isChecked = false
+                parentNode.add(testNode)
             }
         }
     }
@@ -2,12 +2,14 @@ package com.github.ericjgagnon.vitest.run.views
 
 import com.github.ericjgagnon.vitest.run.VitestScopeKind
 import com.github.ericjgagnon.vitest.run.VitestSettings
+import com.github.ericjgagnon.vitest.run.bench.VitestBenchmarkBaselines
 import com.github.ericjgagnon.vitest.run.utils.FormUtils.fileSystemCell
 import com.github.ericjgagnon.vitest.run.utils.FormUtils.selectedValueMatches
 import com.google.common.base.Splitter
 import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.ui.TextFieldWithBrowseButton
+import com.intellij.ui.JBIntSpinner
 import com.intellij.ui.components.JBTextField
 import com.intellij.ui.dsl.builder.RightGap
 import com.intellij.ui.dsl.gridLayout.HorizontalAlign
@@ -23,15 +25,21 @@ import javax.swing.ButtonGroup
 import javax.swing.ButtonModel
 import javax.swing.JRadioButton
 
-private var TEST_FILE_SCOPES = setOf(VitestScopeKind.TEST_FILE, VitestScopeKind.SUITE, VitestScopeKind.TEST)
+private var TEST_FILE_SCOPES = setOf(VitestScopeKind.TEST_FILE, VitestScopeKind.SUITE, VitestScopeKind.TEST, VitestScopeKind.DEPENDENTS, VitestScopeKind.BENCH)
 private var SUITE_SCOPES = setOf(VitestScopeKind.SUITE)
 private var TEST_NAME_SCOPES = setOf(VitestScopeKind.TEST)
+private var CHANGED_SCOPES = setOf(VitestScopeKind.CHANGED)
+private var BENCH_SCOPES = setOf(VitestScopeKind.BENCH)
+private var PACKAGES_SCOPES = setOf(VitestScopeKind.PACKAGES)
 
 class VitestStructuredScopeView(private val project: Project): VitestScopeView {
 
     private var testFileField = TextFieldWithBrowseButton()
     private var suiteNameField = JBTextField()
     private var testNameField = JBTextField()
+    private var changedSinceField = JBTextField()
+    private var benchmarkThresholdField = JBIntSpinner(VitestSettings.DEFAULT_BENCHMARK_THRESHOLD, 1, 100)
+    private var packageConcurrencyField = JBIntSpinner(VitestSettings.DEFAULT_PACKAGE_CONCURRENCY, 1, VitestSettings.MAX_PACKAGE_CONCURRENCY)
     private var vitestScopeKindField = ButtonGroup()
 
     private var scopedButtonModels = mutableMapOf<VitestScopeKind, ButtonModel>()
@@ -39,6 +47,9 @@ class VitestStructuredScopeView(private val project: Project): VitestScopeView {
     private val testFileScopesPredicate: ComponentPredicate
     private val testSuiteScopesPredicate: ComponentPredicate
     private val testNameScopesPredicate: ComponentPredicate
+    private val changedScopesPredicate: ComponentPredicate
+    private val benchScopesPredicate: ComponentPredicate
+    private val packagesScopesPredicate: ComponentPredicate
 
 
     init {
@@ -64,6 +75,16 @@ class VitestStructuredScopeView(private val project: Project): VitestScopeView {
         testNameScopesPredicate = vitestScopeKindField.selectedValueMatches {
             TEST_NAME_SCOPES.contains(buttonModelScopes[it])
         }
+        changedScopesPredicate = vitestScopeKindField.selectedValueMatches {
+            CHANGED_SCOPES.contains(buttonModelScopes[it])
+        }
+        benchScopesPredicate = vitestScopeKindField.selectedValueMatches {
+            BENCH_SCOPES.contains(buttonModelScopes[it])
+        }
+        packagesScopesPredicate = vitestScopeKindField.selectedValueMatches {
+            PACKAGES_SCOPES.contains(buttonModelScopes[it])
+        }
+        changedSinceField.emptyText.text = "Uncommitted changes"
     }
 
     override fun setFromSettings(settings: VitestSettings) {
@@ -76,6 +97,9 @@ class VitestStructuredScopeView(private val project: Project): VitestScopeView {
                 }
         }
         Optional.ofNullable(settings.suiteName()).ifPresent(suiteNameField::setText)
+        changedSinceField.text = settings.changedSince() ?: ""
+        benchmarkThresholdField.number = settings.benchmarkThreshold()
+        packageConcurrencyField.number = settings.packageConcurrency()
 
         vitestScopeKindField.clearSelection()
         Optional.ofNullable(settings.scope()).ifPresentOrElse(
@@ -98,6 +122,9 @@ class VitestStructuredScopeView(private val project: Project): VitestScopeView {
         settingsBuilder.suiteName(suiteName)
         settingsBuilder.testFilePath(testFilePath)
         settingsBuilder.testNames(testNames)
+        settingsBuilder.changedSince(changedSinceField.text)
+        settingsBuilder.benchmarkThreshold(benchmarkThresholdField.number)
+        settingsBuilder.packageConcurrency(packageConcurrencyField.number)
 
         settingsBuilder.scope(testScope)
     }
@@ -125,6 +152,21 @@ class VitestStructuredScopeView(private val project: Project): VitestScopeView {
             }.visibleIf(testNameScopesPredicate.and(testFileField.childComponent.enteredTextSatisfies { filePath ->
                 StringUtils.isNotBlank(filePath) && File(filePath).exists()
             }))
+            row("Changed since:") {
+                cell(changedSinceField).horizontalAlign(HorizontalAlign.FILL)
+                    .comment("Branch, tag or commit to compare the working tree against")
+            }.visibleIf(changedScopesPredicate)
+            row("Regression threshold:") {
+                cell(benchmarkThresholdField).gap(RightGap.SMALL)
+                label("%")
+                button("Reset Benchmark Baselines") {
+                    VitestBenchmarkBaselines.getInstance(project).resetBaselines(testFileField.text.takeIf { it.isNotBlank() })
+                }.comment("Benchmarks slower than their baseline by more than this fail. The first result of a benchmark is its baseline.")
+            }.visibleIf(benchScopesPredicate)
+            row("Packages at a time:") {
+                cell(packageConcurrencyField)
+                    .comment("Every Vitest package below the working directory runs in a process of its own")
+            }.visibleIf(packagesScopesPredicate)
         }
     }
 }
\ No newline at end of file
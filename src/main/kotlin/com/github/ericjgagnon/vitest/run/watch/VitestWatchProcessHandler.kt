@@ -0,0 +1,195 @@
+package com.github.ericjgagnon.vitest.run.watch
+
+import com.github.ericjgagnon.vitest.run.changes.VitestAffectedTestsCache
+import com.github.ericjgagnon.vitest.run.daemon.VitestDaemonRunProcessHandler
+import com.intellij.execution.ExecutionException
+import com.intellij.execution.process.ProcessAdapter
+import com.intellij.execution.process.ProcessEvent
+import com.intellij.execution.process.ProcessHandler
+import com.intellij.execution.process.ProcessOutputTypes
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileManager
+import com.intellij.openapi.vfs.newvfs.BulkFileListener
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent
+import com.intellij.util.Alarm
+import com.intellij.util.PathUtil
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.io.OutputStream
+
+private val LOG = logger<VitestWatchProcessHandler>()
+
+/**
+ * Saves arriving within this many milliseconds of each other are run together
+ */
+private const val DEBOUNCE_MILLIS = 150
+private const val BUSY_RETRY_MILLIS = 250
+
+/**
+ * Keeps a run open and reruns the test files affected by every saved change in a warm Vitest daemon,
+ * so the results of all reruns go to the test tree of one console. Saves reach the IDE as VFS content
+ * changes, which are collected, debounced and mapped to test files with [VitestAffectedTestsCache].
+ *
+ * One daemon run is in flight at a time. Changes made meanwhile are run once it has finished. The
+ * handler only terminates when the run is stopped.
+ *
+ * @param scopeFiles the test files the configuration is limited to, or null for every test file
+ * @param initialTestFiles the test files of the first run, every test file when empty
+ * @param startRun sends a run of the given test files, and the changed files Vitest must reload, to
+ * the daemon. Returns null while the daemon is busy with a run of another configuration.
+ */
+class VitestWatchProcessHandler(
+    private val project: Project,
+    private val workingDirectory: String,
+    private val scopeFiles: Set<String>?,
+    private val initialTestFiles: List<String>,
+    private val startRun: (testFiles: List<String>, changedFiles: List<String>) -> VitestDaemonRunProcessHandler?,
+) : ProcessHandler() {
+
+    private val disposable: Disposable = Disposer.newDisposable("Vitest watch")
+    private val alarm = Alarm(Alarm.ThreadToUse.POOLED_THREAD, disposable)
+    private val changedFiles = LinkedHashSet<VirtualFile>()
+    private var firstChangeAt = 0L
+    private var currentRun: VitestDaemonRunProcessHandler? = null
+
+    override fun startNotify() {
+        super.startNotify()
+        project.messageBus.connect(disposable).subscribe(VirtualFileManager.VFS_CHANGES, object : BulkFileListener {
+            override fun after(events: MutableList<out VFileEvent>) {
+                onFilesChanged(events.mapNotNull(::changedFile))
+            }
+        })
+        // Fills the tree and Vitest's state with the tests of the scope, reruns are merged into them
+        AppExecutorUtil.getAppExecutorService().execute { runTests(initialTestFiles, emptyList(), 0L) }
+    }
+
+    override fun destroyProcessImpl() {
+        Disposer.dispose(disposable)
+        val run = synchronized(this) { currentRun.also { currentRun = null } }
+        run?.destroyProcess()
+        notifyProcessTerminated(0)
+    }
+
+    override fun detachProcessImpl() {
+        destroyProcessImpl()
+    }
+
+    override fun detachIsDefault(): Boolean = false
+
+    override fun getProcessInput(): OutputStream? = null
+
+    private fun changedFile(event: VFileEvent): VirtualFile? {
+        if (event !is VFileContentChangeEvent && event !is VFileCreateEvent && event !is VFileMoveEvent) {
+            return null
+        }
+        val file = event.file?.takeIf { !it.isDirectory } ?: return null
+        return file.takeIf { FileUtil.isAncestor(workingDirectory, it.path, true) }
+    }
+
+    private fun onFilesChanged(files: List<VirtualFile>) {
+        if (files.isEmpty() || isProcessTerminating || isProcessTerminated) {
+            return
+        }
+        synchronized(this) {
+            if (changedFiles.isEmpty()) {
+                firstChangeAt = System.currentTimeMillis()
+            }
+            changedFiles.addAll(files)
+        }
+        alarm.cancelAllRequests()
+        alarm.addRequest(::rerunAffectedTests, DEBOUNCE_MILLIS)
+    }
+
+    private fun rerunAffectedTests() {
+        val (files, changedAt) = synchronized(this) {
+            if (currentRun != null) {
+                // Picked up again once the current run has finished
+                return
+            }
+            val files = changedFiles.toList()
+            changedFiles.clear()
+            files to firstChangeAt
+        }
+        if (files.isEmpty()) {
+            return
+        }
+
+        val fileIndex = ProjectFileIndex.getInstance(project)
+        val tests = try {
+            ReadAction.nonBlocking<List<String>> {
+                val sources = files.filter { it.isValid && fileIndex.isInContent(it) }
+                VitestAffectedTestsCache.getInstance(project).affectedTests(sources)
+                    .map { FileUtil.toSystemDependentName(it.path) }
+            }.expireWith(disposable).executeSynchronously()
+        } catch (e: ProcessCanceledException) {
+            // The run was stopped
+            return
+        }
+
+        val testsInScope = if (scopeFiles == null) tests else scopeFiles.filter { scopeFile -> tests.any { FileUtil.pathsEqual(it, scopeFile) } }
+        if (testsInScope.isNotEmpty()) {
+            runTests(testsInScope, files.map { FileUtil.toSystemDependentName(it.path) }, changedAt)
+        }
+    }
+
+    private fun runTests(testFiles: List<String>, changedPaths: List<String>, changedAt: Long) {
+        if (isProcessTerminating || isProcessTerminated) {
+            return
+        }
+        val run = try {
+            startRun(testFiles, changedPaths)
+        } catch (e: ExecutionException) {
+            notifyTextAvailable("Unable to start the Vitest daemon: ${e.message}\n", ProcessOutputTypes.STDERR)
+            destroyProcess()
+            return
+        }
+        if (run == null) {
+            LOG.debug("Vitest daemon is busy, retrying the watch run")
+            alarm.addRequest({ runTests(testFiles, changedPaths, changedAt) }, BUSY_RETRY_MILLIS)
+            return
+        }
+        synchronized(this) {
+            currentRun = run
+        }
+        if (changedAt > 0) {
+            val what = if (testFiles.size == 1) PathUtil.getFileName(testFiles[0]) else "${testFiles.size} test files"
+            notifyTextAvailable("Rerunning $what after changes\n", ProcessOutputTypes.SYSTEM)
+        }
+        run.addProcessListener(object : ProcessAdapter() {
+            override fun onTextAvailable(event: ProcessEvent, outputType: Key<*>) {
+                if (ProcessOutputTypes.SYSTEM != outputType) {
+                    notifyTextAvailable(event.text, outputType)
+                }
+            }
+
+            override fun processTerminated(event: ProcessEvent) {
+                if (changedAt > 0) {
+                    val latency = StringUtil.formatDuration(System.currentTimeMillis() - changedAt)
+                    notifyTextAvailable("Results $latency after the change\n", ProcessOutputTypes.SYSTEM)
+                }
+                val hasPendingChanges = synchronized(this@VitestWatchProcessHandler) {
+                    if (currentRun === run) {
+                        currentRun = null
+                    }
+                    changedFiles.isNotEmpty()
+                }
+                if (hasPendingChanges && !alarm.isDisposed) {
+                    alarm.addRequest(::rerunAffectedTests, 0)
+                }
+            }
+        })
+        run.startNotify()
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.ericjgagnon.vitest.run.workspace
+
+import com.github.ericjgagnon.vitest.run.VitestConstants.NODE_PACKAGE_NAME
+import com.github.ericjgagnon.vitest.run.resolution.VitestConfigFiles
+import com.intellij.javascript.nodejs.PackageJsonData
+import com.intellij.javascript.nodejs.util.NodePackage
+import com.intellij.lang.javascript.buildTools.npm.PackageJsonUtil
+import com.intellij.openapi.vfs.VfsUtilCore
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileVisitor
+
+private const val NODE_MODULES = "node_modules"
+
+/**
+ * A Vitest package of a workspace with the working directory, config file and Vitest package its
+ * tests run with
+ */
+data class VitestWorkspacePackage(
+    val name: String,
+    val directory: VirtualFile,
+    val configFile: VirtualFile?,
+    val vitestPackage: NodePackage?,
+)
+
+object VitestWorkspacePackages {
+
+    /**
+     * Finds the Vitest packages below [root], ordered by path. A directory is a package by the rules
+     * the configuration producer picks the working directory of a test file with: it has a Vitest or
+     * Vite config file, or a package.json declaring Vitest. Packages don't nest, so the directories
+     * below a package aren't searched, nor are node_modules and hidden directories. The root itself
+     * is left out, its config usually covers the whole workspace.
+     *
+     * Must be called in a read action.
+     */
+    fun find(root: VirtualFile): List<VitestWorkspacePackage> {
+        val packages = mutableListOf<VitestWorkspacePackage>()
+        VfsUtilCore.visitChildrenRecursively(root, object : VirtualFileVisitor<Unit>() {
+            override fun visitFileEx(file: VirtualFile): Result {
+                if (!file.isDirectory) {
+                    return SKIP_CHILDREN
+                }
+                if (file == root) {
+                    return CONTINUE
+                }
+                if (file.name == NODE_MODULES || file.name.startsWith(".")) {
+                    return SKIP_CHILDREN
+                }
+                val workspacePackage = createPackage(file) ?: return CONTINUE
+                packages.add(workspacePackage)
+                return SKIP_CHILDREN
+            }
+        })
+        return packages.sortedBy { it.directory.path }
+    }
+
+    private fun createPackage(directory: VirtualFile): VitestWorkspacePackage? {
+        val configFile = VitestConfigFiles.find(directory)
+        val packageJson = PackageJsonUtil.findChildPackageJsonFile(directory)
+        val data = packageJson?.let(PackageJsonData::getOrCreate)
+        if (configFile == null && data?.isDependencyOfAnyType(NODE_PACKAGE_NAME) != true) {
+            return null
+        }
+        val name = data?.name?.takeIf { it.isNotBlank() } ?: directory.name
+        return VitestWorkspacePackage(name, directory, configFile, findVitestPackage(directory))
+    }
+
+    /**
+     * The Vitest installed for the package itself or hoisted to one of its parent directories
+     */
+    private fun findVitestPackage(directory: VirtualFile): NodePackage? {
+        var current: VirtualFile? = directory
+        while (current != null) {
+            val vitestDirectory = current.findChild(NODE_MODULES)?.findChild(NODE_PACKAGE_NAME)
+            if (vitestDirectory != null && PackageJsonUtil.findChildPackageJsonFile(vitestDirectory) != null) {
+                return NodePackage(vitestDirectory.path)
+            }
+            current = current.parent
+        }
+        return null
+    }
+}
@@ -1,91 +1,101 @@
-import { endMessages, resultStateMessages, startMessages } from './constants';
-import { teamCityMessage } from './utils';
-import type { File, TaskResult } from 'vitest';
+import {
+  BENCHMARK_RESULT_MESSAGE,
+  endMessages,
+  resultStateMessages,
+  REPLAYED_METAINFO,
+  ROOT_NODE_ID,
+  startMessages,
+  treeEndMessages,
+  treeStartMessages,
+} from './constants';
+import { attribute, serviceMessage } from './utils';
+import type { TaskResult } from 'vitest';
 
 /**
+ * The statistics of a benchmark result reported to the IDE, times in milliseconds
+ */
+export interface BenchmarkStatistics {
+  hz?: number;
+  mean?: number;
+  p75?: number;
+  p99?: number;
+  rme?: number;
+  samples?: number[] | number;
+}
+
+const BENCHMARK_STATISTICS = ['hz', 'mean', 'p75', 'p99', 'rme'] as const;
+
+/**
+ * What the reporter keeps of a task until its subtree has reported: its identity, a link to its
+ * parent and counters. The Vitest task itself is not retained, so neither are its results.
+ *
  * @class
  * @constructor
  * @public
  */
 export default class Node {
   private readonly _id: string;
-  private readonly nodeId: string;
   private readonly name: string;
-  private readonly file: File | undefined;
+  private readonly filepath: string | undefined;
   private readonly _parentNode: Node | null;
-  private readonly parentNodeId: string | null;
   private readonly _type: string;
-  private readonly startMessage: string;
-  private readonly endMessage: string;
-  private readonly children: Record<string, Node>;
   private childCount: number;
   private childExecutionCount: number;
+  private started: boolean;
+  private readonly replayed: boolean;
   constructor(
     type: string,
     id: string,
     name: string,
-    file: File | undefined,
-    parentNode: Node | null = null
+    filepath: string | undefined,
+    parentNode: Node | null = null,
+    replayed = false
   ) {
     /**
      * @type {string}
      * @public
      */
     this._id = id;
-    /**
-     * @type {string}
-     * @private
-     */
-    this.nodeId = id;
     /**
      * @type {string}
      * @public
      */
     this.name = name;
     /**
-     * @type {File|undefined}
+     * @type {string|undefined}
      * @private
      */
-    this.file = file;
+    this.filepath = filepath;
     /**
      * @type {Node}
      * @public
      */
     this._parentNode = parentNode;
-    /**
-     * @type {string}
-     * @public
-     */
-    this.parentNodeId = parentNode === null ? null : parentNode._id;
     /**
      * @public
      */
     this._type = type;
     /**
-     * @type {string|undefined}
+     * @type {number}
      * @private
      */
-    this.startMessage = startMessages[type];
+    this.childCount = 0;
     /**
-     * @type {string|undefined}
+     * @type {number}
      * @private
      */
-    this.endMessage = endMessages[type];
+    this.childExecutionCount = 0;
     /**
-     * @type {Record<string, Node>}
+     * @type {boolean}
      * @private
      */
-    this.children = {};
-    /**
-     * @type {number}
-     * @public
-     */
-    this.childCount = 0;
+    this.started = false;
     /**
-     * @type {number}
-     * @public
+     * Reported from the last results of a watch run instead of running again
+     * @type {boolean}
+     * @private
      */
-    this.childExecutionCount = 0;
+    this.replayed = replayed;
   }
 
   get id(): string {
@@ -100,14 +110,76 @@ export default class Node {
     return this._parentNode;
   }
 
+  /**
+   * Attributes shared by every message of this node, built without intermediate objects or arrays
+   */
+  private commonAttributes() {
+    return (
+      attribute('id', this._id) +
+      attribute('name', this.name) +
+      attribute('nodeId', this._id) +
+      attribute('parentNodeId', this.parentNodeId)
+    );
+  }
+
+  private get parentNodeId(): string {
+    return this._parentNode === null ? ROOT_NODE_ID : this._parentNode._id;
+  }
+
+  private locationAttribute() {
+    if (this.filepath) {
+      return attribute('locationHint', `file::/${this.filepath}`);
+    }
+    return '';
+  }
+
+  /**
+   * Tells the IDE a replayed node apart, so its results are not counted as a new run of it
+   */
+  private metainfoAttribute() {
+    return this.replayed ? attribute('metainfo', REPLAYED_METAINFO) : '';
+  }
+
+  /**
+   * Registers the node in the IDE's test tree before anything has run
+   */
+  createTreeStartMessage() {
+    const type = treeStartMessages[this._type];
+    if (type) {
+      return serviceMessage(
+        type,
+        attribute('name', this.name) +
+          attribute('nodeId', this._id) +
+          attribute('parentNodeId', this.parentNodeId) +
+          this.locationAttribute() +
+          this.metainfoAttribute()
+      );
+    }
+    return null;
+  }
+
+  createTreeEndMessage() {
+    const type = treeEndMessages[this._type];
+    if (type) {
+      return serviceMessage(
+        type,
+        attribute('name', this.name) + attribute('nodeId', this._id)
+      );
+    }
+    return null;
+  }
+
+  /**
+   * Reports the node as running, only the first time since Vitest updates a running task repeatedly
+   */
   createStartMessage() {
-    if (this.startMessage) {
-      return teamCityMessage(this.startMessage, {
-        id: this._id,
-        name: this.name,
-        nodeId: this.nodeId,
-        parentNodeId: this.parentNodeId,
-      });
+    const type = startMessages[this._type];
+    if (type && !this.started) {
+      this.started = true;
+      return serviceMessage(
+        type,
+        this.commonAttributes() + this.metainfoAttribute()
+      );
     }
     return null;
   }
@@ -116,36 +188,72 @@ export default class Node {
     if (result) {
       const { state, error } = result;
       if (state in resultStateMessages) {
-        return teamCityMessage(resultStateMessages[state], {
-          id: this._id,
-          name: this.name,
-          nodeId: this.nodeId,
-          parentNodeId: this.parentNodeId,
-          ...(this.file?.filepath
-            ? { locationHint: `file::/${this.file.filepath}` }
-            : {}),
-          ...(error?.message ? { message: error.message } : {}),
-        });
+        let attributes = this.commonAttributes() + this.locationAttribute();
+        if (error?.message) {
+          attributes += attribute('message', error.message);
+        }
+        return serviceMessage(resultStateMessages[state], attributes);
       }
     }
     return null;
   }
 
   createEndMessage(duration?: number | null) {
-    if (this.endMessage) {
-      return teamCityMessage(this.endMessage, {
-        id: this._id,
-        name: this.name,
-        nodeId: this.nodeId,
-        parentNodeId: this.parentNodeId,
-        ...(duration ? { duration: duration.toString() } : {}),
-      });
+    const type = endMessages[this._type];
+    if (type) {
+      let attributes = this.commonAttributes();
+      if (duration) {
+        attributes += attribute('duration', duration.toString());
+      }
+      return serviceMessage(type, attributes);
     }
     return null;
   }
 
-  addChild(node: Node) {
-    this.children[node._id] = node;
+  /**
+   * Names of the suites this node is nested in followed by its own, the key of its results in the IDE
+   */
+  fullName(): string {
+    return this._parentNode
+      ? `${this._parentNode.fullName()} ${this.name}`
+      : this.name;
+  }
+
+  /**
+   * Reports the measured statistics of this benchmark, for the IDE to compare with its baseline
+   */
+  createBenchmarkMessage(benchmark: BenchmarkStatistics) {
+    let attributes =
+      this.commonAttributes() + attribute('fullName', this.fullName());
+    if (this.filepath) {
+      attributes += attribute('path', this.filepath);
+    }
+    for (const name of BENCHMARK_STATISTICS) {
+      const value = benchmark[name];
+      if (typeof value === 'number' && Number.isFinite(value)) {
+        attributes += attribute(name, value.toString());
+      }
+    }
+    const samples = Array.isArray(benchmark.samples)
+      ? benchmark.samples.length
+      : benchmark.samples;
+    if (typeof samples === 'number') {
+      attributes += attribute('samples', samples.toString());
+    }
+    return serviceMessage(BENCHMARK_RESULT_MESSAGE, attributes);
+  }
+
+  /**
+   * Attaches console output to this node, [stdErr] tells whether it was written to stderr
+   */
+  createOutputMessage(content: string, stdErr: boolean) {
+    return serviceMessage(
+      stdErr ? 'testStdErr' : 'testStdOut',
+      this.commonAttributes() + attribute('out', content)
+    );
+  }
+
+  addChild() {
     this.childCount++;
   }
 
@@ -0,0 +1,117 @@
+import { afterAll, beforeAll, bench, describe } from 'vitest';
+import type { File, Suite, TaskResultPack, Test } from 'vitest';
+import VitestIntellijReporter from '../reporter';
+
+const TESTS_PER_SUITE = 100;
+const FAILURE_RATE = 10;
+const FAILURE_MESSAGE =
+  "expected [ 'a', 'b' ] to deeply equal [ 'a', 'c' ]\n" +
+  "- Expected\n+ Received\n\n  Array [\n    'a',\n-   'c',\n+   'b',\n  ]\n".repeat(20);
+
+interface SyntheticRun {
+  files: File[];
+  packs: TaskResultPack[];
+  messageCount: number;
+}
+
+/**
+ * One file per suite of TESTS_PER_SUITE tests, every FAILURE_RATE-th test failing with a large diff
+ */
+function createRun(testCount: number): SyntheticRun {
+  const files: File[] = [];
+  const packs: TaskResultPack[] = [];
+  const suiteCount = Math.ceil(testCount / TESTS_PER_SUITE);
+  for (let s = 0; s < suiteCount; s++) {
+    const file = {
+      id: `${s}`,
+      name: `suite-${s}.test.ts`,
+      type: 'suite',
+      mode: 'run',
+      filepath: `/project/src/suite-${s}.test.ts`,
+      tasks: [],
+    } as unknown as File;
+    const suite = {
+      id: `${s}_0`,
+      type: 'suite',
+      name: `suite ${s}`,
+      mode: 'run',
+      file,
+      tasks: [],
+    } as unknown as Suite;
+    file.tasks.push(suite);
+    packs.push([suite.id, { state: 'run' }]);
+    for (let t = 0; t < TESTS_PER_SUITE; t++) {
+      const test = {
+        id: `${s}_0_${t}`,
+        type: 'test',
+        name: `handles case [${t}] with 'quotes' | pipes`,
+        mode: 'run',
+        suite,
+        file,
+      } as unknown as Test;
+      suite.tasks.push(test);
+      packs.push([
+        test.id,
+        t % FAILURE_RATE === 0
+          ? { state: 'fail', duration: 3, error: { message: FAILURE_MESSAGE } }
+          : { state: 'pass', duration: 1 },
+      ]);
+    }
+    files.push(file);
+  }
+  // testingStarted, testingFinished, suite start/end and test start/end plus one result per failure
+  const messageCount =
+    2 +
+    suiteCount * 2 +
+    suiteCount * TESTS_PER_SUITE * 2 +
+    suiteCount * (TESTS_PER_SUITE / FAILURE_RATE);
+  return { files, packs, messageCount };
+}
+
+function report({ files, packs }: SyntheticRun) {
+  const reporter = new VitestIntellijReporter();
+  reporter.onInit();
+  reporter.onCollected(files);
+  reporter.onTaskUpdate(packs);
+  reporter.onFinished();
+}
+
+/**
+ * Heap growth of a single run, only meaningful when node runs with --expose-gc
+ */
+function measureAllocatedBytes(run: SyntheticRun) {
+  const gc = (globalThis as { gc?: () => void }).gc;
+  gc?.();
+  const before = process.memoryUsage().heapUsed;
+  report(run);
+  const allocated = process.memoryUsage().heapUsed - before;
+  gc?.();
+  return allocated;
+}
+
+describe.each([10_000, 50_000, 100_000])('reporter with %i tests', (testCount) => {
+  const run = createRun(testCount);
+  const originalWrite = process.stdout.write;
+  let writtenBytes = 0;
+
+  beforeAll(() => {
+    process.stdout.write = ((chunk: string) => {
+      writtenBytes += chunk.length;
+      return true;
+    }) as typeof process.stdout.write;
+  });
+
+  afterAll(() => {
+    const allocated = measureAllocatedBytes(run);
+    process.stdout.write = originalWrite;
+    console.log(
+      `${testCount} tests: ${run.messageCount} messages per run, ` +
+        `~${Math.round(allocated / run.messageCount)} bytes allocated per message, ` +
+        `${writtenBytes} bytes written in total`
+    );
+  });
+
+  bench(`${run.messageCount} messages per iteration`, () => {
+    report(run);
+  });
+});
@@ -1,5 +1,5 @@
 import { vi } from 'vitest';
-import type { File, Suite, TaskResult, TestContext } from 'vitest';
+import type { File, Suite, TaskResult, TestContext, Vitest } from 'vitest';
 import VitestIntellijReporter from '../reporter';
 
 const reporter = new VitestIntellijReporter();
@@ -70,10 +70,263 @@ describe('VitestIntellijReporter', () => {
     reporter.onFinished();
     expect(messages).toBe(
       '##teamcity[testingStarted]\n' +
-        "##teamcity[testSuiteStarted id='1_1' name='Utils' nodeId='1_1']\n" +
+        "##teamcity[suiteTreeStarted name='Utils' nodeId='1_1' parentNodeId='0']\n" +
+        "##teamcity[suiteTreeNode name='utils.apply' nodeId='1_1_1' parentNodeId='1_1']\n" +
+        "##teamcity[suiteTreeEnded name='Utils' nodeId='1_1']\n" +
+        "##teamcity[testCount count='1']\n" +
+        "##teamcity[testSuiteStarted id='1_1' name='Utils' nodeId='1_1' parentNodeId='0']\n" +
         "##teamcity[testStarted id='1_1_1' name='utils.apply' nodeId='1_1_1' parentNodeId='1_1']\n" +
         "##teamcity[testFinished id='1_1_1' name='utils.apply' nodeId='1_1_1' parentNodeId='1_1' duration='1']\n" +
-        "##teamcity[testSuiteFinished id='1_1' name='Utils' nodeId='1_1']\n" +
+        "##teamcity[testSuiteFinished id='1_1' name='Utils' nodeId='1_1' parentNodeId='0']\n" +
+        '##teamcity[testingFinished]\n'
+    );
+  });
+  test('announces every watch rerun instead of init', () => {
+    let messages = '';
+    mockWriter.mockImplementation((message: string) => {
+      messages += message;
+    });
+    const watchReporter = new VitestIntellijReporter();
+    watchReporter.onInit({ config: { watch: true } } as Vitest);
+    expect(messages).toBe('');
+
+    watchReporter.onWatcherRerun();
+    watchReporter.onFinished();
+    expect(messages).toBe(
+      '##teamcity[testingStarted]\n' + '##teamcity[testingFinished]\n'
+    );
+  });
+  test('batches messages into one write until finished', () => {
+    const batchingReporter = new VitestIntellijReporter();
+    batchingReporter.onInit();
+    batchingReporter.onWatcherRerun();
+    expect(mockWriter).not.toHaveBeenCalled();
+
+    batchingReporter.onFinished();
+    expect(mockWriter).toHaveBeenCalledTimes(1);
+  });
+  test('reports cpu time when run stats are requested', () => {
+    let messages = '';
+    mockWriter.mockImplementation((message: string) => {
+      messages += message;
+    });
+    process.env.VITEST_INTELLIJ_RUN_STATS = '1';
+    try {
+      new VitestIntellijReporter().onFinished();
+    } finally {
+      delete process.env.VITEST_INTELLIJ_RUN_STATS;
+    }
+    expect(messages).toMatch(
+      /^##teamcity\[testingFinished\]\n##teamcity\[vitestRunStats cpuTime='\d+'\]\n$/
+    );
+  });
+  test('attaches console output to the task writing it', () => {
+    let messages = '';
+    mockWriter.mockImplementation((message: string) => {
+      messages += message;
+    });
+    const logReporter = new VitestIntellijReporter();
+    const test = {
+      id: '1_1',
+      type: 'test',
+      name: 'logs',
+      mode: 'run',
+      suite: {} as Suite,
+      context: {} as TestContext,
+    };
+    logReporter.onCollected([
+      {
+        id: '1',
+        name: 'log.test.js',
+        type: 'suite',
+        mode: 'run',
+        filepath: 'path/to/log.test.js',
+        tasks: [test],
+      } as File,
+    ]);
+
+    logReporter.onUserConsoleLog({
+      content: 'hello\n',
+      type: 'stdout',
+      taskId: '1_1',
+      time: 0,
+    });
+    logReporter.onUserConsoleLog({ content: 'loose\n', type: 'stdout', time: 0 });
+    // Output without a task flushes the messages before it to keep the order
+    expect(
+      messages.endsWith(
+        "##teamcity[testStdOut id='1_1' name='logs' nodeId='1_1' parentNodeId='0' out='hello|n']\n" +
+          'loose\n'
+      )
+    ).toBe(true);
+  });
+  test('reports phase timings per file and for the run', () => {
+    let messages = '';
+    mockWriter.mockImplementation((message: string) => {
+      messages += message;
+    });
+    const file = {
+      id: '1',
+      name: 'slow.test.js',
+      type: 'suite',
+      mode: 'run',
+      filepath: 'path/to/slow.test.js',
+      tasks: [],
+      collectDuration: 20.4,
+      setupDuration: 3,
+      result: { state: 'pass', duration: 9 },
+    } as File;
+
+    new VitestIntellijReporter().onFinished([file]);
+    expect(messages).toBe(
+      "##teamcity[vitestFileTimings path='path/to/slow.test.js' setup='3' collect='20' tests='9']\n" +
+        "##teamcity[vitestRunTimings setup='3' collect='20' tests='9']\n" +
+        '##teamcity[testingFinished]\n'
+    );
+  });
+  test('reports the statistics of a measured benchmark', () => {
+    let messages = '';
+    mockWriter.mockImplementation((message: string) => {
+      messages += message;
+    });
+    const benchReporter = new VitestIntellijReporter();
+    const file = {
+      id: '1',
+      name: 'parse.bench.js',
+      type: 'suite',
+      mode: 'run',
+      filepath: 'path/to/parse.bench.js',
+      tasks: [],
+    } as unknown as File;
+    const suite = {
+      id: '1_1',
+      type: 'suite',
+      name: 'parse',
+      mode: 'run',
+      file,
+      tasks: [],
+    } as unknown as Suite;
+    suite.tasks.push({
+      id: '1_1_1',
+      type: 'benchmark',
+      name: 'json',
+      mode: 'run',
+      suite,
+      file,
+    } as unknown as Suite['tasks'][number]);
+    file.tasks.push(suite);
+
+    benchReporter.onCollected([file]);
+    messages = '';
+    benchReporter.onTaskUpdate([
+      ['1_1_1', { state: 'run' }],
+      [
+        '1_1_1',
+        {
+          state: 'pass',
+          benchmark: { hz: 1250.5, mean: 0.8, p75: 0.9, p99: 1.5, rme: 1.2, samples: [1, 2, 3] },
+        } as TaskResult,
+      ],
+    ]);
+    benchReporter.onFinished();
+    expect(messages).toBe(
+      "##teamcity[testStarted id='1_1_1' name='json' nodeId='1_1_1' parentNodeId='1_1']\n" +
+        "##teamcity[vitestBenchmarkResult id='1_1_1' name='json' nodeId='1_1_1' parentNodeId='1_1' fullName='parse json' path='path/to/parse.bench.js' hz='1250.5' mean='0.8' p75='0.9' p99='1.5' rme='1.2' samples='3']\n" +
+        "##teamcity[testFinished id='1_1_1' name='json' nodeId='1_1_1' parentNodeId='1_1']\n" +
+        "##teamcity[testSuiteFinished id='1_1' name='parse' nodeId='1_1' parentNodeId='0']\n" +
+        '##teamcity[testingFinished]\n'
+    );
+  });
+  test('drops nodes once their subtree has reported', () => {
+    let messages = '';
+    mockWriter.mockImplementation((message: string) => {
+      messages += message;
+    });
+    const planReporter = new VitestIntellijReporter();
+    const file = {
+      id: '1',
+      name: 'nested.test.js',
+      type: 'suite',
+      mode: 'run',
+      filepath: 'path/to/nested.test.js',
+      tasks: [],
+    } as unknown as File;
+    const outer = { id: '1_1', type: 'suite', name: 'outer', mode: 'run', file, tasks: [] } as unknown as Suite;
+    const inner = { id: '1_1_1', type: 'suite', name: 'inner', mode: 'run', file, tasks: [] } as unknown as Suite;
+    inner.tasks.push({ id: '1_1_1_1', type: 'test', name: 'first', mode: 'run', suite: inner, file } as unknown as Suite['tasks'][number]);
+    outer.tasks.push(inner, { id: '1_1_2', type: 'test', name: 'second', mode: 'run', suite: outer, file } as unknown as Suite['tasks'][number]);
+    file.tasks.push(outer);
+
+    planReporter.onCollected([file]);
+    messages = '';
+    planReporter.onTaskUpdate([
+      ['1_1_1_1', { state: 'pass', duration: 1 }],
+      ['1_1_2', { state: 'run' }],
+    ]);
+    // The outer suite still waits for its second test
+    expect([...planReporter.testPlanLookup.keys()]).toEqual(['1_1', '1_1_2']);
+
+    planReporter.onTaskUpdate([['1_1_2', { state: 'pass', duration: 2 }]]);
+    expect(planReporter.testPlanLookup.size).toBe(0);
+    planReporter.onFinished();
+    expect(messages).toBe(
+      "##teamcity[testStarted id='1_1_1_1' name='first' nodeId='1_1_1_1' parentNodeId='1_1_1']\n" +
+        "##teamcity[testFinished id='1_1_1_1' name='first' nodeId='1_1_1_1' parentNodeId='1_1_1' duration='1']\n" +
+        "##teamcity[testSuiteFinished id='1_1_1' name='inner' nodeId='1_1_1' parentNodeId='1_1']\n" +
+        "##teamcity[testStarted id='1_1_2' name='second' nodeId='1_1_2' parentNodeId='1_1']\n" +
+        "##teamcity[testFinished id='1_1_2' name='second' nodeId='1_1_2' parentNodeId='1_1' duration='2']\n" +
+        "##teamcity[testSuiteFinished id='1_1' name='outer' nodeId='1_1' parentNodeId='0']\n" +
+        '##teamcity[testingFinished]\n'
+    );
+  });
+  test('keeps the results of files a merged watch rerun leaves out', () => {
+    let messages = '';
+    mockWriter.mockImplementation((message: string) => {
+      messages += message;
+    });
+    const createFile = (id: string, result: TaskResult) => {
+      const file = {
+        id,
+        name: `${id}.test.js`,
+        type: 'suite',
+        mode: 'run',
+        filepath: `path/to/${id}.test.js`,
+        tasks: [],
+      } as unknown as File;
+      file.tasks.push({
+        id: `${id}_1`,
+        type: 'test',
+        name: 'works',
+        mode: 'run',
+        file,
+        result,
+      } as unknown as File['tasks'][number]);
+      return file;
+    };
+    const files = [
+      createFile('kept', { state: 'fail', duration: 4, error: { message: 'no' } } as TaskResult),
+      createFile('rerun', { state: 'pass', duration: 1 }),
+    ];
+    const watchReporter = new VitestIntellijReporter();
+    watchReporter.onInit({
+      config: { watch: true },
+      state: { getFiles: () => files },
+    } as unknown as Vitest);
+
+    process.env.VITEST_INTELLIJ_MERGE_RESULTS = '1';
+    try {
+      watchReporter.onWatcherRerun(['path/to/rerun.test.js']);
+    } finally {
+      delete process.env.VITEST_INTELLIJ_MERGE_RESULTS;
+    }
+    watchReporter.onFinished();
+    expect(messages).toBe(
+      '##teamcity[testingStarted]\n' +
+        "##teamcity[suiteTreeNode name='works' nodeId='kept_1' parentNodeId='0' locationHint='file::/path/to/kept.test.js' metainfo='vitest-replayed']\n" +
+        "##teamcity[testCount count='1']\n" +
+        "##teamcity[testStarted id='kept_1' name='works' nodeId='kept_1' parentNodeId='0' metainfo='vitest-replayed']\n" +
+        "##teamcity[testFailed id='kept_1' name='works' nodeId='kept_1' parentNodeId='0' locationHint='file::/path/to/kept.test.js' message='no']\n" +
+        "##teamcity[testFinished id='kept_1' name='works' nodeId='kept_1' parentNodeId='0' duration='4']\n" +
         '##teamcity[testingFinished]\n'
     );
   });
@@ -0,0 +1,32 @@
+import { prioritize } from '../sequencer';
+
+describe('prioritize', () => {
+  test('runs prioritized files first in their listed order', () => {
+    const priorities = new Map([
+      ['/c.test.ts', 0],
+      ['/a.test.ts', 1],
+    ]);
+    expect(
+      prioritize(['/a.test.ts', '/b.test.ts', '/c.test.ts', '/d.test.ts'], priorities)
+    ).toEqual(['/c.test.ts', '/a.test.ts', '/b.test.ts', '/d.test.ts']);
+  });
+  test('supports project and path pairs', () => {
+    const priorities = new Map([['/b.test.ts', 0]]);
+    expect(
+      prioritize<[unknown, string]>(
+        [
+          [null, '/a.test.ts'],
+          [null, '/b.test.ts'],
+        ],
+        priorities
+      )
+    ).toEqual([
+      [null, '/b.test.ts'],
+      [null, '/a.test.ts'],
+    ]);
+  });
+  test('keeps the order without priorities', () => {
+    const files = ['/b.test.ts', '/a.test.ts'];
+    expect(prioritize(files, new Map())).toBe(files);
+  });
+});
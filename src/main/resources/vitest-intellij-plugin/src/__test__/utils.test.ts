@@ -0,0 +1,101 @@
+import fs from 'fs';
+import net from 'net';
+import { vi } from 'vitest';
+import { SocketSink } from '../utils';
+
+const TOKEN = 'run-token';
+
+/**
+ * Listens like the IDE's event channel, resolving the messages of the frames received until the
+ * sink's socket is closed, the token first
+ */
+function listen() {
+  return new Promise<{ port: number; received: Promise<string[]> }>(
+    (resolve) => {
+      let connection!: (messages: string[]) => void;
+      const received = new Promise<string[]>((done) => (connection = done));
+      const server = net.createServer((socket) => {
+        const chunks: Buffer[] = [];
+        socket.on('data', (chunk) => chunks.push(chunk));
+        socket.on('close', () => {
+          server.close();
+          connection(parseFrames(Buffer.concat(chunks)));
+        });
+      });
+      server.listen(0, '127.0.0.1', () =>
+        resolve({ port: (server.address() as net.AddressInfo).port, received })
+      );
+    }
+  );
+}
+
+function parseFrames(data: Buffer) {
+  const messages: string[] = [];
+  let offset = 0;
+  while (offset + 4 <= data.length) {
+    const length = data.readUInt32BE(offset);
+    messages.push(data.toString('utf8', offset + 4, offset + 4 + length));
+    offset += 4 + length;
+  }
+  return messages;
+}
+
+function socketOf(sink: SocketSink) {
+  return (sink as unknown as { socket: net.Socket }).socket;
+}
+
+describe('SocketSink', () => {
+  afterEach(() => {
+    vi.restoreAllMocks();
+  });
+
+  test('sends each message as a frame', async () => {
+    const { port, received } = await listen();
+    const sink = new SocketSink(port, TOKEN);
+
+    sink.write(['##teamcity[testingStarted]', "##teamcity[testStdOut out='ü']"]);
+    await sink.drained();
+    socketOf(sink).end();
+
+    expect(await received).toEqual([
+      TOKEN,
+      '##teamcity[testingStarted]',
+      "##teamcity[testStdOut out='ü']",
+    ]);
+  });
+
+  test('sends the messages of an exiting process synchronously', async () => {
+    const { port, received } = await listen();
+    const sink = new SocketSink(port, TOKEN);
+    sink.write(['##teamcity[testingStarted]']);
+    await sink.drained();
+
+    sink.writeSync(['##teamcity[testingFinished]']);
+    socketOf(sink).end();
+
+    expect(await received).toEqual([
+      TOKEN,
+      '##teamcity[testingStarted]',
+      '##teamcity[testingFinished]',
+    ]);
+  });
+
+  test('writes to stdout when exiting before the socket is connected', async () => {
+    const { port } = await listen();
+    const written: string[] = [];
+    vi.spyOn(fs, 'writeSync').mockImplementation((_fd: number, data: unknown) => {
+      written.push(String(data));
+      return 0;
+    });
+    const sink = new SocketSink(port, TOKEN);
+
+    sink.write(['##teamcity[testingStarted]']);
+    sink.writeSync(['##teamcity[testingFinished]']);
+
+    expect(written.join('')).toBe(
+      '##teamcity[vitestEventChannelClosed]\n' +
+        '##teamcity[testingStarted]\n' +
+        '##teamcity[testingFinished]\n'
+    );
+  });
+});
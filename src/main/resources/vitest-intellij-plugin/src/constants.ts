@@ -2,6 +2,7 @@
 const startMessages: Record<string, string> = {
     suite: 'testSuiteStarted',
     test: 'testStarted',
+    benchmark: 'testStarted',
 };
 
 const resultStateMessages: Record<string, string> = {
@@ -12,6 +13,72 @@ const resultStateMessages: Record<string, string> = {
 const endMessages: Record<string, string> = {
     suite: 'testSuiteFinished',
     test: 'testFinished',
+    benchmark: 'testFinished',
 };
 
-export {startMessages, resultStateMessages, endMessages};
\ No newline at end of file
+const treeStartMessages: Record<string, string> = {
+    suite: 'suiteTreeStarted',
+    test: 'suiteTreeNode',
+    benchmark: 'suiteTreeNode',
+};
+
+const treeEndMessages: Record<string, string> = {
+    suite: 'suiteTreeEnded',
+};
+
+/**
+ * Parent id of top level nodes in the IDE's id based test tree
+ */
+const ROOT_NODE_ID = '0';
+
+/**
+ * Reported after a run when the IDE asks for it through RUN_STATS_ENV
+ */
+const RUN_STATS_MESSAGE = 'vitestRunStats';
+const RUN_STATS_ENV = 'VITEST_INTELLIJ_RUN_STATS';
+
+/**
+ * Time spent in each phase of a run and of each of its files, reported before the run finishes
+ */
+const RUN_TIMINGS_MESSAGE = 'vitestRunTimings';
+const FILE_TIMINGS_MESSAGE = 'vitestFileTimings';
+
+/**
+ * Statistics of a measured benchmark, reported before the benchmark finishes
+ */
+const BENCHMARK_RESULT_MESSAGE = 'vitestBenchmarkResult';
+
+/**
+ * File listing test files to run first, one path per line, most important first
+ */
+const PRIORITY_FILE_ENV = 'VITEST_INTELLIJ_PRIORITY_FILE';
+/**
+ * Stops the run at the first failing test when set to 1
+ */
+const BAIL_ENV = 'VITEST_INTELLIJ_BAIL';
+
+/**
+ * Loopback port the IDE listens on for the TeamCity messages, stdout is used when unset
+ */
+const EVENTS_PORT_ENV = 'VITEST_INTELLIJ_EVENTS_PORT';
+/**
+ * Token of the run the IDE expects as the first frame on the events port
+ */
+const EVENTS_TOKEN_ENV = 'VITEST_INTELLIJ_EVENTS_TOKEN';
+/**
+ * Written to stdout when the messages of an exiting process can't be sent over the events port,
+ * the messages following it on stdout come after everything sent over the port
+ */
+const CHANNEL_CLOSED_MESSAGE = 'vitestEventChannelClosed';
+
+/**
+ * Reports the last results of the files a watch rerun leaves out again when set to 1, so the IDE's
+ * tree keeps them
+ */
+const MERGE_RESULTS_ENV = 'VITEST_INTELLIJ_MERGE_RESULTS';
+/**
+ * Metainfo of the nodes a watch rerun reports from the last results instead of running them again
+ */
+const REPLAYED_METAINFO = 'vitest-replayed';
+
+export {startMessages, resultStateMessages, endMessages, treeStartMessages, treeEndMessages, ROOT_NODE_ID, RUN_STATS_MESSAGE, RUN_STATS_ENV, RUN_TIMINGS_MESSAGE, FILE_TIMINGS_MESSAGE, BENCHMARK_RESULT_MESSAGE, PRIORITY_FILE_ENV, BAIL_ENV, EVENTS_PORT_ENV, EVENTS_TOKEN_ENV, CHANNEL_CLOSED_MESSAGE, MERGE_RESULTS_ENV, REPLAYED_METAINFO};
\ No newline at end of file
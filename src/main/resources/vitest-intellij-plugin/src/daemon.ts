@@ -0,0 +1,96 @@
+import path from 'path';
+import readline from 'readline';
+import { pathToFileURL } from 'url';
+import type { File, Task } from 'vitest';
+
+const EOL = import.meta.env.VITE_LINE_ENDING;
+
+interface RunRequest {
+  id: number;
+  filters?: string[];
+  testNamePattern?: string | null;
+  env?: Record<string, string | null>;
+  changed?: string[];
+}
+
+const [vitestPackageDir, root, reporterPath, configFile] = process.argv.slice(2);
+
+function hasFailed(tasks: Task[] = []): boolean {
+  return tasks.some(
+    (task) =>
+      task.result?.state === 'fail' ||
+      (task.type === 'suite' && hasFailed(task.tasks))
+  );
+}
+
+function writeRunFinished(id: number, failed: boolean) {
+  process.stdout.write(
+    `##vitest-daemon[runFinished id='${id}' failed='${failed}']${EOL}`
+  );
+}
+
+async function main() {
+  const { createVitest } = await import(
+    pathToFileURL(path.join(vitestPackageDir, 'dist', 'node.mjs')).href
+  );
+  const vitest = await createVitest({
+    root,
+    config: configFile || undefined,
+    watch: true,
+    passWithNoTests: true,
+    reporters: [reporterPath],
+  });
+  // Keep Vitest's watcher so changed modules get invalidated, but let the IDE decide when to run.
+  vitest.scheduleRerun = async () => undefined;
+
+  const requests = readline.createInterface({ input: process.stdin });
+  let queue: Promise<void> = Promise.resolve();
+  requests.on('line', (line) => {
+    if (!line.trim()) {
+      return;
+    }
+    const request: RunRequest = JSON.parse(line);
+    queue = queue.then(async () => {
+      let failed = true;
+      try {
+        // Read by the reporter and sequencer while the run is in progress
+        Object.entries(request.env || {}).forEach(([name, value]) => {
+          if (value === null) {
+            delete process.env[name];
+          } else {
+            process.env[name] = value;
+          }
+        });
+        // The IDE asks right after a save, before Vite's watcher may have noticed it
+        (request.changed || []).forEach((file) => {
+          const id = file.replace(/\\/g, '/');
+          vitest.server.moduleGraph.onFileChange(id);
+          vitest.handleFileChanged?.(id);
+        });
+        vitest.config.testNamePattern = request.testNamePattern
+          ? new RegExp(request.testNamePattern)
+          : undefined;
+        const files: string[] = await vitest.globTestFiles(
+          request.filters || []
+        );
+        await vitest.rerunFiles(files, 'intellij');
+        // The state keeps the files of earlier runs, only this run's decide whether it failed
+        failed = hasFailed(vitest.state.getFiles(files) as File[]);
+      } catch (e) {
+        process.stderr.write(`${(e as Error)?.stack ?? e}${EOL}`);
+      } finally {
+        writeRunFinished(request.id, failed);
+      }
+    });
+  });
+  requests.on('close', async () => {
+    await queue;
+    await vitest.close();
+    process.exit(0);
+  });
+}
+
+main().catch((e) => {
+  process.stderr.write(`${e?.stack ?? e}${EOL}`);
+  process.exit(1);
+});
@@ -1,88 +1,288 @@
 import Node from './Node';
-import { teamCityMessage, writeToStdOut } from './utils';
-import type { File, Reporter, Task, TaskResultPack } from 'vitest';
+import type { BenchmarkStatistics } from './Node';
+import {
+  BAIL_ENV,
+  FILE_TIMINGS_MESSAGE,
+  MERGE_RESULTS_ENV,
+  RUN_STATS_ENV,
+  RUN_STATS_MESSAGE,
+  RUN_TIMINGS_MESSAGE,
+} from './constants';
+import { installPrioritySequencer } from './sequencer';
+import { flushMessages, teamCityMessage, writeMessage } from './utils';
+import type {
+  File,
+  Reporter,
+  Task,
+  TaskResult,
+  TaskResultPack,
+  UserConsoleLog,
+  Vitest,
+} from 'vitest';
 
 export default class IntellijTestReporter implements Reporter {
-  testPlanLookup: Record<string, Node> = {};
+  /**
+   * Nodes of the tasks which have not reported yet, a node is dropped as soon as its subtree has
+   */
+  testPlanLookup: Map<string, Node> = new Map();
+  ctx?: Vitest;
+  #replaying = false;
 
-  onInit() {
-    writeToStdOut(teamCityMessage('testingStarted'));
+  onInit(ctx?: Vitest) {
+    this.ctx = ctx;
+    installPrioritySequencer(ctx);
+    // In watch mode every run is announced by onWatcherRerun instead
+    if (!ctx?.config?.watch) {
+      writeMessage(teamCityMessage('testingStarted'));
+    }
+  }
+
+  onWatcherRerun(files?: string[]) {
+    this.testPlanLookup.clear();
+    writeMessage(teamCityMessage('testingStarted'));
+    if (process.env[MERGE_RESULTS_ENV] === '1') {
+      this.#replayResults(new Set(files || []));
+    }
+  }
+
+  /**
+   * Reports the last results Vitest keeps of the files which are not rerun, so the new run starts
+   * from the complete tree of the previous ones
+   */
+  #replayResults(rerunFiles: Set<string>) {
+    const files = (this.ctx?.state.getFiles() || []).filter(
+      (file) => !rerunFiles.has(file.filepath)
+    );
+    if (files.length === 0) {
+      return;
+    }
+    const packs: TaskResultPack[] = [];
+    const collectResults = (tasks: Task[]) => {
+      tasks.forEach((task) => {
+        if (task.result) {
+          packs.push([task.id, task.result]);
+        }
+        if (task.type === 'suite') {
+          collectResults(task.tasks);
+        }
+      });
+    };
+    files.forEach((file) => collectResults(file.tasks));
+
+    this.#replaying = true;
+    try {
+      this.onCollected(files);
+      this.onTaskUpdate(packs);
+    } finally {
+      this.#replaying = false;
+    }
   }
 
   addToPlan(node: Node) {
-    this.testPlanLookup[node.id] = node;
+    this.testPlanLookup.set(node.id, node);
   }
 
-  #depthTraversal(
-    tasks: Task[] = [],
-    messageExtractor: (node: Node) => string | null = () => null,
-    parentNode: Node | null
-  ) {
+  /**
+   * Adds the tasks to the plan and streams them to the IDE's test tree, returns the number of tests
+   */
+  #depthTraversal(tasks: Task[] = [], parentNode: Node | null): number {
+    let testCount = 0;
     tasks.forEach((task) => {
       const node = new Node(
         task.type,
         task.id,
         task.name,
-        task.file,
-        parentNode ? parentNode : null
+        task.file?.filepath,
+        parentNode ? parentNode : null,
+        this.#replaying
       );
       if (parentNode) {
-        parentNode.addChild(node);
+        parentNode.addChild();
       }
       this.addToPlan(node);
+      writeMessage(node.createTreeStartMessage());
 
       if (task.type === 'suite') {
-        this.#depthTraversal(task.tasks, messageExtractor, node);
+        testCount += this.#depthTraversal(task.tasks, node);
+        writeMessage(node.createTreeEndMessage());
+      } else if (task.type === 'test' || task.type === 'benchmark') {
+        testCount++;
       }
     });
+    return testCount;
   }
 
   onCollected(files?: File[]) {
+    let testCount = 0;
     (files || []).forEach((file) => {
-      this.#depthTraversal(
-        file.tasks,
-        (node: Node) => node.createStartMessage(),
-        null
+      testCount += this.#depthTraversal(file.tasks, null);
+    });
+    if (testCount > 0) {
+      writeMessage(
+        teamCityMessage('testCount', { count: testCount.toString() })
       );
+    }
+  }
+
+  /**
+   * Attaches console output to the test or suite writing it, so the IDE shows it with that node.
+   * Output without a known task goes to the console as it is.
+   */
+  onUserConsoleLog(log: UserConsoleLog) {
+    const node = log.taskId ? this.testPlanLookup.get(log.taskId) : undefined;
+    if (node) {
+      writeMessage(node.createOutputMessage(log.content, log.type === 'stderr'));
+    } else {
+      // Keeps the output in order with the messages written before it
+      flushMessages();
+      (log.type === 'stderr' ? process.stderr : process.stdout).write(
+        log.content
+      );
+    }
+  }
+
+  onFinished(files?: File[]) {
+    // Tasks which never reported, such as the tests of a skipped suite
+    this.testPlanLookup.clear();
+    this.#writeTimings(files || []);
+    writeMessage(teamCityMessage('testingFinished'));
+    // Lets the IDE add up the CPU time of several shards of one run
+    if (process.env[RUN_STATS_ENV] === '1') {
+      const { user, system } = process.cpuUsage();
+      writeMessage(
+        teamCityMessage(RUN_STATS_MESSAGE, {
+          cpuTime: Math.round((user + system) / 1000).toString(),
+        })
+      );
+    }
+    return flushMessages();
+  }
+
+  /**
+   * Reports the time spent in each phase per file and for the whole run, in milliseconds. Which
+   * phases a file has timings for depends on the Vitest version, missing ones are left out.
+   */
+  #writeTimings(files: File[]) {
+    const totals: Record<string, number> = {};
+    // eslint-disable-next-line @typescript-eslint/no-explicit-any
+    const transform = (this.ctx as any)?.vitenode?.getTotalDuration?.();
+    if (typeof transform === 'number') {
+      totals.transform = transform;
+    }
+    files.forEach((file) => {
+      const timings = fileTimings(file);
+      if (Object.keys(timings).length === 0) {
+        return;
+      }
+      const attributes: Record<string, string> = { path: file.filepath };
+      for (const phase in timings) {
+        totals[phase] = (totals[phase] ?? 0) + timings[phase];
+        attributes[phase] = Math.round(timings[phase]).toString();
+      }
+      writeMessage(teamCityMessage(FILE_TIMINGS_MESSAGE, attributes));
     });
+    if (Object.keys(totals).length > 0) {
+      const attributes: Record<string, string> = {};
+      for (const phase in totals) {
+        attributes[phase] = Math.round(totals[phase]).toString();
+      }
+      writeMessage(teamCityMessage(RUN_TIMINGS_MESSAGE, attributes));
+    }
   }
 
-  onFinished() {
-    writeToStdOut(teamCityMessage('testingFinished'));
+  /**
+   * Stops the run after the first failure, by cancelling it when Vitest supports that and otherwise
+   * by exiting since a single run has nothing left to report
+   */
+  #bail() {
+    // eslint-disable-next-line @typescript-eslint/no-explicit-any
+    const ctx = this.ctx as any;
+    if (typeof ctx?.cancelCurrentRun === 'function') {
+      ctx.cancelCurrentRun('test-failure');
+    } else if (!ctx?.config?.watch) {
+      flushMessages().finally(() => process.exit(1));
+    }
   }
 
   onTaskUpdate(packs: TaskResultPack[]) {
     (packs || []).forEach(([id, result]) => {
-      const node = this.testPlanLookup[id];
+      const node = this.testPlanLookup.get(id);
       if (node) {
         switch (node.type) {
           case 'suite': {
-            writeToStdOut(node.createStartMessage());
+            writeMessage(node.createStartMessage());
             break;
           }
           case 'test': {
-            writeToStdOut(node.createStartMessage());
-            writeToStdOut(node.createResultMessage(result));
-            writeToStdOut(node.createEndMessage(result?.duration ?? 0));
-            const suite = node.parentNode;
-            if (suite) {
-              suite.incrementExecutedChildCount();
-              if (suite.hasRanAllTests()) {
-                writeToStdOut(suite.createEndMessage());
-                let parentSuite = suite.parentNode;
-                while (parentSuite !== null) {
-                  parentSuite.incrementExecutedChildCount();
-                  if (parentSuite.hasRanAllTests()) {
-                    writeToStdOut(parentSuite.createEndMessage());
-                  }
-                  parentSuite = parentSuite.parentNode;
-                }
-              }
+            writeMessage(node.createStartMessage());
+            if (result?.state !== 'run') {
+              this.#finishTest(node, result);
+            }
+            break;
+          }
+          case 'benchmark': {
+            writeMessage(node.createStartMessage());
+            // Also updated once measured, before its final state
+            if (result?.state === 'run') {
+              break;
             }
+            const benchmark = (
+              result as { benchmark?: BenchmarkStatistics } | undefined
+            )?.benchmark;
+            if (typeof benchmark?.hz === 'number') {
+              writeMessage(node.createBenchmarkMessage(benchmark));
+            }
+            this.#finishTest(node, result);
             break;
           }
         }
       }
     });
   }
+
+  /**
+   * Reports the result of a started test or benchmark and finishes the suites it completes, dropping
+   * every node which has nothing left to report
+   */
+  #finishTest(node: Node, result?: TaskResult) {
+    writeMessage(node.createResultMessage(result));
+    writeMessage(node.createEndMessage(result?.duration ?? 0));
+    this.testPlanLookup.delete(node.id);
+    if (
+      result?.state === 'fail' &&
+      !this.#replaying &&
+      process.env[BAIL_ENV] === '1'
+    ) {
+      this.#bail();
+    }
+    let suite = node.parentNode;
+    while (suite !== null) {
+      suite.incrementExecutedChildCount();
+      if (!suite.hasRanAllTests()) {
+        break;
+      }
+      writeMessage(suite.createEndMessage());
+      this.testPlanLookup.delete(suite.id);
+      suite = suite.parentNode;
+    }
+  }
+}
+
+function fileTimings(file: File) {
+  // eslint-disable-next-line @typescript-eslint/no-explicit-any
+  const durations = file as any;
+  const timings: Record<string, number> = {};
+  const phases: [string, unknown][] = [
+    ['prepare', durations.prepareDuration],
+    ['environment', durations.environmentLoad],
+    ['setup', durations.setupDuration],
+    ['collect', durations.collectDuration],
+    ['tests', file.result?.duration],
+  ];
+  for (const [phase, duration] of phases) {
+    if (typeof duration === 'number') {
+      timings[phase] = duration;
+    }
+  }
+  return timings;
 }
@@ -0,0 +1,72 @@
+import fs from 'fs';
+import { PRIORITY_FILE_ENV } from './constants';
+import type { Vitest } from 'vitest';
+
+// Vitest 0.23 sorts file paths, later versions sort [project, path] pairs
+type SequencedFile = string | [unknown, string];
+
+function filePath(file: SequencedFile): string {
+  return typeof file === 'string' ? file : file[1];
+}
+
+function readPriorities(): Map<string, number> {
+  const priorities = new Map<string, number>();
+  const priorityFile = process.env[PRIORITY_FILE_ENV];
+  if (!priorityFile) {
+    return priorities;
+  }
+  try {
+    fs.readFileSync(priorityFile, 'utf8')
+      .split('\n')
+      .forEach((line) => {
+        const path = line.trim();
+        if (path && !priorities.has(path)) {
+          priorities.set(path, priorities.size);
+        }
+      });
+  } catch (e) {
+    // Without priorities the files keep Vitest's own order
+  }
+  return priorities;
+}
+
+/**
+ * Moves the files listed in the priorities to the front in their listed order, the other files
+ * keep their order after them
+ */
+export function prioritize<T extends SequencedFile>(
+  files: T[],
+  priorities: Map<string, number>
+): T[] {
+  if (priorities.size === 0) {
+    return files;
+  }
+  return files
+    .map((file, index) => ({
+      file,
+      rank: priorities.get(filePath(file)) ?? priorities.size + index,
+    }))
+    .sort((a, b) => a.rank - b.rank)
+    .map(({ file }) => file);
+}
+
+/**
+ * Wraps the configured sequencer so the files the IDE ranks highest, like the ones which failed last
+ * time, are started first. The priority file is read on every sort so a long-lived process picks up
+ * the ranking of each run.
+ */
+export function installPrioritySequencer(ctx?: Vitest) {
+  // eslint-disable-next-line @typescript-eslint/no-explicit-any
+  const sequence = (ctx?.config as any)?.sequence;
+  const Sequencer = sequence?.sequencer;
+  if (!Sequencer || Sequencer.prioritized) {
+    return;
+  }
+  sequence.sequencer = class PrioritySequencer extends Sequencer {
+    static prioritized = true;
+
+    async sort(files: SequencedFile[]) {
+      return prioritize(await super.sort(files), readPriorities());
+    }
+  };
+}
@@ -1,15 +1,26 @@
+import fs from 'fs';
+import net from 'net';
+import {
+  CHANNEL_CLOSED_MESSAGE,
+  EVENTS_PORT_ENV,
+  EVENTS_TOKEN_ENV,
+} from './constants';
+
 const EOL = import.meta.env.VITE_LINE_ENDING;
 
-const doEscapeCharCode = (function () {
-  const obj: Record<string, string | undefined> = {};
+/**
+ * Escape sequences indexed by char code, so escaping is a single array lookup per character
+ */
+const escapedCharCodes = (function () {
+  const mappings: Record<number, string> = {};
 
   function addMapping(fromChar: string, toChar: string) {
     if (fromChar.length !== 1 || toChar.length !== 1) {
       throw Error('String length should be 1');
     }
     const fromCharCode = fromChar.charCodeAt(0);
-    if (typeof obj[fromCharCode] === 'undefined') {
-      obj[fromCharCode] = toChar;
+    if (typeof mappings[fromCharCode] === 'undefined') {
+      mappings[fromCharCode] = '|' + toChar;
     } else {
       throw Error('Bad mapping');
     }
@@ -25,64 +36,295 @@ const doEscapeCharCode = (function () {
   addMapping('[', '[');
   addMapping(']', ']');
 
-  return function (charCode: string | number) {
-    return obj[charCode];
-  };
+  // A dense table keeps the lookup on the fast elements path
+  const maxCharCode = Math.max(...Object.keys(mappings).map(Number));
+  const codes = new Array<string | undefined>(maxCharCode + 1).fill(undefined);
+  for (const [charCode, escaped] of Object.entries(mappings)) {
+    codes[Number(charCode)] = escaped;
+  }
+  return codes;
 })();
 
-function isAttributeValueEscapingNeeded(str: string) {
+/**
+ * Escapes in a single pass, copying unescaped runs as slices and returning the input untouched
+ * when there is nothing to escape
+ */
+function escape(str: string) {
   const len = str.length;
+  const maxCharCode = escapedCharCodes.length;
+  let res = '';
+  let runStart = 0;
   for (let i = 0; i < len; i++) {
-    if (doEscapeCharCode(str.charCodeAt(i))) {
-      return true;
+    const charCode = str.charCodeAt(i);
+    if (charCode < maxCharCode) {
+      const escaped = escapedCharCodes[charCode];
+      if (escaped !== undefined) {
+        res += str.slice(runStart, i) + escaped;
+        runStart = i + 1;
+      }
     }
   }
-  return false;
-}
-
-function escape(str: string) {
-  if (!isAttributeValueEscapingNeeded(str)) {
+  if (runStart === 0) {
     return str;
   }
-  let res = '';
-  const len = str.length;
-  for (let i = 0; i < len; i++) {
-    const escaped = doEscapeCharCode(str.charCodeAt(i));
-    if (escaped) {
-      res += '|';
-      res += escaped;
-    } else {
-      res += str.charAt(i);
-    }
-  }
-  return res;
+  return res + str.slice(runStart);
+}
+
+function attribute(name: string, value: string) {
+  return ` ${name}='${escape(value)}'`;
+}
+
+function serviceMessage(type: string, attributes = '') {
+  return `##teamcity[${type}${attributes}]`;
 }
 
 function teamCityMessage(
   type: string,
   params: Record<string, string | null> = {}
 ) {
-  const strParams = Object.entries(params)
-    .reduce((acc, [name, value]) => {
-      if (value !== null && value !== undefined) {
-        acc.push(`${name}='${escape(value)}'`);
+  let attributes = '';
+  for (const name in params) {
+    const value = params[name];
+    if (value !== null && value !== undefined) {
+      attributes += attribute(name, value);
+    }
+  }
+  return serviceMessage(type, attributes);
+}
+
+/**
+ * Flush the buffered messages once they reach this many characters
+ */
+const FLUSH_THRESHOLD = 64 * 1024;
+/**
+ * Flush the buffered messages at the latest this many milliseconds after the first one was written
+ */
+const FLUSH_DELAY_MS = 10;
+
+/**
+ * Where batches of TeamCity messages end up
+ */
+interface MessageSink {
+  write(messages: string[]): void;
+  /**
+   * Used when the process is exiting and asynchronous writes might never complete
+   */
+  writeSync(messages: string[]): void;
+  /**
+   * Resolves once everything written so far has been handed to the operating system
+   */
+  drained(): Promise<void>;
+}
+
+const stdOutSink: MessageSink = {
+  write(messages) {
+    process.stdout.write(messages.join(EOL) + EOL);
+  },
+  writeSync(messages) {
+    fs.writeSync(process.stdout.fd, messages.join(EOL) + EOL);
+  },
+  drained() {
+    return Promise.resolve();
+  },
+};
+
+/**
+ * Longest time an exiting process waits for the IDE to read what it writes to the socket
+ */
+const EXIT_WRITE_TIMEOUT_MS = 5000;
+
+/**
+ * Sends the messages over the loopback socket opened by the IDE, each one as a frame of its UTF-8
+ * length as a 4 byte big endian integer followed by the message, so stdout only carries the output
+ * of the tests. Falls back to stdout, including the messages written so far, when the socket
+ * cannot be connected.
+ *
+ * On exit the messages are written to the socket's file descriptor directly. Where that is not
+ * possible they go to stdout after a CHANNEL_CLOSED_MESSAGE, which tells the IDE to read them once
+ * it has received everything sent over the socket.
+ */
+class SocketSink implements MessageSink {
+  private readonly socket: net.Socket;
+  private unconfirmed: string[] | null = [];
+  private fallback = false;
+
+  constructor(port: number, token: string) {
+    this.socket = net.createConnection({ host: '127.0.0.1', port });
+    this.socket.unref();
+    // The IDE drops connections which don't start with the run's token
+    this.socket.write(frames([token]));
+    this.socket.once('connect', () => {
+      this.unconfirmed = null;
+    });
+    this.socket.on('error', () => {
+      if (this.unconfirmed !== null) {
+        this.fallback = true;
+        if (this.unconfirmed.length > 0) {
+          stdOutSink.write(this.unconfirmed);
+        }
+        this.unconfirmed = null;
       }
-      return acc;
-    }, [] as string[])
-    .join(' ');
+    });
+  }
 
-  if (strParams) {
-    return `##teamcity[${type} ${strParams}]`;
+  write(messages: string[]) {
+    if (this.fallback) {
+      stdOutSink.write(messages);
+      return;
+    }
+    this.unconfirmed?.push(...messages);
+    this.socket.write(frames(messages));
+  }
+
+  writeSync(messages: string[]) {
+    if (this.fallback) {
+      stdOutSink.writeSync(messages);
+      return;
+    }
+    if (this.unconfirmed === null && this.writeFramesSync(messages)) {
+      return;
+    }
+    // Queued socket writes never complete once the process exits
+    const unsent = this.unconfirmed ?? [];
+    this.fallback = true;
+    this.unconfirmed = null;
+    this.socket.destroy();
+    stdOutSink.writeSync([
+      teamCityMessage(CHANNEL_CLOSED_MESSAGE),
+      ...unsent,
+      ...messages,
+    ]);
+  }
+
+  /**
+   * Writes the frames to the connected socket without going through the event loop, false when
+   * nothing was written because the socket has no usable file descriptor, as on Windows, or still
+   * has earlier writes queued which the frames would overtake
+   */
+  private writeFramesSync(messages: string[]) {
+    const fd = (this.socket as unknown as { _handle?: { fd?: number } })
+      ._handle?.fd;
+    if (typeof fd !== 'number' || fd < 0 || this.socket.writableLength > 0) {
+      return false;
+    }
+    const data = frames(messages);
+    const deadline = Date.now() + EXIT_WRITE_TIMEOUT_MS;
+    let offset = 0;
+    while (offset < data.length) {
+      try {
+        offset += fs.writeSync(fd, data, offset);
+      } catch (e) {
+        // The socket is non-blocking, retries until the IDE has read enough of it
+        const code = (e as NodeJS.ErrnoException).code;
+        if (code !== 'EAGAIN' || Date.now() > deadline) {
+          // Frames partly sent can't be sent again on stdout without repeating messages
+          return offset > 0;
+        }
+      }
+    }
+    return true;
+  }
+
+  drained() {
+    if (this.fallback || this.socket.destroyed) {
+      return Promise.resolve();
+    }
+    return new Promise<void>((resolve) => this.socket.write('', () => resolve()));
+  }
+}
+
+function frames(messages: string[]) {
+  const buffers: Buffer[] = [];
+  for (const message of messages) {
+    const body = Buffer.from(message, 'utf8');
+    const header = Buffer.allocUnsafe(4);
+    header.writeUInt32BE(body.length, 0);
+    buffers.push(header, body);
+  }
+  return Buffer.concat(buffers);
+}
+
+/**
+ * Coalesces TeamCity messages into large chunks so a big suite doesn't turn into one write per
+ * message. Messages are written in the order they were buffered.
+ */
+class BufferedMessageWriter {
+  private messages: string[] = [];
+  private size = 0;
+  private timer: ReturnType<typeof setTimeout> | null = null;
+
+  constructor(private readonly sink: MessageSink) {}
+
+  write(message: string) {
+    this.messages.push(message);
+    this.size += message.length;
+    if (this.size >= FLUSH_THRESHOLD) {
+      this.flush();
+    } else if (this.timer === null) {
+      this.timer = setTimeout(() => this.flush(), FLUSH_DELAY_MS);
+      this.timer.unref?.();
+    }
+  }
+
+  flush() {
+    const messages = this.drain();
+    if (messages) {
+      this.sink.write(messages);
+    }
+    return this.sink.drained();
+  }
+
+  flushSync() {
+    const messages = this.drain();
+    if (messages) {
+      this.sink.writeSync(messages);
+    }
+  }
+
+  private drain() {
+    if (this.timer !== null) {
+      clearTimeout(this.timer);
+      this.timer = null;
+    }
+    if (this.messages.length === 0) {
+      return null;
+    }
+    const messages = this.messages;
+    this.messages = [];
+    this.size = 0;
+    return messages;
   }
-  return `##teamcity[${type}]`;
 }
 
-function writeToStdOut(message?: string | null) {
+const eventsPort = Number(process.env[EVENTS_PORT_ENV]);
+const eventsToken = process.env[EVENTS_TOKEN_ENV];
+const messageWriter = new BufferedMessageWriter(
+  eventsPort > 0 && eventsToken
+    ? new SocketSink(eventsPort, eventsToken)
+    : stdOutSink
+);
+process.on('exit', () => messageWriter.flushSync());
+
+function writeMessage(message?: string | null) {
   if (message === null || message === undefined) {
     return;
   }
 
-  process.stdout.write(message);
-  process.stdout.write(EOL);
+  messageWriter.write(message);
+}
+
+/**
+ * Writes the buffered messages, resolves once they have left the process
+ */
+function flushMessages() {
+  return messageWriter.flush();
 }
-export { teamCityMessage, writeToStdOut };
+
+export {
+  SocketSink,
+  attribute,
+  serviceMessage,
+  teamCityMessage,
+  writeMessage,
+  flushMessages,
+};
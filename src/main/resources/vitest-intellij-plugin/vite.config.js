@@ -4,21 +4,24 @@ import { defineConfig } from 'vite';
 
 const dirname = url.fileURLToPath(new url.URL('.', import.meta.url));
 
-export default defineConfig({
-  build: {
-    emptyOutDir: false,
-    lib: {
-      entry: path.resolve(dirname, 'src/reporter.ts'),
-      name: 'Vitest Intellij Plugin',
-      formats: ['es'],
-      fileName: () => {
-        // eslint-disable-next-line no-undef
-        const os = process.argv[4];
-        return `reporter.${os}.js`;
+/**
+ * Bundles src/<entry>.ts to dist/<entry>.<mode>.js, the mode being the os the bundle is built for
+ */
+export function pluginScriptConfig(entry) {
+  return defineConfig(({ mode }) => ({
+    build: {
+      emptyOutDir: false,
+      lib: {
+        entry: path.resolve(dirname, `src/${entry}.ts`),
+        name: 'Vitest Intellij Plugin',
+        formats: ['es'],
+        fileName: () => `${entry}.${mode}.js`,
       },
     },
-  },
-  test: {
-    globals: true,
-  },
-});
+    test: {
+      globals: true,
+    },
+  }));
+}
+
+export default pluginScriptConfig('reporter');
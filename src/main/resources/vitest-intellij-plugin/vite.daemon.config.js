@@ -0,0 +1,3 @@
+import { pluginScriptConfig } from './vite.config.js';
+
+export default pluginScriptConfig('daemon');
@@ -0,0 +1,36 @@
+package com.github.ericjgagnon.vitest.run
+
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
+import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+
+class VitestFailedTestsTest : BasePlatformTestCase() {
+
+    fun testLeavesThePackageSuiteOutOfTheNames() {
+        val root = SMTestProxy.SMRootTestProxy()
+        val packageSuite = SMTestProxy("web", true, null)
+        val suite = SMTestProxy("math", true, "file:://work/web/math.bench.ts")
+        val test = SMTestProxy("sum", false, "file:://work/web/math.bench.ts")
+        root.addChild(packageSuite)
+        packageSuite.addChild(suite)
+        suite.addChild(test)
+
+        val failedTests = VitestFailedTests.of(listOf(test), packageSuite)
+        assertEquals(listOf("math sum"), failedTests.names)
+        assertEquals(listOf(FileUtil.toSystemDependentName("/work/web/math.bench.ts")), failedTests.testFilePaths)
+        assertEquals(listOf("web math sum"), VitestFailedTests.of(listOf(test)).names)
+    }
+
+    fun testKeepsBenchmarksInTheBenchmarkScope() {
+        val failedTests = VitestFailedTests(listOf("math sum"), null)
+
+        assertEquals(VitestScopeKind.BENCH, failedTests.rerunSettings(settings(VitestScopeKind.BENCH)).scope())
+        assertEquals(VitestScopeKind.TEST, failedTests.rerunSettings(settings(VitestScopeKind.TEST_FILE)).scope())
+        assertEquals(listOf("math sum"), failedTests.rerunSettings(settings(VitestScopeKind.BENCH)).testNames())
+    }
+
+    private fun settings(scope: VitestScopeKind): VitestSettings {
+        return VitestSettings.Builder(NodeJsInterpreterRef.createProjectRef()).scope(scope).build()
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.ericjgagnon.vitest.run
+
+import com.intellij.execution.actions.RunConfigurationProducer
+import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+
+class VitestRunConfigurationProducerTest : BasePlatformTestCase() {
+
+    fun testTargetsTheBenchmarkAtTheCaret() {
+        val file = myFixture.configureByText("math.bench.ts", """
+            import { bench, describe } from 'vitest'
+
+            describe('math', () => {
+              bench('<caret>sum', () => {})
+            })
+        """.trimIndent())
+
+        val target = producer().createTestElementTarget(file.findElementAt(myFixture.caretOffset)!!)!!
+        assertEquals(VitestScopeKind.BENCH, target.scope)
+        assertEquals(file.virtualFile.path, target.testFilePath)
+        assertEquals("math", target.suiteName)
+        assertEquals(listOf("sum"), target.testNames)
+
+        assertTrue(VitestRunConfigurationProducer.matches(target, benchSettings(file.virtualFile.path, listOf("sum"))))
+        assertFalse(VitestRunConfigurationProducer.matches(target, benchSettings(file.virtualFile.path, emptyList())))
+        assertFalse(VitestRunConfigurationProducer.matches(target, benchSettings(file.virtualFile.path, listOf("sum"), VitestScopeKind.TEST)))
+    }
+
+    fun testOffersDependentTestsForSourcesOfAVitestProject() {
+        myFixture.addFileToProject("app/vitest.config.ts", "export default {}")
+        val math = myFixture.addFileToProject("app/math.ts", "export const add = (a: number, b: number) => a + b")
+
+        // Offered without looking for the tests, those are only found when the configuration runs
+        val target = producer().createTestElementTarget(math)!!
+        assertEquals(VitestScopeKind.DEPENDENTS, target.scope)
+        assertEquals(math.virtualFile.path, target.testFilePath)
+    }
+
+    fun testOffersNothingForSourcesOutsideAVitestProject() {
+        val unused = myFixture.addFileToProject("lib/unused.ts", "export const noop = () => {}")
+
+        assertNull(producer().createTestElementTarget(unused))
+    }
+
+    fun testMatchesOnlyConfigurationsRunningFromTheResolvedDirectory() {
+        val target = VitestRunConfigurationProducer.TestElementTarget(
+            VitestScopeKind.TEST_FILE, "/repo/a/math.test.ts", null, null, null, false, "/repo/a", "/repo/a/vitest.config.ts"
+        )
+        fun settings(workingDirectory: String, configFile: String?): VitestSettings {
+            return VitestSettings.Builder(
+                NodeJsInterpreterRef.createProjectRef(),
+                vitestConfigFilePath = configFile,
+                workingDirectory = workingDirectory,
+                testFilePath = "/repo/a/math.test.ts"
+            ).scope(VitestScopeKind.TEST_FILE).build()
+        }
+
+        assertTrue(VitestRunConfigurationProducer.matches(target, settings("/repo/a", "/repo/a/vitest.config.ts")))
+        assertTrue(VitestRunConfigurationProducer.matches(target, settings("/repo/a", null)))
+        assertFalse(VitestRunConfigurationProducer.matches(target, settings("/repo", "/repo/a/vitest.config.ts")))
+        assertFalse(VitestRunConfigurationProducer.matches(target, settings("/repo/a", "/repo/a/vitest.e2e.config.ts")))
+    }
+
+    private fun producer(): VitestRunConfigurationProducer {
+        return RunConfigurationProducer.getInstance(VitestRunConfigurationProducer::class.java)
+    }
+
+    private fun benchSettings(path: String, names: List<String>, scope: VitestScopeKind = VitestScopeKind.BENCH): VitestSettings {
+        return VitestSettings.Builder(NodeJsInterpreterRef.createProjectRef(), testFilePath = path, suiteName = "math")
+            .testNames(names)
+            .scope(scope)
+            .build()
+    }
+}
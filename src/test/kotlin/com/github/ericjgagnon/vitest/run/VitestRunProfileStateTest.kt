@@ -2,12 +2,11 @@ package com.github.ericjgagnon.vitest.run
 
 import com.google.common.collect.Lists
 import com.intellij.execution.executors.DefaultRunExecutor
-import com.intellij.execution.process.ProcessEvent
-import com.intellij.execution.process.ProcessListener
+import com.intellij.execution.testframework.sm.runner.ui.SMTRunnerConsoleView
 import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef
 import com.intellij.javascript.nodejs.util.NodePackage
 import com.intellij.openapi.editor.EditorFactory
-import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.Disposer
 import com.intellij.testFramework.PlatformTestUtil
 import com.intellij.testFramework.fixtures.BasePlatformTestCase
 
@@ -22,12 +21,10 @@ class VitestRunProfileStateTest: BasePlatformTestCase() {
         return "src/test/testData"
     }
 
+    /**
+     * A local run reports over the event channel rather than stdout, so the results are read from the test tree
+     */
     fun testCreateExecutionResult() {
-        val expectation = "##teamcity[testingStarted]\n" +
-                "##teamcity[testStarted id='1766321171_0' name='2 === 2' nodeId='1766321171_0']\n" +
-                "##teamcity[testFinished id='1766321171_0' name='2 === 2' nodeId='1766321171_0' duration='1']\n" +
-                "##teamcity[testingFinished]\n"
-
         val config = VitestConfigurationType.instance.createTemplateConfiguration(project)
         val settings = VitestSettings.Builder(
             NodeJsInterpreterRef.createProjectRef(),
@@ -39,25 +36,22 @@ class VitestRunProfileStateTest: BasePlatformTestCase() {
             "${myFixture.testDataPath}/$TEST_PATH",
         )
         config.setRunSettings(settings.build())
-        val actual = StringBuilder()
-        PlatformTestUtil.executeConfiguration(config, DefaultRunExecutor.EXECUTOR_ID) { runContentDescriptor ->
-            runContentDescriptor.processHandler?.addProcessListener(object: ProcessListener {
-                override fun startNotified(event: ProcessEvent) {
-                }
-
-                override fun processTerminated(event: ProcessEvent) {
-                    assertTrue(actual.contains(expectation))
-                }
-
-                override fun onTextAvailable(event: ProcessEvent, outputType: Key<*>) {
-                    if (event.text.isNotEmpty()) {
-                        actual.append(event.text)
-                    }
-                }
-            })
+        val descriptor = PlatformTestUtil.executeConfiguration(config, DefaultRunExecutor.EXECUTOR_ID).second
+        try {
+            val processHandler = descriptor.processHandler!!
+            PlatformTestUtil.waitWithEventsDispatching("Vitest didn't finish", { processHandler.isProcessTerminated }, 60)
+            // The converter hands the channel's events to the tree on the EDT
+            PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+            val root = (descriptor.executionConsole as SMTRunnerConsoleView).resultsViewer.testsRootNode
+            val tests = root.allTests.filter { it.isLeaf }
+            assertEquals(listOf("2 === 2"), tests.map { it.name })
+            assertTrue(tests.single().isPassed)
+            assertFalse(root.isInProgress)
+        } finally {
+            Disposer.dispose(descriptor)
+            // Release all editors to prevent failure
+            EditorFactory.getInstance().allEditors.forEach { editor -> EditorFactory.getInstance().releaseEditor(editor) }
         }
-
-        // Release all editors to prevent failure
-        EditorFactory.getInstance().allEditors.forEach { editor -> EditorFactory.getInstance().releaseEditor(editor) }
     }
-}
\ No newline at end of file
+}
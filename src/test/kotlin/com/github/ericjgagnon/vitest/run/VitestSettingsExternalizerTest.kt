@@ -0,0 +1,50 @@
+package com.github.ericjgagnon.vitest.run
+
+import com.intellij.javascript.nodejs.interpreter.NodeJsInterpreterRef
+import com.intellij.openapi.util.JDOMExternalizerUtil
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+import org.jdom.Element
+
+class VitestSettingsExternalizerTest : BasePlatformTestCase() {
+
+    fun testDropsTheOutermostSuiteOfOlderTestConfigurations() {
+        val element = Element("configuration")
+        JDOMExternalizerUtil.writeCustomField(element, "test-scope", VitestScopeKind.TEST.name)
+        JDOMExternalizerUtil.writeCustomField(element, "suite-name", "math")
+        element.addContent(Element("test-names").also {
+            JDOMExternalizerUtil.addChildrenWithValueAttribute(it, "test-name", listOf("adds"))
+        })
+
+        val settings = VitestSettingsExternalizer.read(element)
+        assertNull(settings.suiteName())
+        assertEquals(listOf("adds"), settings.testNames())
+    }
+
+    fun testKeepsTheSuitePathOfSavedTestConfigurations() {
+        val settings = VitestSettings.Builder(NodeJsInterpreterRef.createProjectRef(), suiteName = "math nested")
+            .testNames(listOf("adds"))
+            .scope(VitestScopeKind.TEST)
+            .build()
+        val element = Element("configuration")
+        VitestSettingsExternalizer.write(settings, element)
+
+        val read = VitestSettingsExternalizer.read(element)
+        assertEquals("math nested", read.suiteName())
+        assertEquals(listOf("adds"), read.testNames())
+        assertFalse(read.templateNames())
+    }
+
+    fun testKeepsWhetherTheNamesAreTemplates() {
+        val settings = VitestSettings.Builder(NodeJsInterpreterRef.createProjectRef(), suiteName = "times %i")
+            .testNames(listOf("adds %i"))
+            .templateNames(true)
+            .scope(VitestScopeKind.TEST)
+            .build()
+        val element = Element("configuration")
+        VitestSettingsExternalizer.write(settings, element)
+
+        val read = VitestSettingsExternalizer.read(element)
+        assertEquals(listOf("adds %i"), read.testNames())
+        assertTrue(read.templateNames())
+    }
+}
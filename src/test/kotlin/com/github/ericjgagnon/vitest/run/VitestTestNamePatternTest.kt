@@ -0,0 +1,59 @@
+package com.github.ericjgagnon.vitest.run
+
+import junit.framework.TestCase
+
+class VitestTestNamePatternTest : TestCase() {
+
+    fun testMatchesOnlyTheSelectedTests() {
+        val pattern = Regex(VitestTestNamePattern.forTests(listOf(
+            VitestTestNamePattern.fullName("math", "adds"),
+            VitestTestNamePattern.fullName(null, "f(x) = x.y")
+        )))
+
+        assertTrue(pattern.containsMatchIn(" math adds"))
+        assertTrue(pattern.containsMatchIn(" f(x) = x.y"))
+        assertFalse(pattern.containsMatchIn(" math adds many"))
+        assertFalse(pattern.containsMatchIn(" other math adds"))
+        assertFalse(pattern.containsMatchIn(" f(x) = xzy"))
+    }
+
+    fun testMatchesTestsOfTheSelectedSuite() {
+        val pattern = Regex(VitestTestNamePattern.forSuite("math nested [1]"))
+
+        assertTrue(pattern.containsMatchIn(" math nested [1] adds"))
+        assertFalse(pattern.containsMatchIn(" math nested 1 adds"))
+        assertFalse(pattern.containsMatchIn(" math adds"))
+    }
+
+    fun testMatchesEveryCaseOfATemplatedName() {
+        val pattern = Regex(VitestTestNamePattern.forTests(listOf(
+            VitestTestNamePattern.fullName("sum of %i", "adds %s to \$b.value"),
+            VitestTestNamePattern.fullName(null, "100%% of %d")
+        ), template = true))
+
+        assertTrue(pattern.containsMatchIn(" sum of 2 adds 'a' to 3"))
+        assertTrue(pattern.containsMatchIn(" 100% of 7"))
+        assertFalse(pattern.containsMatchIn(" sum of 2 subtracts 'a' from 3"))
+        assertFalse(pattern.containsMatchIn(" 100%% of 7 more"))
+    }
+
+    fun testMatchesPlaceholdersOfOtherNamesLiterally() {
+        val pattern = Regex(VitestTestNamePattern.forTests("math", listOf("100%% of %s", "costs \$price")))
+
+        assertTrue(pattern.containsMatchIn(" math 100%% of %s"))
+        assertTrue(pattern.containsMatchIn(" math costs \$price"))
+        assertFalse(pattern.containsMatchIn(" math 100% of 7"))
+        assertFalse(pattern.containsMatchIn(" math costs 3"))
+    }
+
+    fun testMatchesNamesWithoutASuitePathInAnySuite() {
+        val pattern = Regex(VitestTestNamePattern.forTests(null, listOf("adds", "math subtracts")))
+
+        assertTrue(pattern.containsMatchIn(" adds"))
+        assertTrue(pattern.containsMatchIn(" math adds"))
+        assertTrue(pattern.containsMatchIn(" outer math subtracts"))
+        assertFalse(pattern.containsMatchIn(" math adds many"))
+        assertFalse(pattern.containsMatchIn(" math readds"))
+        assertFalse(pattern.containsMatchIn(" subtracts"))
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.ericjgagnon.vitest.run
+
+import junit.framework.TestCase
+
+class VitestTestNamesTest : TestCase() {
+
+    fun testEqualNamesKeepTheirOwnOrder() {
+        val names = VitestTestNames.of(listOf("adds", "subtracts", "adds"))
+        val reversed = VitestTestNames.of(listOf("subtracts", "adds"))
+
+        assertEquals(names, reversed)
+        assertEquals(names.hashCode(), reversed.hashCode())
+        assertEquals(listOf("adds", "subtracts"), names.names)
+        assertEquals(listOf("subtracts", "adds"), reversed.names)
+        assertSame(names, VitestTestNames.of(names.names))
+        assertSame(VitestTestNames.EMPTY, VitestTestNames.of(null))
+    }
+
+    fun testComparesNamesRegardlessOfOrder() {
+        val names = VitestTestNames.of(listOf("adds", "subtracts"))
+
+        assertTrue(names.hasNames(listOf("subtracts", "adds", "adds")))
+        assertFalse(names.hasNames(listOf("adds")))
+        assertFalse(names.hasNames(listOf("adds", "subtracts", "divides")))
+        assertTrue(VitestTestNames.EMPTY.hasNames(null))
+    }
+
+    fun testCopiedSettingsAreEqual() {
+        val settings = VitestSettings.Builder(testNames = listOf("adds", "subtracts"), scope = VitestScopeKind.TEST).build()
+        val copy = settings.toBuilder().build()
+
+        assertEquals(settings, copy)
+        assertEquals(settings.hashCode(), copy.hashCode())
+        assertSame(settings.testNames(), copy.testNames())
+        assertTrue(settings.hasTestNames(listOf("subtracts", "adds")))
+        assertFalse(settings.toBuilder().testNames(listOf("adds")).build() == settings)
+    }
+}
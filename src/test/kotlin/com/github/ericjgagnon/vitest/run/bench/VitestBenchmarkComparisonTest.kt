@@ -0,0 +1,34 @@
+package com.github.ericjgagnon.vitest.run.bench
+
+import junit.framework.TestCase
+
+class VitestBenchmarkComparisonTest : TestCase() {
+
+    fun testReadsTheReportedStatistics() {
+        val result = VitestBenchmarkResult.fromAttributes(
+            mapOf("hz" to "1250.5", "mean" to "0.8", "p75" to "0.9", "p99" to "1.5", "rme" to "1.2", "samples" to "3")
+        )
+
+        assertEquals(VitestBenchmarkResult(1250.5, 0.8, 0.9, 1.5, 1.2, 3), result)
+        assertNull(VitestBenchmarkResult.fromAttributes(mapOf("mean" to "0.8")))
+    }
+
+    fun testRegressesOnlyPastTheThreshold() {
+        val baseline = result(1000.0)
+
+        assertFalse(VitestBenchmarkComparison(result(950.0), baseline, 10).isRegression)
+        assertFalse(VitestBenchmarkComparison(result(1500.0), baseline, 10).isRegression)
+        assertTrue(VitestBenchmarkComparison(result(850.0), baseline, 10).isRegression)
+        assertEquals(-0.15, VitestBenchmarkComparison(result(850.0), baseline, 10).change!!, 1e-9)
+    }
+
+    fun testFirstResultHasNothingToRegressFrom() {
+        val comparison = VitestBenchmarkComparison(result(10.0), null, 10)
+
+        assertNull(comparison.change)
+        assertFalse(comparison.isRegression)
+        assertTrue(comparison.describe().endsWith("recorded as baseline"))
+    }
+
+    private fun result(hz: Double) = VitestBenchmarkResult(hz, 1000 / hz, 0.0, 0.0, 1.0, 100)
+}
@@ -0,0 +1,55 @@
+package com.github.ericjgagnon.vitest.run.changes
+
+import com.intellij.openapi.application.runWriteAction
+import com.intellij.openapi.vfs.VfsUtil
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+
+class VitestAffectedTestsCacheTest : BasePlatformTestCase() {
+
+    fun testFindsTestsOfAnImportAddedAfterTheLookup() {
+        val source = myFixture.addFileToProject("src/math.ts", "export const add = (a: number, b: number) => a + b").virtualFile
+        val test = myFixture.addFileToProject("src/math.test.ts", "test('adds', () => {})").virtualFile
+        val cache = VitestAffectedTestsCache.getInstance(project)
+
+        assertEmpty(cache.affectedTests(listOf(source)))
+
+        save(test, "import { add } from './math'\ntest('adds', () => add(1, 1))")
+        assertEquals(listOf(test), cache.affectedTests(listOf(source)))
+
+        save(test, "test('adds', () => {})")
+        assertEmpty(cache.affectedTests(listOf(source)))
+    }
+
+    fun testFindsTestsThroughAFileStartingToImportTheSource() {
+        val source = myFixture.addFileToProject("src/math.ts", "export const add = (a: number, b: number) => a + b").virtualFile
+        val helper = myFixture.addFileToProject("src/helper.ts", "export const one = 1").virtualFile
+        val test = myFixture.addFileToProject("src/helper.test.ts", "import { one } from './helper'\ntest('one', () => one)").virtualFile
+        val cache = VitestAffectedTestsCache.getInstance(project)
+
+        assertEmpty(cache.affectedTests(listOf(source)))
+
+        save(helper, "import { add } from './math'\nexport const one = add(0, 1)")
+        assertEquals(listOf(test), cache.affectedTests(listOf(source)))
+    }
+
+    fun testKeepsEntriesOnEditsLeavingImportsAlone() {
+        val source = myFixture.addFileToProject("src/math.ts", "export const add = (a: number, b: number) => a + b").virtualFile
+        val test = myFixture.addFileToProject("src/math.test.ts", "import { add } from './math'\ntest('adds', () => add(1, 1))").virtualFile
+        val unrelated = myFixture.addFileToProject("src/strings.ts", "export const upper = (s: string) => s.toUpperCase()").virtualFile
+        val cache = VitestAffectedTestsCache.getInstance(project)
+
+        assertEquals(listOf(test), cache.affectedTests(listOf(source)))
+
+        save(unrelated, "export const lower = (s: string) => s.toLowerCase()")
+        save(test, "import { add } from './math'\ntest('adds', () => add(2, 2))")
+        save(source, "export const add = (a: number, b: number) => b + a")
+        cache.affectedTests(emptyList())
+        assertTrue(cache.isCached(source))
+        assertEquals(listOf(test), cache.affectedTests(listOf(source)))
+    }
+
+    private fun save(file: VirtualFile, text: String) {
+        runWriteAction { VfsUtil.saveText(file, text) }
+    }
+}
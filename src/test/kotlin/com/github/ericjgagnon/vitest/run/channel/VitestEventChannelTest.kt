@@ -0,0 +1,111 @@
+package com.github.ericjgagnon.vitest.run.channel
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.OutputStream
+import java.net.InetAddress
+import java.net.Socket
+import java.nio.charset.StandardCharsets
+import java.util.Collections
+
+class VitestEventChannelTest : BasePlatformTestCase() {
+
+    private lateinit var channel: VitestEventChannel
+    private val messages = Collections.synchronizedList(mutableListOf<String>())
+
+    override fun setUp() {
+        super.setUp()
+        channel = VitestEventChannel.open()
+        channel.attach { messages.add(it) }
+        channel.start()
+    }
+
+    override fun tearDown() {
+        try {
+            channel.close()
+        } finally {
+            super.tearDown()
+        }
+    }
+
+    fun testReadsAFrameArrivingByteByByte() {
+        send { output ->
+            frame("##teamcity[testingStarted]").forEach {
+                output.write(it.toInt())
+                output.flush()
+            }
+        }
+        assertEquals(listOf("##teamcity[testingStarted]"), messages)
+    }
+
+    fun testReadsSeveralFramesArrivingAtOnce() {
+        send { output ->
+            output.write(frame("##teamcity[testingStarted]") + frame("##teamcity[testCount count='1']") + frame("##teamcity[testingFinished]"))
+        }
+        assertEquals(listOf("##teamcity[testingStarted]", "##teamcity[testCount count='1']", "##teamcity[testingFinished]"), messages)
+    }
+
+    fun testReadsAFrameSplitAcrossWrites() {
+        val bytes = frame("##teamcity[testStdOut out='ünïcödé']") + frame("##teamcity[testingFinished]")
+        send { output ->
+            // Splits the first frame's length, then its body in the middle of a multi-byte character
+            listOf(0..1, 2..31, 32 until bytes.size).forEach {
+                output.write(bytes.sliceArray(it))
+                output.flush()
+                Thread.sleep(20)
+            }
+        }
+        assertEquals(listOf("##teamcity[testStdOut out='ünïcödé']", "##teamcity[testingFinished]"), messages)
+    }
+
+    fun testDropsAFrameCutOffByADisconnect() {
+        val partial = frame("##teamcity[testingFinished]")
+        send { output ->
+            output.write(frame("##teamcity[testingStarted]"))
+            output.write(partial, 0, partial.size - 5)
+        }
+        assertEquals(listOf("##teamcity[testingStarted]"), messages)
+    }
+
+    fun testRejectsAConnectionWithoutTheToken() {
+        Socket(InetAddress.getByName("127.0.0.1"), channel.port).use {
+            it.getOutputStream().write(frame("not the token"))
+            it.getOutputStream().flush()
+            // The channel closes the connection once it has read the wrong token
+            assertEquals(-1, it.getInputStream().read())
+        }
+        assertFalse(channel.isConnected)
+
+        send { output -> output.write(frame("##teamcity[testingFinished]")) }
+        assertEquals(listOf("##teamcity[testingFinished]"), messages)
+    }
+
+    /**
+     * Connects to the channel like the reporter does, token first, and waits until the channel has
+     * read everything
+     */
+    private fun send(write: (OutputStream) -> Unit) {
+        Socket(InetAddress.getByName("127.0.0.1"), channel.port).use {
+            it.getOutputStream().write(frame(channel.token))
+            write(it.getOutputStream())
+            it.getOutputStream().flush()
+            // Otherwise finish doesn't wait for a connection it hasn't accepted yet
+            val deadline = System.currentTimeMillis() + 5000
+            while (!channel.isConnected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10)
+            }
+        }
+        channel.finish()
+    }
+
+    private fun frame(message: String): ByteArray {
+        val body = message.toByteArray(StandardCharsets.UTF_8)
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).run {
+            writeInt(body.size)
+            write(body)
+        }
+        return bytes.toByteArray()
+    }
+}
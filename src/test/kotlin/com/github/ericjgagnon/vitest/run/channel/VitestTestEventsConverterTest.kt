@@ -0,0 +1,69 @@
+package com.github.ericjgagnon.vitest.run.channel
+
+import com.github.ericjgagnon.vitest.run.VitestConfigurationType
+import com.github.ericjgagnon.vitest.run.bench.VitestBenchmarkBaselines
+import com.github.ericjgagnon.vitest.run.timing.VitestPhaseTimings
+import com.intellij.execution.executors.DefaultRunExecutor
+import com.intellij.execution.process.ProcessOutputTypes
+import com.intellij.execution.testframework.sm.runner.GeneralIdBasedToSMTRunnerEventsConvertor
+import com.intellij.execution.testframework.sm.runner.SMTRunnerConsoleProperties
+import com.intellij.execution.testframework.sm.runner.SMTestProxy
+import com.intellij.openapi.util.Disposer
+import com.intellij.testFramework.PlatformTestUtil
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+
+class VitestTestEventsConverterTest : BasePlatformTestCase() {
+
+    fun testReportsConsecutiveRunsIntoOneTree() {
+        val root = SMTestProxy.SMRootTestProxy()
+        val consoleProperties = SMTRunnerConsoleProperties(
+            VitestConfigurationType.instance.createTemplateConfiguration(project),
+            "Vitest",
+            DefaultRunExecutor.getRunExecutorInstance()
+        )
+        val processor = GeneralIdBasedToSMTRunnerEventsConvertor(project, root, "Vitest")
+        val converter = VitestTestEventsConverter(
+            "Vitest",
+            consoleProperties,
+            null,
+            VitestPhaseTimings(),
+            VitestBenchmarkBaselines.getInstance(project),
+            10
+        )
+        try {
+            converter.setProcessor(processor)
+            converter.onStartTesting()
+
+            reportRun(converter, null)
+            PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue()
+            assertEquals(listOf("works"), root.children.map { it.name })
+            assertTrue(root.children.single().isPassed)
+
+            reportRun(converter, "no")
+            PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue()
+            assertEquals(listOf("works"), root.children.map { it.name })
+            assertTrue(root.children.single().isDefect)
+            assertTrue(root.children.single().isFinal)
+        } finally {
+            Disposer.dispose(processor)
+            Disposer.dispose(consoleProperties)
+        }
+    }
+
+    /**
+     * Reports a run of a single test the way the reporter does, with the same Vitest task id every time
+     */
+    private fun reportRun(converter: VitestTestEventsConverter, failure: String?) {
+        val lines = mutableListOf(
+            "##teamcity[testingStarted]",
+            "##teamcity[suiteTreeNode name='works' nodeId='a_1' parentNodeId='0']",
+            "##teamcity[testStarted id='a_1' name='works' nodeId='a_1' parentNodeId='0']",
+        )
+        if (failure != null) {
+            lines.add("##teamcity[testFailed id='a_1' name='works' nodeId='a_1' parentNodeId='0' message='$failure']")
+        }
+        lines.add("##teamcity[testFinished id='a_1' name='works' nodeId='a_1' parentNodeId='0' duration='1']")
+        lines.add("##teamcity[testingFinished]")
+        lines.forEach { converter.process(it + "\n", ProcessOutputTypes.STDOUT) }
+    }
+}
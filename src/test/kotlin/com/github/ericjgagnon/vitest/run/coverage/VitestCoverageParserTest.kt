@@ -0,0 +1,61 @@
+package com.github.ericjgagnon.vitest.run.coverage
+
+import junit.framework.TestCase
+
+class VitestCoverageParserTest : TestCase() {
+
+    fun testComputesLineHitsFromStatements() {
+        val report = """
+            {"/src/sum.ts": {
+              "path": "/src/sum.ts",
+              "statementMap": {
+                "0": {"start": {"line": 1, "column": 0}, "end": {"line": 3, "column": 1}},
+                "1": {"start": {"line": 2, "column": 2}, "end": {"line": 2, "column": 14}},
+                "2": {"start": {"line": 2, "column": 16}, "end": {"line": 2, "column": 30}},
+                "3": {"start": {"line": 5, "column": 0}, "end": {"line": 5, "column": 20}}
+              },
+              "fnMap": {"0": {"name": "sum", "decl": {"start": {"line": 1, "column": 9}}}},
+              "branchMap": {},
+              "s": {"0": 1, "1": 4, "2": 7, "3": 0},
+              "f": {"0": 4},
+              "b": {}
+            }}
+        """.trimIndent()
+
+        val parsed = parse(report)
+
+        val coverage = parsed.getValue("/src/sum.ts")
+        assertEquals(listOf(1, 2, 5), coverage.lines.toList())
+        assertEquals(listOf(1, 7, 0), coverage.hits.toList())
+        assertEquals(2, coverage.coveredLineCount)
+    }
+
+    fun testReadsCountsBeforeStatementMap() {
+        val report = """
+            {"/src/a.ts": {
+              "s": {"0": 2},
+              "statementMap": {"0": {"start": {"line": 3, "column": 0}, "end": {"line": 3, "column": 5}}}
+            }}
+        """.trimIndent()
+
+        val coverage = parse(report).getValue("/src/a.ts")
+
+        assertEquals(listOf(3), coverage.lines.toList())
+        assertEquals(listOf(2), coverage.hits.toList())
+    }
+
+    fun testEncodingRoundTrips() {
+        val coverage = VitestFileCoverage(intArrayOf(1, 2, 130, 70000), intArrayOf(0, 1, 300, Int.MAX_VALUE))
+
+        val decoded = VitestFileCoverage.decode(coverage.encode())
+
+        assertEquals(coverage.lines.toList(), decoded.lines.toList())
+        assertEquals(coverage.hits.toList(), decoded.hits.toList())
+    }
+
+    private fun parse(report: String): Map<String, VitestFileCoverage> {
+        val files = mutableMapOf<String, VitestFileCoverage>()
+        VitestCoverageParser.parse(report.byteInputStream()) { path, coverage -> files[path] = coverage }
+        return files
+    }
+}
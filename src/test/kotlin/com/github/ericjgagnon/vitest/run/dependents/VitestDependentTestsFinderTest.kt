@@ -0,0 +1,43 @@
+package com.github.ericjgagnon.vitest.run.dependents
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+
+class VitestDependentTestsFinderTest : BasePlatformTestCase() {
+
+    fun testFindsTestsImportingTheSource() {
+        val source = myFixture.addFileToProject("src/math.ts", "export const add = (a: number, b: number) => a + b").virtualFile
+        val test = myFixture.addFileToProject("src/math.test.ts", "import { add } from './math'\ntest('adds', () => add(1, 1))").virtualFile
+        myFixture.addFileToProject("src/strings.test.ts", "test('upper', () => {})")
+
+        assertEquals(listOf(test), VitestDependentTestsFinder(project).findDependentTests(source))
+    }
+
+    fun testFindsTestsImportingTheSourceThroughOtherFiles() {
+        val source = myFixture.addFileToProject("src/math.ts", "export const add = (a: number, b: number) => a + b").virtualFile
+        val format = myFixture.addFileToProject("src/format.ts", "import { add } from './math'\nexport const sum = (a: number, b: number) => `${'$'}{add(a, b)}`").virtualFile
+        myFixture.addFileToProject("src/report.ts", "import { sum } from './format'\nexport const report = () => sum(1, 2)")
+        val test = myFixture.addFileToProject("src/report.test.ts", "import { report } from './report'\ntest('reports', () => report())").virtualFile
+
+        val dependents = VitestDependentTestsFinder(project).findDependents(source)
+        assertEquals(listOf(test), dependents.tests)
+        assertTrue(dependents.files.contains(format))
+    }
+
+    fun testFindsTestsImportingTheDirectoryOfAnIndexFile() {
+        val source = myFixture.addFileToProject("src/lib/math.ts", "export const add = (a: number, b: number) => a + b").virtualFile
+        myFixture.addFileToProject("src/lib/index.ts", "export * from './math'")
+        val test = myFixture.addFileToProject("src/lib.test.ts", "import { add } from './lib'\ntest('adds', () => add(1, 1))").virtualFile
+
+        assertEquals(listOf(test), VitestDependentTestsFinder(project).findDependentTests(source))
+    }
+
+    fun testStopsAtFilesImportingEachOther() {
+        val even = myFixture.addFileToProject("src/even.ts", "import { odd } from './odd'\nexport const even = (n: number): boolean => n === 0 || odd(n - 1)").virtualFile
+        val odd = myFixture.addFileToProject("src/odd.ts", "import { even } from './even'\nexport const odd = (n: number): boolean => n !== 0 && even(n - 1)").virtualFile
+        val test = myFixture.addFileToProject("src/parity.test.ts", "import { odd } from './odd'\ntest('odd', () => odd(3))").virtualFile
+
+        val finder = VitestDependentTestsFinder(project)
+        assertEquals(listOf(test), finder.findDependentTests(even))
+        assertEquals(listOf(test), finder.findDependentTests(odd))
+    }
+}
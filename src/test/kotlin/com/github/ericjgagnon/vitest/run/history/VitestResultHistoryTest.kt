@@ -0,0 +1,30 @@
+package com.github.ericjgagnon.vitest.run.history
+
+import junit.framework.TestCase
+import java.util.concurrent.TimeUnit
+
+class VitestResultHistoryTest : TestCase() {
+
+    fun testForgetsTestsWhichHaveNotRunForLong() {
+        val now = TimeUnit.DAYS.toMillis(1000)
+        val entries = mutableMapOf(
+            "recent" to history("recent", now - TimeUnit.DAYS.toMillis(1)),
+            "removed" to history("removed", now - TimeUnit.DAYS.toMillis(365)),
+        )
+
+        VitestResultHistory.prune(entries, now)
+        assertEquals(setOf("recent"), entries.keys)
+    }
+
+    fun testKeepsTheMostRecentlyRunTestsAboveTheLimit() {
+        val now = TimeUnit.DAYS.toMillis(1000)
+        val entries = (1..5).associateTo(mutableMapOf()) { "test $it" to history("test $it", now - it) }
+
+        VitestResultHistory.prune(entries, now, maxEntries = 3)
+        assertEquals(setOf("test 1", "test 2", "test 3"), entries.keys)
+    }
+
+    private fun history(name: String, lastRunMillis: Long): VitestTestHistory {
+        return VitestTestHistory("/math.test.ts", name).also { it.lastRunMillis = lastRunMillis }
+    }
+}
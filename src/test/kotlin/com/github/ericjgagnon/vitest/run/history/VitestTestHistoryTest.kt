@@ -0,0 +1,54 @@
+package com.github.ericjgagnon.vitest.run.history
+
+import junit.framework.TestCase
+
+class VitestTestHistoryTest : TestCase() {
+
+    fun testCountsOutcomeChangesAsFlaky() {
+        val history = VitestTestHistory("/math.test.ts", "math adds")
+        history.record(VitestTestHistory.Status.PASSED, 3)
+        history.record(VitestTestHistory.Status.FAILED, 3)
+        history.record(VitestTestHistory.Status.SKIPPED, null)
+        history.record(VitestTestHistory.Status.PASSED, 3)
+
+        assertEquals(VitestTestHistory.Status.PASSED, history.status)
+        assertEquals(3, history.runs)
+        assertEquals(2, history.flakyCount)
+    }
+
+    fun testTypicalDurationIsTheMedianBucket() {
+        val history = VitestTestHistory("/math.test.ts", "math adds")
+        assertEquals(0, history.typicalDurationMillis())
+
+        listOf(10L, 12L, 15L, 900L).forEach { history.record(VitestTestHistory.Status.PASSED, it) }
+        assertEquals(16, history.typicalDurationMillis())
+    }
+
+    fun testFlagsRegressionsAgainstTheBaseline() {
+        val history = VitestTestHistory("/math.test.ts", "math adds")
+        repeat(VitestTestHistory.BASELINE_MIN_RUNS) { history.record(VitestTestHistory.Status.PASSED, 20) }
+
+        assertEquals(20.0, history.baselineMillis)
+        assertFalse(history.isRegression(35))
+        assertTrue(history.isRegression(2000))
+
+        history.resetBaseline()
+        assertFalse(history.isRegression(2000))
+    }
+
+    fun testKeepsRegressedDurationsOutOfTheBaseline() {
+        val history = VitestTestHistory("/math.test.ts", "math adds")
+        repeat(VitestTestHistory.BASELINE_MIN_RUNS) { history.record(VitestTestHistory.Status.PASSED, 20) }
+
+        repeat(VitestTestHistory.BASELINE_MIN_RUNS - 1) {
+            history.record(VitestTestHistory.Status.PASSED, 2000)
+            assertEquals(20.0, history.baselineMillis)
+            assertTrue(history.isRegression(2000))
+        }
+
+        // Consistently slower from now on
+        history.record(VitestTestHistory.Status.PASSED, 2000)
+        assertEquals(2000.0, history.baselineMillis)
+        assertFalse(history.isRegression(2000))
+    }
+}
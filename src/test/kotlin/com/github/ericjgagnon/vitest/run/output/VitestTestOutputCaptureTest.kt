@@ -0,0 +1,41 @@
+package com.github.ericjgagnon.vitest.run.output
+
+import junit.framework.TestCase
+
+class VitestTestOutputCaptureTest : TestCase() {
+
+    private val capture = VitestTestOutputCapture(memoryLimit = 10)
+
+    override fun tearDown() {
+        try {
+            capture.dispose()
+        } finally {
+            super.tearDown()
+        }
+    }
+
+    fun testKeepsOutputUpToTheLimitPerNode() {
+        assertTrue(capture.accepts("1_1", 6))
+        assertTrue(capture.accepts("1_1", 4))
+        assertFalse(capture.accepts("1_1", 1))
+        assertTrue(capture.accepts("1_2", 10))
+    }
+
+    fun testSpillsAFirstOversizedChunk() {
+        assertFalse(capture.accepts("1_1", 100))
+        assertNotNull(capture.spill("1_1", "x".repeat(100)))
+        assertFalse(capture.accepts("1_1", 1))
+    }
+
+    fun testReturnsTheSpilledOutputOnlyOnce() {
+        assertNotNull(capture.spill("1_1", "first"))
+        assertNull(capture.spill("1_1", "second"))
+        assertFalse(capture.accepts("1_1", 0))
+    }
+
+    fun testClosesTheSpilledOutputOfAFinishedNode() {
+        capture.spill("1_1", "first")
+        capture.finish("1_1")
+        assertTrue(capture.accepts("1_1", 1))
+    }
+}
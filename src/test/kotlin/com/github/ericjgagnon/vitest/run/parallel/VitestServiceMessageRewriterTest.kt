@@ -0,0 +1,57 @@
+package com.github.ericjgagnon.vitest.run.parallel
+
+import junit.framework.TestCase
+
+class VitestServiceMessageRewriterTest : TestCase() {
+
+    fun testPrefixesNodeIds() {
+        val rewriter = VitestServiceMessageRewriter("2_")
+
+        assertEquals(
+            "##teamcity[suiteTreeStarted name='Utils' nodeId='2_1_1' parentNodeId='0']\n",
+            rewriter.rewrite("##teamcity[suiteTreeStarted name='Utils' nodeId='1_1' parentNodeId='0']\n")
+        )
+        assertEquals(
+            "##teamcity[testStarted id='2_1_1_1' name='nodeId=' nodeId='2_1_1_1' parentNodeId='2_1_1']\n",
+            rewriter.rewrite("##teamcity[testStarted id='1_1_1' name='nodeId=' nodeId='1_1_1' parentNodeId='1_1']\n")
+        )
+    }
+
+    fun testPutsTopLevelNodesUnderGroup() {
+        val rewriter = VitestServiceMessageRewriter("3_", "g3")
+
+        assertEquals(
+            "##teamcity[testSuiteStarted id='3_1_1' name='Utils' nodeId='3_1_1' parentNodeId='g3']\n",
+            rewriter.rewrite("##teamcity[testSuiteStarted id='1_1' name='Utils' nodeId='1_1' parentNodeId='0']\n")
+        )
+        assertEquals(
+            "##teamcity[testStarted id='3_1_1_1' name='adds' nodeId='3_1_1_1' parentNodeId='3_1_1']\n",
+            rewriter.rewrite("##teamcity[testStarted id='1_1_1' name='adds' nodeId='1_1_1' parentNodeId='1_1']\n")
+        )
+    }
+
+    fun testDropsRunMessagesAndCollectsCpuTime() {
+        val rewriter = VitestServiceMessageRewriter("1_")
+
+        assertNull(rewriter.rewrite("##teamcity[testingStarted]\n"))
+        assertNull(rewriter.rewrite("##teamcity[testingFinished]\n"))
+        assertNull(rewriter.rewrite("##teamcity[vitestRunStats cpuTime='1500']\n"))
+        assertEquals(1500, rewriter.cpuTimeMillis)
+    }
+
+    fun testPrefixesNodeIdsOfRunMessagesToo() {
+        val rewriter = VitestServiceMessageRewriter("r2_")
+
+        assertEquals("##teamcity[testingFinished]\n", rewriter.prefixNodeIds("##teamcity[testingFinished]\n"))
+        assertEquals(
+            "##teamcity[testStarted id='r2_1_1' name='adds' nodeId='r2_1_1' parentNodeId='0']\n",
+            rewriter.prefixNodeIds("##teamcity[testStarted id='1_1' name='adds' nodeId='1_1' parentNodeId='0']\n")
+        )
+    }
+
+    fun testKeepsPlainOutput() {
+        val rewriter = VitestServiceMessageRewriter("1_")
+
+        assertEquals("nodeId='1'\n", rewriter.rewrite("nodeId='1'\n"))
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.ericjgagnon.vitest.run.structure
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+
+class VitestTestStructureIndexTest : BasePlatformTestCase() {
+
+    fun testIndexesNestedDeclarationsWithModifiers() {
+        val file = myFixture.configureByText("math.test.ts", """
+            import { bench, describe, expect, it, test } from 'vitest'
+
+            describe.concurrent('math', () => {
+              test.each([[1, 1]])('adds', (a, b) => expect(a).toBe(b))
+              describe('nested', () => {
+                it.skipIf(process.env.CI)(`subtracts`, () => {})
+              })
+            })
+
+            bench('sum', () => {})
+            helper('not a test', () => {})
+        """.trimIndent())
+
+        val structure = VitestTestStructureIndex.getStructure(project, file.virtualFile)!!
+        assertEquals(listOf("math", "adds", "nested", "subtracts", "sum"), structure.declarations.map { it.name })
+
+        val subtracts = structure.declarations[3]
+        assertEquals(VitestTestDeclaration.Kind.TEST, subtracts.kind)
+        assertEquals(listOf("math", "nested"), structure.suiteNames(subtracts))
+        assertEquals(VitestTestDeclaration.Kind.BENCH, structure.declarations[4].kind)
+
+        val caret = file.text.indexOf("subtracts")
+        assertEquals(subtracts, structure.findDeclaration(caret, caret))
+    }
+
+    fun testMarksDeclarationsMadeWithEachAsTemplates() {
+        val file = myFixture.configureByText("math.test.ts", """
+            import { describe, test } from 'vitest'
+
+            describe.each([1, 2])('times %i', () => {
+              test('doubles', () => {})
+            })
+            describe('math', () => {
+              test.concurrent.each([[1, 1]])('adds %i to %i', () => {})
+              test('100%% of %s', () => {})
+            })
+        """.trimIndent())
+
+        val structure = VitestTestStructureIndex.getStructure(project, file.virtualFile)!!
+        assertEquals(listOf(true, false, false, true, false), structure.declarations.map { it.isTemplate })
+        assertEquals(listOf(true, true, false, true, false), structure.declarations.map { structure.isTemplate(it) })
+    }
+}
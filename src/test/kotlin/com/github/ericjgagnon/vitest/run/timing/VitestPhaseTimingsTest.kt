@@ -0,0 +1,36 @@
+package com.github.ericjgagnon.vitest.run.timing
+
+import junit.framework.TestCase
+
+class VitestPhaseTimingsTest : TestCase() {
+
+    fun testSummarizesPhasesInRunOrder() {
+        val timings = VitestPhaseTimings()
+        timings.addRun(mapOf("tests" to 9_000L, "transform" to 41_000L, "environment" to 12_000L))
+
+        assertEquals("\nTime by phase: transform 41 s, environment 12 s, tests 9 s\n", timings.summary(null))
+    }
+
+    fun testAddsUpShardsAndListsSlowestFilesToLoad() {
+        val timings = VitestPhaseTimings()
+        timings.addRun(mapOf("collect" to 1_000L))
+        timings.addRun(mapOf("collect" to 2_000L))
+        timings.addFile("/project/src/fast.test.ts", mapOf("collect" to 0L, "tests" to 5_000L))
+        timings.addFile("/project/src/slow.test.ts", mapOf("setup" to 1_000L, "collect" to 2_000L, "tests" to 300L))
+
+        assertEquals(
+            "\nTime by phase: collect 3 s\n" +
+                "Slowest files to load:\n" +
+                "  src/slow.test.ts: 3 s (setup 1 s, collect 2 s), tests 300 ms\n",
+            timings.summary("/project")
+        )
+    }
+
+    fun testHasNoSummaryWithoutTimings() {
+        val timings = VitestPhaseTimings()
+        timings.addRun(mapOf("tests" to 1L))
+        timings.clear()
+
+        assertNull(timings.summary(null))
+    }
+}
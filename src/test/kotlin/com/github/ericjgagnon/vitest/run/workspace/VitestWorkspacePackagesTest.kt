@@ -0,0 +1,27 @@
+package com.github.ericjgagnon.vitest.run.workspace
+
+import com.intellij.testFramework.fixtures.BasePlatformTestCase
+
+class VitestWorkspacePackagesTest : BasePlatformTestCase() {
+
+    fun testFindsPackagesWithConfigOrVitestDependency() {
+        myFixture.addFileToProject("repo/vitest.workspace.ts", "export default ['packages/*']")
+        myFixture.addFileToProject("repo/vite.config.ts", "export default {}")
+        myFixture.addFileToProject("repo/packages/core/package.json", """{ "name": "@repo/core" }""")
+        myFixture.addFileToProject("repo/packages/core/vite.config.ts", "export default {}")
+        myFixture.addFileToProject("repo/packages/core/vitest.config.ts", "export default {}")
+        myFixture.addFileToProject("repo/packages/core/test/fixtures/vite.config.ts", "export default {}")
+        myFixture.addFileToProject("repo/packages/utils/package.json", """{ "devDependencies": { "vitest": "^0.25.0" } }""")
+        myFixture.addFileToProject("repo/packages/docs/package.json", """{ "name": "docs" }""")
+        myFixture.addFileToProject("repo/node_modules/dep/vite.config.ts", "export default {}")
+        myFixture.addFileToProject("repo/node_modules/vitest/package.json", """{ "name": "vitest" }""")
+
+        val root = myFixture.findFileInTempDir("repo")
+        val packages = VitestWorkspacePackages.find(root)
+
+        assertEquals(listOf("@repo/core", "utils"), packages.map { it.name })
+        assertEquals("vitest.config.ts", packages[0].configFile?.name)
+        assertNull(packages[1].configFile)
+        assertEquals(root.findFileByRelativePath("node_modules/vitest")?.path, packages[1].vitestPackage?.systemIndependentPath)
+    }
+}